@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the plain text layout with the JSON layout, both format the same event into a reused buffer.
+ */
+class JsonConverterBenchmark {
+
+    static final int LINES = 200_000;
+
+    @Test
+    void compareWithText() {
+        LongriLogger logger = new LongriLogger("de.longri.JsonBenchmark");
+        LongriLogEvent event = new LongriLogEvent();
+        event.set(logger, Level.INFO, "request {} took {} ms for \"{}\"", new Object[]{"r-17", "12", "/api/users"}, null);
+        event.addMarker(MarkerFactory.getMarker("PERF"));
+        event.addKeyValue("tenant", "t-1");
+
+        PatternLayout text = PatternLayout.compile("%d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %level %logger - %marker%msg%n");
+        PatternLayout json = PatternLayout.compile("%json%n");
+        StringBuilder buf = new StringBuilder(512);
+        // warm up
+        run(text, event, buf);
+        run(json, event, buf);
+
+        long textNanos = run(text, event, buf);
+        long jsonNanos = run(json, event, buf);
+        System.out.println("Text layout: " + LINES + " lines in " + textNanos / 1_000_000 + " ms, "
+                + (LINES * 1_000_000_000L / Math.max(textNanos, 1)) + " lines/s, "
+                + bytesPerLine(text, event, buf) + " bytes per line");
+        System.out.println("JSON layout: " + LINES + " lines in " + jsonNanos / 1_000_000 + " ms, "
+                + (LINES * 1_000_000_000L / Math.max(jsonNanos, 1)) + " lines/s, "
+                + bytesPerLine(json, event, buf) + " bytes per line");
+        // the JSON line has all fields of the event, it costs a small multiple of the text line
+        assertTrue(jsonNanos < textNanos * 4, "JSON " + jsonNanos / 1_000_000 + " ms, text " + textNanos / 1_000_000 + " ms");
+    }
+
+    private static long run(PatternLayout layout, LongriLogEvent event, StringBuilder buf) {
+        long start = System.nanoTime();
+        for (int i = 0; i < LINES; i++) {
+            buf.setLength(0);
+            layout.format(buf, event);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return the allocated bytes per formatted line, -1 if the JVM can't measure it
+     */
+    private static long bytesPerLine(PatternLayout layout, LongriLogEvent event, StringBuilder buf) {
+        long allocated = Allocations.allocatedBytes(i -> {
+            buf.setLength(0);
+            layout.format(buf, event);
+        });
+        return allocated < 0 ? -1 : allocated / Allocations.CALLS;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static de.longri.logging.BufferedLogFileStreamTest.newTestFile;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the throughput of the file sinks. Every line is flushed, like with the default flush policy.
+ */
+class LogFileSinkBenchmark {
+
+    static final int LINES = 200_000;
+
+    private static void run(String name, File file, LogFileSinkTest.SinkFactory factory) throws IOException {
+        long start = System.nanoTime();
+        long length = LogFileSinkTest.run(file, factory, LINES);
+        long nanos = System.nanoTime() - start;
+        System.out.println(name + ": " + LINES + " lines in " + nanos / 1_000_000 + " ms, "
+                + (LINES * 1_000_000_000L / Math.max(nanos, 1)) + " lines/s");
+        assertTrue(length > 0);
+    }
+
+    @Test
+    void compareSinks() throws IOException {
+        File dir = newTestFile("stream.log").getParentFile();
+        run("PrintStream", new File(dir, "stream.log"), LogFileStream::new);
+        run("FileChannel", new File(dir, "channel.log"),
+                file -> new BufferedLogFileStream(new ChannelLogFileOutput(file, 64 * 1024), file));
+        run("MappedByteBuffer", new File(dir, "mapped.log"),
+                file -> new BufferedLogFileStream(new MappedLogFileOutput(file, 1024 * 1024), file));
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Creates 100k loggers through the factory, each level is found in the tree of the configured levels.
+ */
+class LogLevelTrieBenchmark {
+
+    static final int LOGGERS = 100_000;
+
+    @Test
+    void createLoggers() {
+        long start = System.nanoTime();
+        int debug = LogLevelTrieTest.createLoggers(LOGGERS);
+        long nanos = System.nanoTime() - start;
+        System.out.println("create " + LOGGERS + " loggers: " + nanos / 1_000_000 + " ms, "
+                + nanos / LOGGERS + " ns per logger");
+        assertEquals(LOGGERS / 2, debug);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The policy, which log arguments may be formatted later on the async writer thread.
+ * <p>
+ * Arguments of immutable classes are kept by reference: strings, boxed primitives,
+ * {@link BigInteger}, {@link BigDecimal}, {@link UUID}, the {@code java.time} value types, enums
+ * and classes marked with {@link ImmutableArgument}. All other arguments could change
+ * before the writer formats them, so they are formatted into a string on the calling thread.
+ * That includes a {@link Throwable} in a placeholder, its message or its suppressed and cause
+ * exceptions may change after the log call.
+ */
+final class ArgumentCapture {
+
+    private static final Set<Class<?>> IMMUTABLE_CLASSES = new HashSet<>(Arrays.asList(
+            String.class, Integer.class, Long.class, Short.class, Byte.class, Character.class, Boolean.class,
+            Double.class, Float.class, BigInteger.class, BigDecimal.class, UUID.class,
+            Instant.class, LocalDate.class, LocalTime.class, LocalDateTime.class, OffsetTime.class,
+            OffsetDateTime.class, ZonedDateTime.class, Year.class, YearMonth.class, MonthDay.class,
+            Duration.class, Period.class));
+
+    private static final ClassValue<Boolean> IMMUTABLE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return IMMUTABLE_CLASSES.contains(type)
+                    // ZoneOffset and the region ids, only the JDK can extend ZoneId
+                    || ZoneId.class.isAssignableFrom(type)
+                    || Enum.class.isAssignableFrom(type)
+                    || type.isAnnotationPresent(ImmutableArgument.class);
+        }
+    };
+
+    private ArgumentCapture() {
+    }
+
+    /**
+     * @return true, if the argument can be formatted later
+     */
+    static boolean isImmutable(Object argument) {
+        return argument == null || IMMUTABLE.get(argument.getClass());
+    }
+
+    /**
+     * @return the argument itself, if it is immutable, otherwise the formatted argument
+     */
+    static Object capture(Object argument) {
+        if (isImmutable(argument)) return argument;
+        StringBuilder buf = new StringBuilder();
+        LongriMessageFormatter.appendArgument(buf, argument);
+        return buf.toString();
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the log lines of all {@link LongriLogger} instances on a dedicated thread.
+ * <p>
+ * The events are handed over through a preallocated multi-producer/single-consumer
+ * ring buffer. Every slot carries its own sequence number, so a producer claims a slot
+ * with a single CAS on the tail counter and publishes it by advancing the slot sequence.
+ * No lock is taken on the caller thread.
+ * <p>
+ * With deferred formatting the caller only copies the event into the {@link LongriLogEvent}
+ * of the slot and the line is formatted on the writer thread. Which arguments are kept by
+ * reference is decided by {@link ArgumentCapture}.
+ */
+class AsyncLogWriter {
+
+    static final String THREAD_NAME = "LongriLogger-AsyncWriter";
+
+    private static final class Slot {
+        final StringBuilder line = new StringBuilder(128);
+        LongriLogger logger;
+        int level;
+        String trace;
+        boolean resetColor;
+        LogTargets route;
+
+        // the captured event, if the line is formatted by the writer
+        boolean deferred;
+        ConfigurationSnapshot config;
+        final LongriLogEvent event = new LongriLogEvent();
+
+        void clear() {
+            logger = null;
+            trace = null;
+            route = null;
+            if (deferred) {
+                deferred = false;
+                config = null;
+                event.reset();
+            }
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // the producers between the running check and the hand over of their event
+    private final AtomicInteger producers = new AtomicInteger();
+
+    // only written by the writer thread
+    private volatile long head = 0;
+
+    private final AsyncWaitStrategy waitStrategy;
+    private final AsyncQueueFullPolicy queueFullPolicy;
+    private final int dropLevel;
+    private final boolean deferFormatting;
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile boolean writerParked = false;
+
+    AsyncLogWriter(int capacity, AsyncWaitStrategy waitStrategy, AsyncQueueFullPolicy queueFullPolicy, int dropLevel) {
+        this(capacity, waitStrategy, queueFullPolicy, dropLevel, false);
+    }
+
+    AsyncLogWriter(int capacity, AsyncWaitStrategy waitStrategy, AsyncQueueFullPolicy queueFullPolicy, int dropLevel,
+                   boolean deferFormatting) {
+        this.capacity = ceilingPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.slots = new Slot[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+        this.queueFullPolicy = queueFullPolicy;
+        this.dropLevel = dropLevel;
+        this.deferFormatting = deferFormatting;
+
+        writerThread = new Thread(this::run, THREAD_NAME);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    static int ceilingPowerOfTwo(int value) {
+        if (value < 2) return 2;
+        if (value > (1 << 30)) return 1 << 30;
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    AsyncWaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    AsyncQueueFullPolicy getQueueFullPolicy() {
+        return queueFullPolicy;
+    }
+
+    int getDropLevel() {
+        return dropLevel;
+    }
+
+    /**
+     * @return true, if the lines are formatted on the writer thread
+     */
+    boolean isDeferFormatting() {
+        return deferFormatting;
+    }
+
+    /**
+     * @return the number of events, dropped because the queue was full or not written when {@link #stop()} returned
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Copy the line into a free slot and hand it over to the writer thread.
+     *
+     * @return false, if the event was dropped
+     */
+    boolean publish(LongriLogger logger, int level, CharSequence line, String trace, boolean resetColor) {
+        return publish(logger, level, line, trace, resetColor, null);
+    }
+
+    /**
+     * @param route the targets of a marker route or a {@link LogSink}, null for the targets of the configuration
+     */
+    boolean publish(LongriLogger logger, int level, CharSequence line, String trace, boolean resetColor, LogTargets route) {
+        long pos = claim(level);
+        if (pos < 0) {
+            if (pos == -2) {
+                // writer is stopped, or the writer thread can't wait for itself
+                logger.writeToTargets(level, line, trace, resetColor, false, route);
+                return true;
+            }
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        int index = (int) (pos & mask);
+        Slot slot = slots[index];
+        slot.line.setLength(0);
+        slot.line.append(line);
+        slot.logger = logger;
+        slot.level = level;
+        slot.trace = trace;
+        slot.resetColor = resetColor;
+        slot.route = route;
+        sequences.lazySet(index, pos + 1);
+        producers.decrementAndGet();
+
+        if (writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+        return true;
+    }
+
+    /**
+     * Capture the event into a free slot, the line is formatted by the writer thread.
+     *
+     * @return false, if the event can't be handed over and the caller must write it, true if it was
+     * published or dropped
+     * @param targets the targets of a marker route or a {@link LogSink}, null for the targets of the configuration
+     * @param trace   the rendered stack trace of the event, null without a throwable
+     */
+    boolean publishDeferred(ConfigurationSnapshot config, LongriLogEvent event, LogTargets targets, String trace) {
+        int level = event.level.toInt();
+        long pos = claim(level);
+        if (pos < 0) {
+            if (pos == -2) return false;
+            dropped.incrementAndGet();
+            return true;
+        }
+
+        int index = (int) (pos & mask);
+        Slot slot = slots[index];
+        slot.deferred = true;
+        slot.logger = event.logger;
+        slot.level = level;
+        slot.trace = trace;
+        slot.config = config;
+        slot.route = targets;
+        slot.event.captureFrom(event);
+        sequences.lazySet(index, pos + 1);
+        producers.decrementAndGet();
+
+        if (writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+        return true;
+    }
+
+    /**
+     * Claim a slot while the writer is running. The claimed slot is published before the
+     * {@link #producers} are decremented, the writer thread doesn't end before.
+     *
+     * @return the claimed position, -1 if the event should be dropped or -2 if the caller must write it,
+     * because the writer is stopped or the caller is the writer thread
+     */
+    private long claim(int level) {
+        if (Thread.currentThread() == writerThread) return -2;
+        producers.incrementAndGet();
+        if (!running) {
+            producers.decrementAndGet();
+            return -2;
+        }
+        long pos = claimSlot(level);
+        if (pos < 0) producers.decrementAndGet();
+        return pos;
+    }
+
+    private long claimSlot(int level) {
+        int idleCounter = 0;
+        long pos = tail.get();
+        for (; ; ) {
+            int index = (int) (pos & mask);
+            long dif = sequences.get(index) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    return pos;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                // queue is full
+                if (queueFullPolicy == AsyncQueueFullPolicy.DROP_ALL) return -1;
+                if (queueFullPolicy == AsyncQueueFullPolicy.DROP_BELOW_LEVEL && level < dropLevel) return -1;
+                if (!running) return -2;
+                if (writerParked) LockSupport.unpark(writerThread);
+                waitStrategy.idle(idleCounter++);
+                pos = tail.get();
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private void run() {
+        int idleCounter = 0;
+        // after stop, the events of the producers, which have passed the running check, are written too
+        while (running || producers.get() > 0 || !isEmpty()) {
+            if (drain()) {
+                idleCounter = 0;
+                continue;
+            }
+            if (waitStrategy == AsyncWaitStrategy.PARK && idleCounter > 100) {
+                writerParked = true;
+                if (!isEmpty()) {
+                    writerParked = false;
+                    continue;
+                }
+                LockSupport.parkNanos(this, 10_000_000L);
+                writerParked = false;
+            } else {
+                waitStrategy.idle(idleCounter++);
+            }
+        }
+    }
+
+    /**
+     * Write all published events, the flush policy decides at the end of the batch if the targets are flushed.
+     *
+     * @return true, if at least one event was written
+     */
+    private boolean drain() {
+        boolean written = false;
+        for (; ; ) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) break;
+
+            Slot slot = slots[index];
+            try {
+                if (slot.route instanceof BinaryLogSink) {
+                    // the event is encoded, not formatted
+                    ((BinaryLogSink) slot.route).write(slot.event, true);
+                } else {
+                    if (slot.deferred) {
+                        slot.line.setLength(0);
+                        PatternLayout layout = slot.route instanceof LogSink ? ((LogSink) slot.route).layout(slot.config) : slot.config.layout;
+                        slot.resetColor = LongriLogger.appendLine(slot.line, slot.config, layout, slot.event);
+                        // a structured layout renders the throwable in the line
+                        if (layout.isStructured()) slot.trace = null;
+                    }
+                    slot.logger.writeToTargets(slot.level, slot.line, slot.trace, slot.resetColor, true, slot.route);
+                }
+            } catch (RuntimeException e) {
+                LongriMessageFormatter.report("Async log writer failed", e);
+            }
+            written = true;
+            slot.clear();
+            sequences.lazySet(index, head + capacity);
+            head++;
+        }
+        if (written) {
+            LongriLogger.onBatchEnd();
+        }
+        return written;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * Wait until all events, published before this call, are written.
+     *
+     * @param timeoutMillis max time to wait
+     * @return true, if the queue was drained in time
+     */
+    boolean flush(long timeoutMillis) {
+        long target = tail.get();
+        long end = System.currentTimeMillis() + timeoutMillis;
+        while (head < target) {
+            if (!writerThread.isAlive() || System.currentTimeMillis() > end) return false;
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(100_000L);
+        }
+        return true;
+    }
+
+    /**
+     * Stop the writer thread after it has written all pending events.
+     */
+    void stop() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writerThread);
+        if (Thread.currentThread() == writerThread) return;
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            // still blocked by a target, the events, which are not written yet, may be lost at the exit
+            dropped.addAndGet(tail.get() - head);
+        } else {
+            // pick up the events, if the writer thread has ended by an error
+            drain();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+/**
+ * What a producer does, if the ring buffer of the {@link AsyncLogWriter} is full.
+ */
+enum AsyncQueueFullPolicy {
+
+    /**
+     * Wait until the writer thread frees a slot. No event is lost.
+     */
+    BLOCK,
+
+    /**
+     * Drop events below the configured drop level, wait for all others.
+     */
+    DROP_BELOW_LEVEL,
+
+    /**
+     * Drop every event that doesn't fit into the queue.
+     */
+    DROP_ALL;
+
+    static AsyncQueueFullPolicy fromString(String value) {
+        if ("dropBelowLevel".equalsIgnoreCase(value) || "drop-below-level".equalsIgnoreCase(value))
+            return DROP_BELOW_LEVEL;
+        if ("dropAll".equalsIgnoreCase(value) || "drop-all".equalsIgnoreCase(value))
+            return DROP_ALL;
+        return BLOCK;
+    }
+}
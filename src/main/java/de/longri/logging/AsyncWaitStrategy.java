@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread of the {@link AsyncLogWriter} waits, if there is nothing to do.
+ * The writer thread waits for new events, a producer waits for a free slot if the
+ * queue is full and the {@link AsyncQueueFullPolicy#BLOCK} policy is active.
+ */
+enum AsyncWaitStrategy {
+
+    /**
+     * Busy spin, lowest latency but burns one core.
+     */
+    SPIN,
+
+    /**
+     * Spin a short time, then give the CPU to other threads.
+     */
+    YIELD,
+
+    /**
+     * Spin a short time, then park the thread. Lowest CPU usage.
+     */
+    PARK;
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 100_000L;
+
+    /**
+     * @param counter the number of idle rounds so far
+     */
+    void idle(int counter) {
+        if (this == SPIN || counter < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (this == YIELD) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    static AsyncWaitStrategy fromString(String value) {
+        if ("spin".equalsIgnoreCase(value)) return SPIN;
+        if ("yield".equalsIgnoreCase(value)) return YIELD;
+        return PARK;
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.slf4j.event.Level;
+import org.slf4j.helpers.BasicMarkerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a binary sink, see {@link BinaryLogSink} for the format.
+ * <pre>
+ * try (BinaryLogDecoder decoder = new BinaryLogDecoder(new FileInputStream("app.llog"))) {
+ *     while (decoder.hasNext()) System.out.println(decoder.format(decoder.next()));
+ * }
+ * </pre>
+ * The records are read one by one from the stream. A record, which is cut off at the end of the
+ * stream, e.g. after a crash of the application, ends the iteration.
+ * <p>
+ * From the command line: {@code java de.longri.logging.BinaryLogDecoder <file> [pattern]}
+ * prints the records as text lines, the pattern is a pattern of the {@code longriLogger.pattern} property.
+ */
+public final class BinaryLogDecoder implements Iterator<BinaryLogDecoder.Record>, Closeable {
+
+    public static final String DEFAULT_PATTERN = "%d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %level %logger - %marker%msg%n";
+
+    /**
+     * One decoded event
+     */
+    public static final class Record {
+        private final long timeMillis;
+        private final Level level;
+        private final String loggerName;
+        private final String threadName;
+        private final long threadId;
+        private final String messagePattern;
+        private final Object[] arguments;
+        private final List<String> markers;
+        private final String[] keys;
+        private final Object[] values;
+        private final String throwable;
+
+        Record(long timeMillis, Level level, String loggerName, String threadName, long threadId, String messagePattern,
+               Object[] arguments, List<String> markers, String[] keys, Object[] values, String throwable) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.loggerName = loggerName;
+            this.threadName = threadName;
+            this.threadId = threadId;
+            this.messagePattern = messagePattern;
+            this.arguments = arguments;
+            this.markers = markers;
+            this.keys = keys;
+            this.values = values;
+            this.throwable = throwable;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+
+        public String getLoggerName() {
+            return loggerName;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        /**
+         * @return the message with the {} placeholders
+         */
+        public String getMessagePattern() {
+            return messagePattern;
+        }
+
+        /**
+         * @return the arguments as String, Integer, Long, Float, Double, Boolean or null,
+         * arguments of other types are rendered to a String
+         */
+        public Object[] getArguments() {
+            return arguments.clone();
+        }
+
+        /**
+         * @return the formatted message, without the key-value pairs
+         */
+        public String getMessage() {
+            StringBuilder buf = new StringBuilder();
+            LongriMessageFormatter.appendFormatted(buf, messagePattern, arguments, arguments.length);
+            return buf.toString();
+        }
+
+        public List<String> getMarkers() {
+            return markers;
+        }
+
+        public int getKeyValueCount() {
+            return keys.length;
+        }
+
+        public String getKey(int index) {
+            return keys[index];
+        }
+
+        public Object getValue(int index) {
+            return values[index];
+        }
+
+        /**
+         * @return the stack trace, like printed by {@link Throwable#printStackTrace()}, null without a throwable
+         */
+        public String getThrowable() {
+            return throwable;
+        }
+    }
+
+    private static final String[] NO_KEYS = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final InputStream in;
+    private final PatternLayout layout;
+    private final BasicMarkerFactory markerFactory = new BasicMarkerFactory();
+    private final List<String> dictionary = new ArrayList<>();
+    private byte[] bytes = new byte[256];
+    private long previousMillis;
+    private boolean headerRead;
+    private Record next;
+    private boolean end;
+
+    /**
+     * A decoder, which formats the records with the {@link #DEFAULT_PATTERN}
+     */
+    public BinaryLogDecoder(InputStream in) {
+        this(in, DEFAULT_PATTERN);
+    }
+
+    /**
+     * @param pattern the pattern for {@link #format(Record)}
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public BinaryLogDecoder(InputStream in, String pattern) {
+        this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, 64 * 1024);
+        this.layout = PatternLayout.compile(pattern);
+    }
+
+    /**
+     * @throws UncheckedIOException if the stream can't be read or isn't a binary log
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null && !end) {
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            end = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Record record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * @return the record as line of the pattern, followed by the stack trace of the throwable. A structured
+     * pattern like {@code %json} contains no stack trace, the stored text is only available from
+     * {@link Record#getThrowable()}.
+     */
+    public String format(Record record) {
+        LongriLogEvent event = new LongriLogEvent();
+        event.loggerName = record.loggerName;
+        event.level = record.level;
+        event.timeMillis = record.timeMillis;
+        event.threadName = record.threadName;
+        event.threadId = record.threadId;
+        event.messagePattern = record.messagePattern;
+        event.arguments = record.arguments;
+        event.argumentCount = record.arguments.length;
+        for (String marker : record.markers) event.addMarker(markerFactory.getMarker(marker));
+        for (int i = 0; i < record.keys.length; i++) event.addKeyValue(record.keys[i], record.values[i]);
+
+        StringBuilder buf = new StringBuilder();
+        layout.format(buf, event);
+        if (record.throwable != null && !layout.isStructured()) {
+            buf.append(System.lineSeparator()).append(record.throwable);
+            // printStackTrace ends with a line separator
+            while (buf.length() > 0 && (buf.charAt(buf.length() - 1) == '\n' || buf.charAt(buf.length() - 1) == '\r')) {
+                buf.setLength(buf.length() - 1);
+            }
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * @return the next event, null at the end of the stream
+     */
+    private Record read() throws IOException {
+        try {
+            for (; ; ) {
+                int tag = in.read();
+                if (tag < 0) return null;
+                if (tag == BinaryLogSink.MAGIC[0]) {
+                    readHeader();
+                } else if (!headerRead) {
+                    throw new IOException("Not a binary log, the header is missing");
+                } else if (tag == BinaryLogSink.TAG_STRING) {
+                    int id = (int) readVarLong();
+                    if (id != dictionary.size() + 1) throw new IOException("Unexpected dictionary id " + id);
+                    dictionary.add(readString());
+                } else if (tag == BinaryLogSink.TAG_EVENT) {
+                    return readEvent();
+                } else {
+                    throw new IOException("Unknown record tag " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            // the last record is cut off
+            return null;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        for (int i = 1; i < BinaryLogSink.MAGIC.length; i++) {
+            if (readByte() != BinaryLogSink.MAGIC[i]) throw new IOException("Not a binary log, bad header");
+        }
+        long version = readVarLong();
+        if (version != BinaryLogSink.VERSION) throw new IOException("Unsupported version " + version + " of the binary log");
+        previousMillis = readVarLong();
+        // a new header starts a new dictionary
+        dictionary.clear();
+        headerRead = true;
+    }
+
+    private Record readEvent() throws IOException {
+        long timeMillis = previousMillis + readZigZag();
+        previousMillis = timeMillis;
+        Level level = Level.intToLevel(readByte());
+        String loggerName = readReference();
+        String threadName = readReference();
+        long threadId = readVarLong();
+        String messagePattern = readReference();
+
+        Object[] arguments = new Object[(int) readVarLong()];
+        for (int i = 0; i < arguments.length; i++) arguments[i] = readValue();
+
+        int markerCount = (int) readVarLong();
+        List<String> markers = markerCount == 0 ? Collections.emptyList() : new ArrayList<>(markerCount);
+        for (int i = 0; i < markerCount; i++) markers.add(readReference());
+
+        int keyValueCount = (int) readVarLong();
+        String[] keys = keyValueCount == 0 ? NO_KEYS : new String[keyValueCount];
+        Object[] values = keyValueCount == 0 ? NO_VALUES : new Object[keyValueCount];
+        for (int i = 0; i < keyValueCount; i++) {
+            keys[i] = readReference();
+            values[i] = readValue();
+        }
+
+        String throwable = readByte() != 0 ? readString() : null;
+        return new Record(timeMillis, level, loggerName, threadName, threadId, messagePattern, arguments,
+                markers, keys, values, throwable);
+    }
+
+    private String readReference() throws IOException {
+        int id = (int) readVarLong();
+        if (id == 0) return readString();
+        if (id > dictionary.size()) throw new IOException("Unknown dictionary id " + id);
+        return dictionary.get(id - 1);
+    }
+
+    private Object readValue() throws IOException {
+        int type = readByte();
+        switch (type) {
+            case BinaryLogSink.TYPE_NULL:
+                return null;
+            case BinaryLogSink.TYPE_STRING:
+                return readString();
+            case BinaryLogSink.TYPE_INT:
+                return (int) readZigZag();
+            case BinaryLogSink.TYPE_LONG:
+                return readZigZag();
+            case BinaryLogSink.TYPE_FLOAT:
+                return Float.intBitsToFloat((int) readFixed(4));
+            case BinaryLogSink.TYPE_DOUBLE:
+                return Double.longBitsToDouble(readFixed(8));
+            case BinaryLogSink.TYPE_TRUE:
+                return Boolean.TRUE;
+            case BinaryLogSink.TYPE_FALSE:
+                return Boolean.FALSE;
+            default:
+                throw new IOException("Unknown argument type " + type);
+        }
+    }
+
+    private String readString() throws IOException {
+        int length = (int) readVarLong();
+        if (bytes.length < length) bytes = Arrays.copyOf(bytes, Math.max(length, bytes.length * 2));
+        int read = 0;
+        while (read < length) {
+            int count = in.read(bytes, read, length - read);
+            if (count < 0) throw new EOFException();
+            read += count;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException();
+        return b;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private long readZigZag() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readFixed(int count) throws IOException {
+        long value = 0;
+        for (int i = 0; i < count; i++) value = (value << 8) | readByte();
+        return value;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java " + BinaryLogDecoder.class.getName() + " <file> [pattern]");
+            System.exit(1);
+        }
+        try (BinaryLogDecoder decoder = new BinaryLogDecoder(new FileInputStream(args[0]),
+                args.length > 1 ? args[1] : DEFAULT_PATTERN)) {
+            while (decoder.hasNext()) {
+                System.out.println(decoder.format(decoder.next()));
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.slf4j.Marker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A sink, which writes the events in a compact binary format instead of text lines:
+ * <pre>
+ * longriLogger.sink.bin.target=app.llog
+ * longriLogger.sink.bin.format=binary
+ * </pre>
+ * The message isn't formatted, each event is written as a record of varints: the time as delta
+ * to the previous record, the level, the ids of the logger name, the thread name and the message
+ * template and the typed arguments. Logger names, thread names, templates, marker names and keys
+ * are written once per file as dictionary entries, in front of the first record which uses them.
+ * Every file starts with a header, a file, which is opened again, continues with a new header and
+ * a new dictionary. {@link BinaryLogDecoder} reads the records and renders them as text.
+ * <p>
+ * Format of the records, all numbers are unsigned varints if not noted otherwise:
+ * <pre>
+ * header:     'L' 'L' 'O' 'G' version startMillis(varlong)
+ * dictionary: TAG_STRING id string
+ * event:      TAG_EVENT timeDelta(zigzag varlong) level logger thread threadId(varlong) template
+ *             argumentCount value* markerCount marker* keyValueCount (key value)* hasThrowable [string]
+ * string:     byteLength utf-8 bytes
+ * reference:  id of the dictionary, 0 if the dictionary is full and the string follows
+ * value:      TYPE_NULL | TYPE_STRING string | TYPE_INT zigzag | TYPE_LONG zigzag varlong
+ *             | TYPE_FLOAT 4 bytes | TYPE_DOUBLE 8 bytes | TYPE_TRUE | TYPE_FALSE
+ * </pre>
+ * Arguments of other types are written as string, rendered like in a text line. The stack trace is
+ * rendered by the {@link ThrowableRenderer} with its frame limits, but never as a repeated trace. The MDC
+ * isn't written. The values are rendered before the lock of the sink is taken, the records are encoded
+ * while holding the lock and written in blocks.
+ */
+final class BinaryLogSink extends LogSink {
+
+    static final byte[] MAGIC = {'L', 'L', 'O', 'G'};
+    static final int VERSION = 1;
+
+    static final int TAG_STRING = 1;
+    static final int TAG_EVENT = 2;
+
+    static final int TYPE_NULL = 0;
+    static final int TYPE_STRING = 1;
+    static final int TYPE_INT = 2;
+    static final int TYPE_LONG = 3;
+    static final int TYPE_FLOAT = 4;
+    static final int TYPE_DOUBLE = 5;
+    static final int TYPE_TRUE = 6;
+    static final int TYPE_FALSE = 7;
+
+    /**
+     * More strings, like templates built at runtime, are written into the records
+     */
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * A growing byte array with the varint encoding
+     */
+    static final class Bytes {
+        byte[] data;
+        int length;
+
+        Bytes(int capacity) {
+            data = new byte[capacity];
+        }
+
+        private void ensure(int count) {
+            if (length + count > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            data[length++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeFixed(long value, int bytes) {
+            ensure(bytes);
+            for (int i = bytes - 1; i >= 0; i--) data[length++] = (byte) (value >>> (i * 8));
+        }
+
+        void write(Bytes bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes.data, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+
+        /**
+         * Write the length and the UTF-8 bytes, an unpaired surrogate is written as '?'.
+         */
+        void writeString(CharSequence text) {
+            int length = text.length();
+            int byteLength = 0;
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    byteLength++;
+                } else if (c < 0x800) {
+                    byteLength += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    byteLength += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    byteLength++;
+                } else {
+                    byteLength += 3;
+                }
+            }
+            writeVarLong(byteLength);
+            ensure(byteLength);
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    data[this.length++] = (byte) c;
+                } else if (c < 0x800) {
+                    data[this.length++] = (byte) (0xC0 | (c >> 6));
+                    data[this.length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    data[this.length++] = (byte) (0xF0 | (codePoint >> 18));
+                    data[this.length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    data[this.length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    data[this.length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    data[this.length++] = '?';
+                } else {
+                    data[this.length++] = (byte) (0xE0 | (c >> 12));
+                    data[this.length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    data[this.length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+
+    private final File file;
+    private final FileOutputStream output;
+
+    // guarded by the lock of this sink
+    private final Bytes block = new Bytes(BLOCK_SIZE + 1024);
+    private final Bytes record = new Bytes(256);
+    private final HashMap<String, Integer> dictionary = new HashMap<>();
+    private long previousMillis;
+
+    BinaryLogSink(String name, File file, int level, String[] includes, String[] excludes) throws IOException {
+        super(name, new OutputChoice(), level, includes, excludes, null);
+        this.file = file;
+        this.output = new FileOutputStream(file, true);
+        previousMillis = System.currentTimeMillis();
+        for (byte b : MAGIC) block.writeByte(b);
+        block.writeVarLong(VERSION);
+        block.writeVarLong(previousMillis);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Encode the event and flush it, if the flush policy decides so.
+     *
+     * @param inBatch true, if the async writer has more events to write
+     */
+    void write(LongriLogEvent event, boolean inBatch) {
+        // a toString() can be slow or log itself, so the values and the stack trace are rendered before the lock
+        Object[] values = render(event);
+        String trace = event.throwable == null ? null : LongriLogger.CONFIG_PARAMS.throwableRenderer.render(event.throwable);
+        synchronized (this) {
+            if (isClosed()) return;
+            encode(event, values, trace);
+            if (block.length >= BLOCK_SIZE) writeBlock();
+        }
+        if (LongriLogger.CONFIG_PARAMS.flushPolicy.onRecord(event.level.toInt(), inBatch)) flush();
+    }
+
+    /**
+     * @return the arguments followed by the values of the key-value pairs, where the types, which aren't
+     * written as they are, are rendered to a string, null if all values are written as they are
+     */
+    private static Object[] render(LongriLogEvent event) {
+        int argumentCount = event.argumentCount;
+        int count = argumentCount + event.getKeyValueCount();
+        Object[] values = null;
+        for (int i = 0; i < count; i++) {
+            Object value = i < argumentCount ? event.arguments[i] : event.getValue(i - argumentCount);
+            if (isTyped(value)) continue;
+            if (values == null) {
+                values = new Object[count];
+                for (int j = 0; j < count; j++) {
+                    values[j] = j < argumentCount ? event.arguments[j] : event.getValue(j - argumentCount);
+                }
+            }
+            // rendered like in a text line
+            StringBuilder buf = new StringBuilder();
+            LongriMessageFormatter.appendArgument(buf, value);
+            values[i] = buf.toString();
+        }
+        return values;
+    }
+
+    private static boolean isTyped(Object value) {
+        return value == null || value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Boolean || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * @param values the rendered values of {@link #render(LongriLogEvent)}, null to write the values of the event
+     * @param trace  the rendered stack trace, null without a throwable
+     */
+    private void encode(LongriLogEvent event, Object[] values, String trace) {
+        // the dictionary entries are written into the block, in front of the record
+        Bytes r = record;
+        r.length = 0;
+        r.writeByte(TAG_EVENT);
+        r.writeZigZag(event.timeMillis - previousMillis);
+        previousMillis = event.timeMillis;
+        r.writeByte(event.level.toInt());
+        writeReference(event.getLoggerName());
+        writeReference(event.threadName);
+        r.writeVarLong(event.threadId);
+        writeReference(String.valueOf(event.messagePattern));
+
+        r.writeVarLong(event.argumentCount);
+        for (int i = 0; i < event.argumentCount; i++) writeValue(values != null ? values[i] : event.arguments[i]);
+
+        List<Marker> markers = event.getMarkers();
+        r.writeVarLong(markers == null ? 0 : markers.size());
+        if (markers != null) {
+            for (int i = 0; i < markers.size(); i++) writeReference(markers.get(i).getName());
+        }
+
+        r.writeVarLong(event.getKeyValueCount());
+        for (int i = 0; i < event.getKeyValueCount(); i++) {
+            writeReference(String.valueOf(event.getKey(i)));
+            writeValue(values != null ? values[event.argumentCount + i] : event.getValue(i));
+        }
+
+        if (trace == null) {
+            r.writeByte(0);
+        } else {
+            r.writeByte(1);
+            r.writeString(trace);
+        }
+        block.write(r);
+    }
+
+    /**
+     * Write the id of the string into the record, a new string is added to the dictionary.
+     */
+    private void writeReference(String text) {
+        Integer id = dictionary.get(text);
+        if (id == null) {
+            if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+                record.writeVarLong(0);
+                record.writeString(text);
+                return;
+            }
+            id = dictionary.size() + 1;
+            dictionary.put(text, id);
+            block.writeByte(TAG_STRING);
+            block.writeVarLong(id);
+            block.writeString(text);
+        }
+        record.writeVarLong(id);
+    }
+
+    /**
+     * @param value a value of {@link #isTyped(Object)}
+     */
+    private void writeValue(Object value) {
+        Bytes r = record;
+        if (value == null) {
+            r.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            r.writeByte(TYPE_STRING);
+            r.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            r.writeByte(TYPE_INT);
+            r.writeZigZag(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            r.writeByte(TYPE_LONG);
+            r.writeZigZag((Long) value);
+        } else if (value instanceof Float) {
+            r.writeByte(TYPE_FLOAT);
+            r.writeFixed(Float.floatToRawIntBits((Float) value), 4);
+        } else if (value instanceof Double) {
+            r.writeByte(TYPE_DOUBLE);
+            r.writeFixed(Double.doubleToRawLongBits((Double) value), 8);
+        } else {
+            r.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        }
+    }
+
+    private void writeBlock() {
+        try {
+            output.write(block.data, 0, block.length);
+        } catch (IOException e) {
+            LongriMessageFormatter.report("Could not write [" + file + "]", e);
+        }
+        block.length = 0;
+    }
+
+    @Override
+    void flush() {
+        synchronized (this) {
+            if (isClosed() || block.length == 0) return;
+            writeBlock();
+        }
+    }
+
+    @Override
+    void close() {
+        synchronized (this) {
+            if (isClosed()) return;
+            writeBlock();
+            super.close();
+            try {
+                output.close();
+            } catch (IOException e) {
+                LongriMessageFormatter.report("Could not close [" + file + "]", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A {@link LogFileStream} which writes through a {@link LogFileOutput}. A log line is
+ * encoded directly from the line buffer, without an intermediate string and without
+ * the char encoder of {@link java.io.PrintStream}.
+ */
+public class BufferedLogFileStream extends LogFileStream {
+
+    private LogFileOutput output;
+
+    BufferedLogFileStream(LogFileOutput output, File currentLogFile) {
+        super(output, currentLogFile);
+        this.output = output;
+    }
+
+    @Override
+    long length() {
+        return output.length();
+    }
+
+    @Override
+    protected OutputStream openOutput() throws IOException {
+        return output.reopen();
+    }
+
+    @Override
+    protected void setOutput(OutputStream output) {
+        super.setOutput(output);
+        this.output = (LogFileOutput) output;
+    }
+
+    /**
+     * Write the chars followed by a line separator.
+     */
+    public void writeLine(CharSequence line) {
+        synchronized (this) {
+            try {
+                output.writeChars(line);
+                output.writeLineSeparator();
+            } catch (IOException e) {
+                setError();
+            }
+        }
+    }
+
+    private void writeChars(CharSequence chars) {
+        synchronized (this) {
+            try {
+                output.writeChars(chars);
+            } catch (IOException e) {
+                setError();
+            }
+        }
+    }
+
+    @Override
+    public void print(String s) {
+        writeChars(String.valueOf(s));
+    }
+
+    @Override
+    public void print(Object obj) {
+        writeChars(String.valueOf(obj));
+    }
+
+    @Override
+    public void print(char c) {
+        writeChars(String.valueOf(c));
+    }
+
+    @Override
+    public void println() {
+        writeChars(LogFileOutput.LINE_SEPARATOR);
+    }
+
+    @Override
+    public void println(String x) {
+        writeLine(String.valueOf(x));
+    }
+
+    @Override
+    public void println(Object x) {
+        writeLine(String.valueOf(x));
+    }
+
+    @Override
+    public void write(int b) {
+        synchronized (this) {
+            try {
+                output.write(b);
+            } catch (IOException e) {
+                setError();
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        synchronized (this) {
+            try {
+                output.write(buf, off, len);
+            } catch (IOException e) {
+                setError();
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (this) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                setError();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        stopRolling();
+        synchronized (this) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                setError();
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Thread safe formatter for the date and time of a log line, without locks.
+ * <p>
+ * The {@code dateTimeFormat} pattern (see {@link SimpleDateFormat}) is compiled once.
+ * The formatted text is cached for the current second, a single {@code SSS} field is
+ * patched with the milliseconds of each event. The cache entry is immutable and
+ * published through a volatile field, so concurrent threads never see a half written
+ * entry. Common ISO-8601 patterns are rendered by hand instead of SimpleDateFormat.
+ */
+final class CachedDateFormatter {
+
+    private enum IsoPattern {
+        DATE_TIME("yyyy-MM-dd HH:mm:ss", ' ', true),
+        DATE_T_TIME("yyyy-MM-dd'T'HH:mm:ss", 'T', true),
+        TIME("HH:mm:ss", ' ', false);
+
+        final String pattern;
+        final char separator;
+        final boolean withDate;
+
+        IsoPattern(String pattern, char separator, boolean withDate) {
+            this.pattern = pattern;
+            this.separator = separator;
+            this.withDate = withDate;
+        }
+
+        static IsoPattern of(String pattern) {
+            for (IsoPattern iso : values()) {
+                if (iso.pattern.equals(pattern)) return iso;
+            }
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        final long key;
+        final char[] prefix;
+        final char[] suffix;
+
+        Entry(long key, char[] prefix, char[] suffix) {
+            this.key = key;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+
+    private static final char[] EMPTY = new char[0];
+
+    private final String pattern;
+    private final TimeZone timeZone;
+
+    /**
+     * true, if the pattern has sub second fields other than a single SSS, the cache is then kept per millisecond
+     */
+    private final boolean perMillisecond;
+    private final boolean patchMillis;
+
+    private final IsoPattern isoPattern;
+    private final char isoMillisSeparator;
+    private final ZoneRules zoneRules;
+
+    // only used on a cache miss, one instance per thread because SimpleDateFormat isn't thread safe
+    private final ThreadLocal<SimpleDateFormat> prefixFormat;
+    private final ThreadLocal<SimpleDateFormat> suffixFormat;
+
+    private volatile Entry cache;
+
+    /**
+     * @param pattern a {@link SimpleDateFormat} pattern
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    CachedDateFormatter(String pattern) {
+        // check the pattern, same exception as before
+        new SimpleDateFormat(pattern);
+
+        this.pattern = pattern;
+        this.timeZone = TimeZone.getDefault();
+
+        int millisStart = -1;
+        int subSecondFields = 0;
+        boolean quoted = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                i++;
+            } else if (!quoted && c == 'S') {
+                int start = i;
+                while (i < pattern.length() && pattern.charAt(i) == 'S') i++;
+                subSecondFields++;
+                if (i - start == 3) millisStart = start;
+            } else {
+                i++;
+            }
+        }
+
+        if (subSecondFields == 1 && millisStart >= 0) {
+            patchMillis = true;
+            perMillisecond = false;
+            String prefixPattern = pattern.substring(0, millisStart);
+            String suffixPattern = pattern.substring(millisStart + 3);
+            isoPattern = suffixPattern.isEmpty() ? IsoPattern.of(stripSeparator(prefixPattern)) : null;
+            isoMillisSeparator = isoPattern != null ? prefixPattern.charAt(prefixPattern.length() - 1) : 0;
+            prefixFormat = newFormat(prefixPattern);
+            suffixFormat = newFormat(suffixPattern);
+        } else {
+            patchMillis = false;
+            perMillisecond = subSecondFields > 0;
+            isoPattern = IsoPattern.of(pattern);
+            isoMillisSeparator = 0;
+            prefixFormat = newFormat(pattern);
+            suffixFormat = null;
+        }
+        zoneRules = isoPattern != null ? timeZone.toZoneId().getRules() : null;
+    }
+
+    private ThreadLocal<SimpleDateFormat> newFormat(String pattern) {
+        return ThreadLocal.withInitial(() -> {
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setTimeZone(timeZone);
+            return format;
+        });
+    }
+
+    /**
+     * The ISO fast path handles "HH:mm:ss.SSS" like "HH:mm:ss" followed by a '.' or ','.
+     */
+    private static String stripSeparator(String prefixPattern) {
+        if (prefixPattern.endsWith(".") || prefixPattern.endsWith(",")) {
+            return prefixPattern.substring(0, prefixPattern.length() - 1);
+        }
+        return null;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Append the formatted date and time to the buffer.
+     *
+     * @param buf          the target buffer
+     * @param epochMillis  the time to format
+     */
+    void appendTo(StringBuilder buf, long epochMillis) {
+        long key = perMillisecond ? epochMillis : Math.floorDiv(epochMillis, 1000L);
+        Entry entry = cache;
+        if (entry == null || entry.key != key) {
+            entry = computeEntry(key, epochMillis);
+            cache = entry;
+        }
+        buf.append(entry.prefix);
+        if (patchMillis) {
+            int millis = (int) Math.floorMod(epochMillis, 1000L);
+            buf.append((char) ('0' + millis / 100));
+            buf.append((char) ('0' + (millis / 10) % 10));
+            buf.append((char) ('0' + millis % 10));
+            buf.append(entry.suffix);
+        }
+    }
+
+    String format(long epochMillis) {
+        StringBuilder buf = new StringBuilder(32);
+        appendTo(buf, epochMillis);
+        return buf.toString();
+    }
+
+    private Entry computeEntry(long key, long epochMillis) {
+        if (isoPattern != null) {
+            char[] prefix = formatIso(Math.floorDiv(epochMillis, 1000L));
+            return new Entry(key, prefix, EMPTY);
+        }
+
+        Date date = new Date(perMillisecond ? epochMillis : key * 1000L);
+        char[] prefix = prefixFormat.get().format(date).toCharArray();
+        char[] suffix = suffixFormat != null ? suffixFormat.get().format(date).toCharArray() : EMPTY;
+        return new Entry(key, prefix, suffix);
+    }
+
+    /**
+     * Hand-rolled ISO-8601 rendering of the local date and time of the given second.
+     */
+    private char[] formatIso(long epochSecond) {
+        int offset = zoneRules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+        long localSecond = epochSecond + offset;
+        long epochDay = Math.floorDiv(localSecond, 86400L);
+        int secondOfDay = (int) Math.floorMod(localSecond, 86400L);
+
+        int hour = secondOfDay / 3600;
+        int minute = (secondOfDay / 60) % 60;
+        int second = secondOfDay % 60;
+
+        int length = (isoPattern.withDate ? 19 : 8) + (isoMillisSeparator != 0 ? 1 : 0);
+        char[] text = new char[length];
+        int pos = 0;
+
+        if (isoPattern.withDate) {
+            // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+            long z = epochDay + 719468;
+            long era = Math.floorDiv(z, 146097);
+            long doe = z - era * 146097;
+            long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+            long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+            long mp = (5 * doy + 2) / 153;
+            int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+            int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+            long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+            pos = writeDigits(text, pos, (int) year, 4);
+            text[pos++] = '-';
+            pos = writeDigits(text, pos, month, 2);
+            text[pos++] = '-';
+            pos = writeDigits(text, pos, day, 2);
+            text[pos++] = isoPattern.separator;
+        }
+        pos = writeDigits(text, pos, hour, 2);
+        text[pos++] = ':';
+        pos = writeDigits(text, pos, minute, 2);
+        text[pos++] = ':';
+        pos = writeDigits(text, pos, second, 2);
+        if (isoMillisSeparator != 0) text[pos] = isoMillisSeparator;
+        return text;
+    }
+
+    private static int writeDigits(char[] text, int pos, int value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            text[pos + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends the log bytes through a {@link FileChannel}. The bytes are collected in a
+ * reusable direct buffer, a system call is only made if the buffer is full or flushed.
+ */
+class ChannelLogFileOutput extends LogFileOutput {
+
+    private final File file;
+    private final FileChannel channel;
+
+    /**
+     * Bytes written to the channel
+     */
+    private long position;
+
+    ChannelLogFileOutput(File file, int bufferSize) throws IOException {
+        super(ByteBuffer.allocateDirect(Math.max(bufferSize, 64)));
+        this.file = file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        position = channel.size();
+    }
+
+    @Override
+    long length() {
+        return position + buffer.position();
+    }
+
+    @Override
+    LogFileOutput reopen() throws IOException {
+        return new ChannelLogFileOutput(file, buffer.capacity());
+    }
+
+    @Override
+    protected void drain(int required) throws IOException {
+        flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (buffer.position() == 0) return;
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+/**
+ * The values of the {@link LongriLoggerConfiguration}, which are read while logging.
+ * <p>
+ * A snapshot is never changed. Applying the properties builds a new one and publishes it
+ * with one volatile write, so a log call reads one reference and sees all values of the
+ * same configuration.
+ */
+final class ConfigurationSnapshot {
+
+    /**
+     * The property version this snapshot was built from
+     */
+    final long version;
+
+    final int defaultLogLevel;
+    final LogLevelTrie logLevels;
+    final boolean logColorful;
+    final PatternLayout layout;
+    final String warnLevelString;
+    final MarkerRules markerRules;
+    final LogSinks sinks;
+
+    ConfigurationSnapshot(long version, int defaultLogLevel, LogLevelTrie logLevels, boolean logColorful,
+                          PatternLayout layout, String warnLevelString, MarkerRules markerRules,
+                          LogSinks sinks) {
+        this.version = version;
+        this.defaultLogLevel = defaultLogLevel;
+        this.logLevels = logLevels;
+        this.logColorful = logColorful;
+        this.layout = layout;
+        this.warnLevelString = warnLevelString;
+        this.markerRules = markerRules;
+        this.sinks = sinks;
+    }
+
+    /**
+     * @return a copy with other logger levels
+     */
+    ConfigurationSnapshot withLogLevels(LogLevelTrie logLevels) {
+        return new ConfigurationSnapshot(version, defaultLogLevel, logLevels, logColorful, layout, warnLevelString, markerRules, sinks);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the output targets are flushed.
+ * <p>
+ * The targets are written with their own locks, the counters are guarded by the lock of
+ * the policy. It is only held to update the counters, never while a target is written or
+ * flushed. For all modes except {@link Mode#IMMEDIATE} a
+ * background thread flushes records that are pending longer than the flush interval.
+ */
+final class FlushPolicy {
+
+    enum Mode {
+        /**
+         * Flush after every record, the behavior of previous versions.
+         */
+        IMMEDIATE,
+
+        /**
+         * Flush after every N records.
+         */
+        COUNT,
+
+        /**
+         * Flush if the last flush is older than T milliseconds.
+         */
+        INTERVAL,
+
+        /**
+         * Flush immediately if the logger was idle, batch up to N records or T milliseconds under load.
+         */
+        ADAPTIVE;
+
+        static Mode fromString(String value) {
+            if ("count".equalsIgnoreCase(value)) return COUNT;
+            if ("interval".equalsIgnoreCase(value)) return INTERVAL;
+            if ("adaptive".equalsIgnoreCase(value)) return ADAPTIVE;
+            return IMMEDIATE;
+        }
+    }
+
+    /**
+     * A record, which comes later than this after the previous one, is seen as the start of a new burst.
+     */
+    static final long ADAPTIVE_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    final Mode mode;
+    final int records;
+    final long intervalMillis;
+    final int flushLevel;
+
+    private final long intervalNanos;
+    private int pending = 0;
+    private long lastFlushNanos = System.nanoTime();
+    private long lastRecordNanos = 0;
+
+    private ScheduledExecutorService timer;
+
+    FlushPolicy(Mode mode, int records, long intervalMillis, int flushLevel) {
+        this.mode = mode;
+        this.records = Math.max(records, 1);
+        this.intervalMillis = Math.max(intervalMillis, 1);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(this.intervalMillis);
+        this.flushLevel = flushLevel;
+    }
+
+    boolean isSameAs(Mode mode, int records, long intervalMillis, int flushLevel) {
+        return this.mode == mode && this.records == Math.max(records, 1)
+                && this.intervalMillis == Math.max(intervalMillis, 1) && this.flushLevel == flushLevel;
+    }
+
+    /**
+     * Called after a record was written to all targets.
+     *
+     * @param level   the level of the record
+     * @param inBatch true, if the async writer has more records to write
+     * @return true, if the targets should be flushed now
+     */
+    synchronized boolean onRecord(int level, boolean inBatch) {
+        long now = System.nanoTime();
+        long gap = now - lastRecordNanos;
+        lastRecordNanos = now;
+        pending++;
+
+        boolean flush;
+        if (level >= flushLevel) {
+            flush = true;
+        } else {
+            switch (mode) {
+                case IMMEDIATE:
+                    // the async writer flushes at the end of the batch
+                    flush = !inBatch;
+                    break;
+                case COUNT:
+                    flush = pending >= records;
+                    break;
+                case INTERVAL:
+                    flush = now - lastFlushNanos >= intervalNanos;
+                    break;
+                default:
+                    flush = (!inBatch && gap >= ADAPTIVE_IDLE_NANOS) || pending >= records || now - lastFlushNanos >= intervalNanos;
+            }
+        }
+        if (flush) flushed(now);
+        return flush;
+    }
+
+    /**
+     * Called from the async writer, after it has written all queued records.
+     *
+     * @return true, if the targets should be flushed now
+     */
+    synchronized boolean onBatchEnd() {
+        if (pending == 0) return false;
+        if (mode == Mode.IMMEDIATE || mode == Mode.ADAPTIVE) {
+            // the queue is empty, so the producers are idle
+            flushed(System.nanoTime());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called from the timer thread.
+     *
+     * @return true, if pending records are older than the interval
+     */
+    synchronized boolean isOverdue() {
+        long now = System.nanoTime();
+        if (pending > 0 && now - lastFlushNanos >= intervalNanos) {
+            flushed(now);
+            return true;
+        }
+        return false;
+    }
+
+    private void flushed(long now) {
+        pending = 0;
+        lastFlushNanos = now;
+    }
+
+    void start() {
+        if (mode == Mode.IMMEDIATE || timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "LongriLogger-Flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(intervalMillis / 2, 1);
+        timer.scheduleAtFixedRate(LongriLogger::flushTargetsIfOverdue, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+}
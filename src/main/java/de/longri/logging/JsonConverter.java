@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.slf4j.Marker;
+
+import java.util.List;
+
+/**
+ * The conversion word {@code %json}, writes the event as one JSON object for JSON Lines:
+ * <pre>
+ * {"timestamp":"2024-05-01T12:00:00.000+02:00","level":"INFO","logger":"com.foo.Bar","thread":"main",
+ *  "message":"user 42 logged in","arguments":["42"],"markers":["AUDIT"],"mdc":{"requestId":"r-1"},
+ *  "kv":{"user":"42"},"throwable":{"class":"java.io.IOException","message":"...","frames":["..."],"cause":{...}}}
+ * </pre>
+ * Empty fields are left out. The option is the format of the timestamp, like {@code %json{yyyy-MM-dd HH:mm:ss.SSS}}.
+ * <p>
+ * The JSON is appended straight into the line buffer, the field names are constant strings and
+ * the values are escaped in place. There are no maps and no JSON library. The layout renders the
+ * throwable, so the targets don't print the stack trace behind the line, and it isn't colored.
+ */
+final class JsonConverter extends PatternLayout.Converter {
+
+    static final String DEFAULT_TIMESTAMP_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
+
+    /**
+     * Causes below this depth are left out, a cause chain can be a cycle
+     */
+    static final int MAX_CAUSE_DEPTH = 8;
+
+    // the field names, encoded once
+    private static final String TIMESTAMP = "{\"timestamp\":\"";
+    private static final String LEVEL = "\",\"level\":\"";
+    private static final String LOGGER = "\",\"logger\":\"";
+    private static final String THREAD = "\",\"thread\":\"";
+    private static final String MESSAGE = "\",\"message\":\"";
+    private static final String ARGUMENTS = ",\"arguments\":[";
+    private static final String MARKERS = ",\"markers\":[";
+    private static final String MDC = ",\"mdc\":{";
+    private static final String KEY_VALUES = ",\"kv\":{";
+    private static final String THROWABLE = ",\"throwable\":";
+    private static final String CLASS = "{\"class\":\"";
+    private static final String THROWABLE_MESSAGE = ",\"message\":\"";
+    private static final String FRAMES = ",\"frames\":[";
+    private static final String CAUSE = ",\"cause\":";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final CachedDateFormatter timestampFormatter;
+
+    /**
+     * @param timestampFormat a {@link java.text.SimpleDateFormat} pattern, null for ISO-8601 with the offset
+     * @throws IllegalArgumentException if the format is invalid
+     */
+    JsonConverter(String timestampFormat) {
+        this.timestampFormatter = new CachedDateFormatter(timestampFormat == null || timestampFormat.isEmpty()
+                ? DEFAULT_TIMESTAMP_FORMAT : timestampFormat);
+    }
+
+    @Override
+    void append(StringBuilder buf, LongriLogEvent event) {
+        buf.append(TIMESTAMP);
+        int start = buf.length();
+        timestampFormatter.appendTo(buf, event.timeMillis);
+        escape(buf, start);
+        buf.append(LEVEL).append(event.level.name());
+        buf.append(LOGGER);
+        appendEscaped(buf, event.getLoggerName());
+        buf.append(THREAD);
+        appendEscaped(buf, event.threadName);
+        buf.append(MESSAGE);
+        start = buf.length();
+        LongriMessageFormatter.appendFormatted(buf, event.messagePattern, event.arguments, event.argumentCount);
+        escape(buf, start);
+        buf.append('"');
+
+        if (event.argumentCount > 0) {
+            buf.append(ARGUMENTS);
+            for (int i = 0; i < event.argumentCount; i++) {
+                if (i > 0) buf.append(',');
+                appendValue(buf, event.arguments[i]);
+            }
+            buf.append(']');
+        }
+
+        List<Marker> markers = event.getMarkers();
+        if (markers != null) {
+            buf.append(MARKERS);
+            for (int i = 0; i < markers.size(); i++) {
+                if (i > 0) buf.append(',');
+                buf.append('"');
+                appendEscaped(buf, markers.get(i).getName());
+                buf.append('"');
+            }
+            buf.append(']');
+        }
+
+        LongriMDCAdapter.Context mdc = event.mdc;
+        if (mdc != null && mdc.size() > 0) {
+            buf.append(MDC);
+            for (int i = 0; i < mdc.size(); i++) {
+                if (i > 0) buf.append(',');
+                appendName(buf, mdc.key(i));
+                appendValue(buf, mdc.value(i));
+            }
+            buf.append('}');
+        }
+
+        if (event.getKeyValueCount() > 0) {
+            buf.append(KEY_VALUES);
+            for (int i = 0; i < event.getKeyValueCount(); i++) {
+                if (i > 0) buf.append(',');
+                appendName(buf, event.getKey(i));
+                appendValue(buf, event.getValue(i));
+            }
+            buf.append('}');
+        }
+
+        if (event.throwable != null) {
+            buf.append(THROWABLE);
+            appendThrowable(buf, event.throwable);
+        }
+        buf.append('}');
+    }
+
+    private static void appendName(StringBuilder buf, String name) {
+        buf.append('"');
+        appendEscaped(buf, name);
+        buf.append("\":");
+    }
+
+    /**
+     * Append the value as a JSON string, formatted like an argument of the message.
+     */
+    private static void appendValue(StringBuilder buf, Object value) {
+        if (value == null) {
+            buf.append("null");
+            return;
+        }
+        buf.append('"');
+        int start = buf.length();
+        LongriMessageFormatter.appendArgument(buf, value);
+        escape(buf, start);
+        buf.append('"');
+    }
+
+    private static void appendThrowable(StringBuilder buf, Throwable throwable) {
+        int depth = 0;
+        for (Throwable t = throwable; t != null && depth < MAX_CAUSE_DEPTH; t = t.getCause()) {
+            if (depth > 0) buf.append(CAUSE);
+            buf.append(CLASS);
+            appendEscaped(buf, t.getClass().getName());
+            buf.append('"');
+            String message = t.getMessage();
+            if (message != null) {
+                buf.append(THROWABLE_MESSAGE);
+                appendEscaped(buf, message);
+                buf.append('"');
+            }
+            StackTraceElement[] frames = t.getStackTrace();
+            if (frames.length > 0) {
+                buf.append(FRAMES);
+                for (int i = 0; i < frames.length; i++) {
+                    if (i > 0) buf.append(',');
+                    buf.append('"');
+                    appendFrame(buf, frames[i]);
+                    buf.append('"');
+                }
+                buf.append(']');
+            }
+            depth++;
+        }
+        for (int i = 0; i < depth; i++) buf.append('}');
+    }
+
+    /**
+     * Append the frame like {@link StackTraceElement#toString()}, without the module.
+     */
+    private static void appendFrame(StringBuilder buf, StackTraceElement frame) {
+        appendEscaped(buf, frame.getClassName());
+        buf.append('.');
+        appendEscaped(buf, frame.getMethodName());
+        buf.append('(');
+        if (frame.isNativeMethod()) {
+            buf.append("Native Method");
+        } else if (frame.getFileName() == null) {
+            buf.append("Unknown Source");
+        } else {
+            appendEscaped(buf, frame.getFileName());
+            if (frame.getLineNumber() >= 0) buf.append(':').append(frame.getLineNumber());
+        }
+        buf.append(')');
+    }
+
+    /**
+     * Append the text with the characters escaped, which JSON doesn't allow in a string.
+     */
+    static void appendEscaped(StringBuilder buf, String text) {
+        if (text == null) return;
+        int length = text.length();
+        int plainStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+            buf.append(text, plainStart, i);
+            appendEscape(buf, c);
+            plainStart = i + 1;
+        }
+        buf.append(text, plainStart, length);
+    }
+
+    private static void appendEscape(StringBuilder buf, char c) {
+        switch (c) {
+            case '"':
+                buf.append("\\\"");
+                break;
+            case '\\':
+                buf.append("\\\\");
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            case '\r':
+                buf.append("\\r");
+                break;
+            case '\t':
+                buf.append("\\t");
+                break;
+            case '\b':
+                buf.append("\\b");
+                break;
+            case '\f':
+                buf.append("\\f");
+                break;
+            default:
+                buf.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+        }
+    }
+
+    /**
+     * Escape the text behind start in place. Text without special characters, the usual case, is
+     * only scanned. Otherwise the buffer is grown once and the text is moved back to front.
+     */
+    static void escape(StringBuilder buf, int start) {
+        int end = buf.length();
+        int extra = 0;
+        for (int i = start; i < end; i++) {
+            char c = buf.charAt(i);
+            if (c < 0x20) {
+                extra += isShortEscape(c) ? 1 : 5;
+            } else if (c == '"' || c == '\\') {
+                extra++;
+            }
+        }
+        if (extra == 0) return;
+
+        buf.setLength(end + extra);
+        int to = end + extra;
+        for (int i = end - 1; i >= start; i--) {
+            char c = buf.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                buf.setCharAt(--to, c);
+            } else if (c >= 0x20 || isShortEscape(c)) {
+                buf.setCharAt(--to, shortEscape(c));
+                buf.setCharAt(--to, '\\');
+            } else {
+                buf.setCharAt(--to, HEX[c & 0xF]);
+                buf.setCharAt(--to, HEX[c >> 4]);
+                buf.setCharAt(--to, '0');
+                buf.setCharAt(--to, '0');
+                buf.setCharAt(--to, 'u');
+                buf.setCharAt(--to, '\\');
+            }
+        }
+    }
+
+    private static boolean isShortEscape(char c) {
+        return c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f';
+    }
+
+    /**
+     * @return the character behind the backslash
+     */
+    private static char shortEscape(char c) {
+        switch (c) {
+            case '\n':
+                return 'n';
+            case '\r':
+                return 'r';
+            case '\t':
+                return 't';
+            case '\b':
+                return 'b';
+            case '\f':
+                return 'f';
+            default:
+                // '"' and '\\'
+                return c;
+        }
+    }
+}
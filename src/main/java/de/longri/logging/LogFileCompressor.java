@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compresses rolled log files to {@code .zip} or {@code .gz} on a low priority daemon thread.
+ * <p>
+ * The archive is written to a temporary file and read back, the CRC and length of the
+ * content must match the rolled file. Only then the archive gets its final name and the
+ * rolled file is deleted, so the log is readable at every moment.
+ */
+final class LogFileCompressor {
+
+    static final String THREAD_NAME = "LongriLogger-Compressor";
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final String ZIP = ".zip";
+    private static final String GZ = ".gz";
+    private static final String TEMP = ".tmp";
+
+    private static ExecutorService executor;
+
+    private LogFileCompressor() {
+    }
+
+    private static synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, THREAD_NAME);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * @return true, if the rolled file name ends with {@code .zip} or {@code .gz}
+     */
+    static boolean isArchive(File rolledFile) {
+        String name = rolledFile.getName();
+        return name.endsWith(ZIP) || name.endsWith(GZ);
+    }
+
+    /**
+     * The name of a rolled file until it is compressed, the archive extension is removed.
+     */
+    static File source(File rolledFile) {
+        String path = rolledFile.getPath();
+        if (path.endsWith(ZIP)) return new File(path.substring(0, path.length() - ZIP.length()));
+        if (path.endsWith(GZ)) return new File(path.substring(0, path.length() - GZ.length()));
+        return rolledFile;
+    }
+
+    /**
+     * Compress the file in the background.
+     *
+     * @param source    the rolled, uncompressed file
+     * @param entryName the name of the file inside a zip
+     * @param archive   the {@code .zip} or {@code .gz} file
+     * @param level     the {@link Deflater} level, -1 for the default
+     * @param done      called after the compression, also if it failed, may be null
+     */
+    static void submit(File source, String entryName, File archive, int level, Runnable done) {
+        executor().execute(() -> {
+            try {
+                compress(source, entryName, archive, level);
+            } catch (IOException | RuntimeException e) {
+                LongriMessageFormatter.report("Could not compress [" + source + "] to [" + archive + "]", e);
+            } finally {
+                if (done != null) done.run();
+            }
+        });
+    }
+
+    /**
+     * Wait until all compressions, submitted before this call, are done.
+     *
+     * @return true, if they are done in time
+     */
+    static boolean await(long timeoutMillis) {
+        try {
+            executor().submit(() -> {
+            }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Compress the source to the archive, verify it and delete the source.
+     */
+    static void compress(File source, String entryName, File archive, int level) throws IOException {
+        level = Math.max(Deflater.DEFAULT_COMPRESSION, Math.min(level, Deflater.BEST_COMPRESSION));
+        boolean zip = archive.getName().endsWith(ZIP);
+        File temp = new File(archive.getPath() + TEMP);
+
+        CRC32 crc = new CRC32();
+        long length = 0;
+        try {
+            try (InputStream in = Files.newInputStream(source.toPath());
+                 OutputStream out = zip ? openZip(temp, entryName, level, source.lastModified()) : openGzip(temp, level)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, count);
+                    crc.update(buffer, 0, count);
+                    length += count;
+                }
+            }
+            verify(temp, zip, entryName, length, crc.getValue());
+            move(temp, archive);
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        Files.delete(source.toPath());
+    }
+
+    private static OutputStream openZip(File file, String entryName, int level, long time) throws IOException {
+        ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        zipOut.setLevel(level);
+        ZipEntry entry = new ZipEntry(entryName);
+        entry.setTime(time);
+        zipOut.putNextEntry(entry);
+        return zipOut;
+    }
+
+    private static OutputStream openGzip(File file, int level) throws IOException {
+        return new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE), BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Read the archive back and compare the content with the length and CRC of the source.
+     */
+    private static void verify(File archive, boolean zip, String entryName, long length, long crcValue) throws IOException {
+        CRC32 crc = new CRC32();
+        long count = 0;
+        try (InputStream fileIn = Files.newInputStream(archive.toPath())) {
+            InputStream in;
+            if (zip) {
+                ZipInputStream zipIn = new ZipInputStream(fileIn);
+                ZipEntry entry = zipIn.getNextEntry();
+                if (entry == null || !entry.getName().equals(entryName))
+                    throw new IOException("entry '" + entryName + "' is missing in " + archive);
+                in = zipIn;
+            } else {
+                in = new GZIPInputStream(fileIn, BUFFER_SIZE);
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+                count += read;
+            }
+        }
+        if (count != length || crc.getValue() != crcValue)
+            throw new IOException("verification of " + archive + " failed");
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
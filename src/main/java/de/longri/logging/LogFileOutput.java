@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Base of the byte oriented log file outputs. Chars are encoded straight to UTF-8 into
+ * a reusable {@link ByteBuffer}, with a fast path for ASCII. Subclasses decide where
+ * the bytes of a full buffer go.
+ */
+abstract class LogFileOutput extends OutputStream {
+
+    static final String LINE_SEPARATOR = System.lineSeparator();
+
+    protected ByteBuffer buffer;
+
+    LogFileOutput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Make room in the buffer, at least for {@code required} bytes.
+     */
+    protected abstract void drain(int required) throws IOException;
+
+    /**
+     * @return the length of the file, including the bytes in the buffer
+     */
+    abstract long length();
+
+    /**
+     * @return a new output of the same kind for the same file, used after the file was rolled
+     */
+    abstract LogFileOutput reopen() throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) drain(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining()) drain(1);
+            int count = Math.min(len, buffer.remaining());
+            buffer.put(b, off, count);
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Encode the chars to UTF-8, unpaired surrogates are written as '?'.
+     */
+    void writeChars(CharSequence chars) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        int length = chars.length();
+        int i = 0;
+        while (i < length) {
+            // ASCII fast path
+            int end = Math.min(length, i + buffer.remaining());
+            while (i < end) {
+                char c = chars.charAt(i);
+                if (c >= 0x80) break;
+                buffer.put((byte) c);
+                i++;
+            }
+            if (i == length) break;
+
+            if (buffer.remaining() < 4) {
+                drain(4);
+                buffer = this.buffer;
+                continue;
+            }
+
+            char c = chars.charAt(i++);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(chars.charAt(i))) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(i++));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    void writeLineSeparator() throws IOException {
+        writeChars(LINE_SEPARATOR);
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an index of the rolled files of one log file and deletes the files over the limits.
+ * <p>
+ * The index is a small text file beside the log file, one line per rolled file with the
+ * name, the time range of its records and its size. It is updated with every roll, so the
+ * log directory is never scanned again. Only if there is no index yet, the rolled files
+ * are searched once by the file pattern.
+ * <p>
+ * The limits are the number of files ({@code logFileKeep}), the total size of all rolled
+ * files ({@code logFileTotalSizeCap}) and the age of the newest record in a file
+ * ({@code logFileMaxHistory} in days). The oldest files are deleted first, on the
+ * rolling thread. The newest rolled file is always kept.
+ */
+final class LogFileRetention {
+
+    static final String INDEX_SUFFIX = ".rolled";
+
+    private static final Map<String, LogFileRetention> INSTANCES = new HashMap<>();
+
+    static final class Entry {
+        final String name;
+        final long startMillis;
+        final long endMillis;
+        final long size;
+
+        Entry(String name, long startMillis, long endMillis, long size) {
+            this.name = name;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.size = size;
+        }
+    }
+
+    private final File baseDir;
+    private final File indexFile;
+
+    /**
+     * Oldest file first
+     */
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean loaded = false;
+
+    private long totalSizeCap = 0;
+    private int maxHistoryDays = 0;
+
+    private LogFileRetention(File baseDir, String logFileName) {
+        this.baseDir = baseDir;
+        this.indexFile = new File(baseDir, "." + logFileName + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return the retention of the log file, one instance per file
+     */
+    static LogFileRetention of(File baseDir, String logFileName) {
+        File dir = baseDir.toPath().toAbsolutePath().normalize().toFile();
+        String key = new File(dir, logFileName).getPath();
+        synchronized (INSTANCES) {
+            return INSTANCES.computeIfAbsent(key, k -> new LogFileRetention(dir, logFileName));
+        }
+    }
+
+    File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * @param totalSizeCap   max size of all rolled files in bytes, 0 for no limit
+     * @param maxHistoryDays max age of the rolled files in days, 0 for no limit
+     */
+    synchronized void setLimits(long totalSizeCap, int maxHistoryDays) {
+        this.totalSizeCap = Math.max(totalSizeCap, 0);
+        this.maxHistoryDays = Math.max(maxHistoryDays, 0);
+    }
+
+    synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * Add a rolled file to the index and delete the files over the limits.
+     *
+     * @param handle      the handle of the log file, used to search the rolled files if there is no index yet
+     * @param datePattern the file pattern
+     * @param rolled      the rolled file, after compression
+     * @param startMillis time of the first record in the file
+     * @param endMillis   time of the roll
+     * @param keep        max number of rolled files
+     */
+    synchronized void add(RollingFileHandle handle, String datePattern, File rolled, long startMillis, long endMillis, int keep) {
+        load(handle, datePattern, startMillis);
+
+        String name = relativeName(rolled);
+        entries.removeIf(entry -> entry.name.equals(name));
+        entries.add(new Entry(name, startMillis, endMillis, rolled.length()));
+        entries.sort(Comparator.comparingLong(entry -> entry.endMillis));
+
+        List<File> delete = removeOverLimits(keep, System.currentTimeMillis());
+        write();
+        if (delete.isEmpty()) return;
+        if (RollingScheduler.isRollingThread()) {
+            delete(delete);
+        } else {
+            RollingScheduler.execute(() -> delete(delete));
+        }
+    }
+
+    private static void delete(List<File> files) {
+        for (File file : files) {
+            if (file.exists() && !file.delete()) {
+                LongriMessageFormatter.report("Could not delete the rolled file", new IOException("can't delete '" + file + "'"));
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest entries over the limits.
+     *
+     * @return the files of the removed entries
+     */
+    private List<File> removeOverLimits(int keep, long now) {
+        List<File> delete = new ArrayList<>();
+        long maxAgeMillis = TimeUnit.DAYS.toMillis(maxHistoryDays);
+        long size = 0;
+        int count = 0;
+        // newest first
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            size += entry.size;
+            count++;
+            boolean overCount = count > Math.max(keep, 1);
+            boolean overSize = totalSizeCap > 0 && size > totalSizeCap && count > 1;
+            boolean overAge = maxHistoryDays > 0 && now - entry.endMillis > maxAgeMillis && count > 1;
+            if (overCount || overSize || overAge) {
+                delete.add(baseDir.toPath().resolve(entry.name).toFile());
+                entries.remove(i);
+                size -= entry.size;
+                count--;
+            }
+        }
+        return delete;
+    }
+
+    private String relativeName(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        return path.startsWith(baseDir.toPath()) ? baseDir.toPath().relativize(path).toString() : path.toString();
+    }
+
+    /**
+     * @param before only files modified before this time are searched, the files rolled
+     *               in the meantime are added by their own roll
+     */
+    private void load(RollingFileHandle handle, String datePattern, long before) {
+        // the index is read once, again only if it was deleted
+        if (loaded && indexFile.exists()) return;
+        loaded = true;
+        entries.clear();
+        if (indexFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    String[] fields = line.split("\t");
+                    if (fields.length != 4) continue;
+                    entries.add(new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+                }
+                entries.sort(Comparator.comparingLong(entry -> entry.endMillis));
+                return;
+            } catch (IOException | NumberFormatException e) {
+                LongriMessageFormatter.report("Could not read [" + indexFile + "], the rolled files are searched again", e);
+                entries.clear();
+            }
+        }
+
+        // first start with an index, add the rolled files of previous versions
+        File[] files = handle.listRolledFiles(datePattern);
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+        for (File file : files) {
+            long modified = file.lastModified();
+            if (modified >= before) continue;
+            entries.add(new Entry(relativeName(file), modified, modified, file.length()));
+        }
+    }
+
+    /**
+     * Write the index to a temporary file and move it over the old one.
+     */
+    private void write() {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                writer.write("# rolled log files: name, first record, last record, size");
+                writer.newLine();
+                for (Entry entry : entries) {
+                    writer.write(entry.name + "\t" + entry.startMillis + "\t" + entry.endMillis + "\t" + entry.size);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            LongriMessageFormatter.report("Could not write [" + indexFile + "]", e);
+        }
+    }
+}
@@ -21,14 +21,298 @@ package de.longri.logging;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
 
 public class LogFileStream extends PrintStream {
 
     public final String logPath;
 
+    final File logFile;
+
+    private String rollingPattern;
+    private int age;
+    private int keep;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Roll the file if it reaches this size in bytes, 0 if the file isn't rolled by size
+     */
+    private long maxFileSize = 0;
+
+    /**
+     * Only one roll at a time, writers don't wait for it
+     */
+    private final ReentrantLock rollLock = new ReentrantLock();
+    private volatile boolean rollingStopped = false;
+    private volatile ScheduledFuture<?> rollingTask;
+
+    /**
+     * Time of the first record in the current file, for the index of the rolled files
+     */
+    private long openedAt;
+
     public LogFileStream(File currentLogFile) throws FileNotFoundException {
-        super(new FileOutputStream(currentLogFile, true));
+        super(new CountingOutputStream(currentLogFile));
         logPath = currentLogFile.getPath();
+        logFile = currentLogFile;
+        openedAt = creationTime(currentLogFile);
+    }
+
+    protected LogFileStream(OutputStream out, File currentLogFile) {
+        super(out);
+        logPath = currentLogFile.getPath();
+        logFile = currentLogFile;
+        openedAt = creationTime(currentLogFile);
+    }
+
+    private static long creationTime(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).creationTime().toMillis();
+        } catch (IOException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @return the length of the log file in bytes, including buffered bytes. The bytes are
+     * counted by the stream, the file system isn't asked.
+     */
+    long length() {
+        return out instanceof CountingOutputStream ? ((CountingOutputStream) out).count : logFile.length();
+    }
+
+    /**
+     * Open a new output for the log file, used after the file was rolled.
+     */
+    protected OutputStream openOutput() throws IOException {
+        return new CountingOutputStream(logFile);
+    }
+
+    /**
+     * Replace the output, called while holding the lock of this stream.
+     */
+    protected void setOutput(OutputStream output) {
+        out = output;
+    }
+
+    /**
+     * @param pattern     the pattern of the rolled files, null to disable rolling
+     * @param age         days for keep, before rolling on time
+     * @param keep        the number of rolled files to keep
+     * @param maxFileSize max size in bytes, 0 to disable size based rolling
+     */
+    void setRolling(String pattern, int age, int keep, long maxFileSize) {
+        this.rollingPattern = pattern;
+        this.age = age;
+        this.keep = keep;
+        this.maxFileSize = pattern != null ? Math.max(maxFileSize, 0) : 0;
+    }
+
+    /**
+     * @param level the {@link Deflater} level for rolled {@code .zip} and {@code .gz} files
+     */
+    void setCompressionLevel(int level) {
+        this.compressionLevel = level;
+    }
+
+    void setRollingTask(ScheduledFuture<?> task) {
+        rollingTask = task;
+        if (rollingStopped) task.cancel(false);
+    }
+
+    boolean isRollingStopped() {
+        return rollingStopped;
+    }
+
+    /**
+     * @return true, if the stream is closed or is being closed
+     */
+    boolean isClosed() {
+        return rollingStopped;
+    }
+
+    /**
+     * Cancel the scheduled rolling, called if the stream is closed.
+     */
+    void stopRolling() {
+        rollingStopped = true;
+        ScheduledFuture<?> task = rollingTask;
+        if (task != null) task.cancel(false);
+    }
+
+    @Override
+    public void close() {
+        stopRolling();
+        super.close();
+    }
+
+    /**
+     * Called after a record was written, the check is a compare of the byte count. If a
+     * roll is already in progress, the record stays in the current file.
+     *
+     * @return true, if the file was rolled
+     */
+    boolean rollIfTooLarge() {
+        if (maxFileSize <= 0 || length() < maxFileSize) return false;
+        if (!rollLock.tryLock()) return false;
+        try {
+            if (rollingStopped || length() < maxFileSize) return false;
+            String pattern = RollingFileHandle.withIndex(rollingPattern);
+            RollingFileHandle handle = rollingFileHandle();
+            return roll(handle, handle.nextRollingFile(pattern, LocalDateTime.now()), pattern);
+        } finally {
+            rollLock.unlock();
+        }
+    }
+
+    /**
+     * Called from the {@link RollingScheduler} at a time boundary of the pattern.
+     *
+     * @param boundary the start of the new period
+     * @return true, if the file was rolled
+     */
+    boolean rollOnTime(LocalDateTime boundary) {
+        if (rollingPattern == null) return false;
+        rollLock.lock();
+        try {
+            if (rollingStopped || length() == 0) return false;
+            RollingFileHandle handle = rollingFileHandle();
+            if (!handle.isAgeReached(age)) return false;
+
+            // the file holds the records of the period before the boundary
+            LocalDateTime period = boundary.minusNanos(1);
+            String pattern = rollingPattern;
+            File target = handle.nextRollingFile(pattern, period);
+            if (target.exists() || LogFileCompressor.source(target).exists()) {
+                // already rolled by size or at the start
+                pattern = RollingFileHandle.withIndex(pattern);
+                target = handle.nextRollingFile(pattern, period);
+            }
+            return roll(handle, target, pattern);
+        } finally {
+            rollLock.unlock();
+        }
+    }
+
+    private RollingFileHandle rollingFileHandle() {
+        return new RollingFileHandle(logFile.getAbsoluteFile().getParentFile(), logFile.getName());
+    }
+
+    /**
+     * Move the active file to the rolled name and continue with a new file. The new output
+     * is opened before it is swapped in, so writers only wait for the swap. The old output
+     * is closed and archived on the rolling thread.
+     */
+    private boolean roll(RollingFileHandle handle, File target, String keepPattern) {
+        File moved = LogFileCompressor.source(target);
+        OutputStream oldOutput;
+
+        // rename the open file, writers continue to write into the renamed file until the swap
+        if (handle.renameTo(moved)) {
+            OutputStream newOutput;
+            try {
+                newOutput = openOutput();
+            } catch (IOException e) {
+                maxFileSize = 0;
+                LongriMessageFormatter.report("Could not open [" + logPath + "] after rolling", e);
+                return false;
+            }
+            oldOutput = swap(newOutput);
+        } else {
+            // the file system doesn't allow to rename an open file, close it first
+            synchronized (this) {
+                oldOutput = out;
+                closeQuietly(oldOutput);
+                boolean moveSucceeded = handle.moveTo(moved);
+                try {
+                    setOutput(openOutput());
+                } catch (IOException e) {
+                    setError();
+                    LongriMessageFormatter.report("Could not open [" + logPath + "] after rolling", e);
+                }
+                if (!moveSucceeded) {
+                    // don't try it again with every record
+                    maxFileSize = 0;
+                    LongriMessageFormatter.report("Could not roll [" + logPath + "]",
+                            new IOException("can't move '" + logFile + "' to '" + moved + "'"));
+                    return false;
+                }
+            }
+        }
+
+        if (oldOutput == null) return false;
+        long rolledAt = System.currentTimeMillis();
+        long startedAt = openedAt;
+        openedAt = rolledAt;
+        int level = compressionLevel;
+        RollingScheduler.execute(() -> {
+            closeQuietly(oldOutput);
+            // closing a mapped file can change the modification time later
+            moved.setLastModified(rolledAt);
+            handle.compressAndKeep(moved, target, keepPattern, keep, level, startedAt, rolledAt);
+        });
+        return true;
+    }
+
+    /**
+     * @return the old output, null if the stream was closed in the meantime
+     */
+    private OutputStream swap(OutputStream newOutput) {
+        synchronized (this) {
+            if (rollingStopped) {
+                closeQuietly(newOutput);
+                return null;
+            }
+            OutputStream oldOutput = out;
+            try {
+                oldOutput.flush();
+            } catch (IOException e) {
+                setError();
+            }
+            setOutput(newOutput);
+            return oldOutput;
+        }
+    }
+
+    private static void closeQuietly(OutputStream output) {
+        try {
+            output.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    /**
+     * Counts the bytes written to the log file.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(File file) throws FileNotFoundException {
+            super(new FileOutputStream(file, true));
+            count = file.length();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@code longriLogger.logLevel:<name>} entries of the configuration, compiled into a
+ * prefix tree of the characters of the logger names.
+ * <p>
+ * The level of a logger is found with one walk along its name, the last level passed at
+ * a dot or at the end of the name wins. So {@code logLevel:com.foo} is used for
+ * {@code com.foo} and {@code com.foo.Bar}, but not for {@code com.foobar}. Nothing is
+ * allocated while searching. The tree is immutable, a configuration change builds a new one.
+ */
+final class LogLevelTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    static final LogLevelTrie EMPTY = new LogLevelTrie(Collections.emptyMap());
+
+    private static final class Node {
+        /**
+         * Sorted characters of the children, searched binary
+         */
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        String level;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) return children[index];
+            index = -index - 1;
+            Node node = new Node();
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newKeys[index] = c;
+            newChildren[index] = node;
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+    }
+
+    private final Node root = new Node();
+    private final Map<String, String> levels;
+
+    /**
+     * @param levels the level strings by logger name
+     */
+    LogLevelTrie(Map<String, String> levels) {
+        this.levels = levels;
+        for (Map.Entry<String, String> entry : levels.entrySet()) {
+            Node node = root;
+            String name = entry.getKey();
+            for (int i = 0; i < name.length(); i++) {
+                node = node.addChild(name.charAt(i));
+            }
+            node.level = entry.getValue();
+        }
+    }
+
+    /**
+     * Collect the {@code longriLogger.logLevel:} entries of the properties, a system property
+     * overrides the entry of the configuration file.
+     *
+     * @return the level strings by logger name
+     */
+    static Map<String, String> collect(Map<?, ?> properties, Map<?, ?> systemProperties) {
+        Map<String, String> levels = new HashMap<>();
+        addLevels(properties, levels);
+        addLevels(systemProperties, levels);
+        return levels;
+    }
+
+    /**
+     * @return a hash of the {@code longriLogger.logLevel:} entries, which doesn't depend on their order
+     */
+    static long fingerprint(Map<?, ?> properties) {
+        long fingerprint = 0;
+        for (Map.Entry<?, ?> entry : properties.entrySet()) {
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            if (key instanceof String && value instanceof String && ((String) key).startsWith(LongriLogger.LOG_KEY_PREFIX)) {
+                long hash = key.hashCode() * 0x9E3779B97F4A7C15L + value.hashCode();
+                fingerprint += hash ^ (hash >>> 29);
+            }
+        }
+        return fingerprint;
+    }
+
+    private static void addLevels(Map<?, ?> properties, Map<String, String> levels) {
+        for (Map.Entry<?, ?> entry : properties.entrySet()) {
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            if (key instanceof String && value instanceof String && ((String) key).startsWith(LongriLogger.LOG_KEY_PREFIX)) {
+                levels.put(((String) key).substring(LongriLogger.LOG_KEY_PREFIX.length()), (String) value);
+            }
+        }
+    }
+
+    /**
+     * @return true, if the tree was built from the same entries
+     */
+    boolean isSameAs(Map<String, String> levels) {
+        return this.levels.equals(levels);
+    }
+
+    /**
+     * @return the level string of the longest configured name, which is the logger name or
+     * a parent of it, null if there is none
+     */
+    String find(String name) {
+        Node node = root;
+        String level = name.isEmpty() ? root.level : null;
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            node = node.child(name.charAt(i));
+            if (node == null) return level;
+            if (node.level != null && (i + 1 == length || name.charAt(i + 1) == '.')) {
+                level = node.level;
+            }
+        }
+        return level;
+    }
+}
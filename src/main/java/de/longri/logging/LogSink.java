@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+/**
+ * A named output target with its own minimum level, logger name rules and layout, configured by
+ * <pre>
+ * longriLogger.sink.console.target=System.out
+ * longriLogger.sink.console.level=warn
+ * longriLogger.sink.errors.target=error.log
+ * longriLogger.sink.errors.level=error
+ * longriLogger.sink.errors.include=de.longri,com.foo
+ * longriLogger.sink.errors.exclude=com.foo.noisy
+ * longriLogger.sink.errors.pattern=%d [%t] %level %logger - %msg%n
+ * </pre>
+ * The sinks get the events besides the targets of the configuration, the level of the logger
+ * is checked first. A logger name is matched by the longest include or exclude prefix, without
+ * includes all loggers are included. Without a pattern the layout of the configuration is used.
+ */
+class LogSink extends LogTargets {
+
+    private final String name;
+    private final int level;
+    private final String[] includes;
+    private final String[] excludes;
+
+    /**
+     * null for the layout of the configuration
+     */
+    private final PatternLayout layout;
+
+    LogSink(String name, OutputChoice targets, int level, String[] includes, String[] excludes, PatternLayout layout) {
+        super(targets, false);
+        this.name = name;
+        this.level = level;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.layout = layout;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the layout of the sink or of the configuration
+     */
+    PatternLayout layout(ConfigurationSnapshot config) {
+        return layout != null ? layout : config.layout;
+    }
+
+    boolean usesMdc() {
+        return layout != null && layout.usesMdc();
+    }
+
+    /**
+     * @return true, if the logger name isn't excluded by a longer prefix than the longest included one
+     */
+    boolean accepts(String loggerName) {
+        int included = includes.length == 0 ? 0 : longestPrefix(includes, loggerName);
+        int excluded = longestPrefix(excludes, loggerName);
+        return included >= 0 && included >= excluded;
+    }
+
+    /**
+     * @return the length of the longest prefix, which is the name or a parent of it, -1 if there is none
+     */
+    private static int longestPrefix(String[] prefixes, String loggerName) {
+        int longest = -1;
+        for (String prefix : prefixes) {
+            if (prefix.length() > longest && loggerName.startsWith(prefix)
+                    && (loggerName.length() == prefix.length() || loggerName.charAt(prefix.length()) == '.')) {
+                longest = prefix.length();
+            }
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.util.Arrays;
+
+/**
+ * The configured {@link LogSink}s. The sinks, which get the events of a logger, are computed once
+ * per logger and level, a log call then only reads the array of its level.
+ */
+final class LogSinks {
+
+    static final LogSink[] NO_SINKS = new LogSink[0];
+
+    static final LogSinks NONE = new LogSinks("", NO_SINKS);
+
+    /**
+     * The sinks of a logger by level, see {@link #levelIndex(int)}
+     */
+    static final class Routing {
+        final LogSinks owner;
+        private final LogSink[][] byLevel;
+
+        private Routing(LogSinks owner, LogSink[][] byLevel) {
+            this.owner = owner;
+            this.byLevel = byLevel;
+        }
+
+        LogSink[] sinks(int level) {
+            return byLevel[levelIndex(level)];
+        }
+    }
+
+    private final String settings;
+    private final LogSink[] sinks;
+    private final boolean usesMdc;
+    private final Routing empty;
+
+    /**
+     * @param settings the property values, the sinks are opened again if they change
+     */
+    LogSinks(String settings, LogSink[] sinks) {
+        this.settings = settings;
+        this.sinks = sinks;
+        boolean mdc = false;
+        for (LogSink sink : sinks) mdc |= sink.usesMdc();
+        this.usesMdc = mdc;
+        LogSink[][] byLevel = new LogSink[levelIndex(LongriLogger.LOG_LEVEL_ERROR) + 1][];
+        Arrays.fill(byLevel, NO_SINKS);
+        this.empty = new Routing(this, byLevel);
+    }
+
+    String getSettings() {
+        return settings;
+    }
+
+    LogSink[] getSinks() {
+        return sinks;
+    }
+
+    /**
+     * @return true, if one of the sinks has a layout with the MDC
+     */
+    boolean usesMdc() {
+        return usesMdc;
+    }
+
+    private static int levelIndex(int level) {
+        return level / 10;
+    }
+
+    /**
+     * @return the sinks of the logger for each level
+     */
+    Routing routing(String loggerName) {
+        if (sinks.length == 0) return empty;
+        LogSink[][] byLevel = new LogSink[levelIndex(LongriLogger.LOG_LEVEL_ERROR) + 1][];
+        boolean any = false;
+        for (int level = LongriLogger.LOG_LEVEL_TRACE; level <= LongriLogger.LOG_LEVEL_ERROR; level += 10) {
+            int count = 0;
+            LogSink[] accepted = new LogSink[sinks.length];
+            for (LogSink sink : sinks) {
+                if (level >= sink.getLevel() && sink.accepts(loggerName)) accepted[count++] = sink;
+            }
+            byLevel[levelIndex(level)] = count == 0 ? NO_SINKS : Arrays.copyOf(accepted, count);
+            any |= count > 0;
+        }
+        return any ? new Routing(this, byLevel) : empty;
+    }
+
+    void flush() {
+        for (LogSink sink : sinks) sink.flush();
+    }
+
+    /**
+     * Close the log files of the sinks, called with the lock of the configuration after the sinks are replaced.
+     */
+    void close() {
+        for (LogSink sink : sinks) sink.close();
+    }
+}
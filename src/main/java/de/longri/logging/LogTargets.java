@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.io.PrintStream;
+
+/**
+ * Output targets besides the targets of the configuration, like the targets of a marker route
+ * or of a {@link LogSink}. The targets are closed if the configuration replaces them.
+ */
+class LogTargets {
+
+    private final OutputChoice targets;
+    private final boolean includesDefault;
+
+    /**
+     * Set, if the configuration has replaced the targets, a queued event is not written to them
+     */
+    private volatile boolean closed;
+
+    LogTargets(OutputChoice targets, boolean includesDefault) {
+        this.targets = targets;
+        this.includesDefault = includesDefault;
+    }
+
+    OutputChoice getTargets() {
+        return targets;
+    }
+
+    /**
+     * @return true, if the event is written to the targets of the configuration as well
+     */
+    boolean includesDefault() {
+        return includesDefault;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void flush() {
+        for (PrintStream target : targets) target.flush();
+    }
+
+    /**
+     * Close the log files, called with the lock of the configuration after the targets are replaced.
+     */
+    void close() {
+        closed = true;
+        for (PrintStream target : targets) {
+            if (target instanceof LogFileStream) target.close();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+import org.slf4j.event.LoggingEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A mutable log event, which feeds the layout.
+ * <p>
+ * The events are reused: every thread has one event, taken with {@link #acquire()} and given
+ * back with {@link #release()}, and every slot of the {@link AsyncLogWriter} has one. A nested
+ * log call on the same thread, e.g. from a toString() of an argument, gets a new event. The
+ * markers, the added arguments and the key-value pairs are kept in arrays of the event, which
+ * only grow.
+ */
+final class LongriLogEvent {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private static final ThreadLocal<LongriLogEvent> POOL = ThreadLocal.withInitial(LongriLogEvent::new);
+
+    private boolean inUse = false;
+
+    LongriLogger logger;
+
+    /**
+     * The logger name of an event without a logger, like a decoded one
+     */
+    String loggerName;
+    Level level;
+    long timeMillis;
+    String threadName;
+    long threadId;
+    String messagePattern;
+    Throwable throwable;
+
+    /**
+     * The MDC of the thread, only captured if the layout shows it
+     */
+    LongriMDCAdapter.Context mdc;
+
+    /**
+     * The arguments of the message, the array of the caller or {@link #ownArguments}.
+     * Only the first {@link #argumentCount} elements are used.
+     */
+    Object[] arguments;
+    int argumentCount;
+    private Object[] ownArguments = NO_ARGUMENTS;
+
+    private final ArrayList<Marker> markers = new ArrayList<>(2);
+
+    private String[] keys = new String[0];
+    private Object[] values = NO_ARGUMENTS;
+    private int keyValueCount;
+
+    /**
+     * @return the event of the current thread, a new one if it is already in use
+     */
+    static LongriLogEvent acquire() {
+        LongriLogEvent event = POOL.get();
+        if (event.inUse) {
+            return new LongriLogEvent();
+        }
+        event.inUse = true;
+        return event;
+    }
+
+    /**
+     * Reset the event and give it back to the pool of the thread.
+     */
+    void release() {
+        reset();
+        inUse = false;
+    }
+
+    /**
+     * Set the values of a log call on the current thread.
+     */
+    void set(LongriLogger logger, Level level, String messagePattern, Object[] arguments, Throwable throwable) {
+        this.logger = logger;
+        this.level = level;
+        this.messagePattern = messagePattern;
+        this.arguments = arguments;
+        this.argumentCount = arguments == null ? 0 : arguments.length;
+        this.throwable = throwable;
+        stamp();
+    }
+
+    /**
+     * Set the time and the current thread.
+     */
+    void stamp() {
+        Thread thread = Thread.currentThread();
+        this.threadName = thread.getName();
+        this.threadId = thread.getId();
+        this.timeMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Set the values of an SLF4J event, without its argument list and key-value list.
+     */
+    void set(LongriLogger logger, LoggingEvent event) {
+        Object[] arguments = event.getArgumentArray();
+        Throwable throwable = event.getThrowable();
+        if (throwable == null && arguments != null && arguments.length > 0
+                && arguments[arguments.length - 1] instanceof Throwable) {
+            // a trailing throwable, same as NormalizedParameters
+            throwable = (Throwable) arguments[arguments.length - 1];
+        }
+        set(logger, event.getLevel(), event.getMessage(), arguments, throwable);
+        List<Marker> eventMarkers = event.getMarkers();
+        if (eventMarkers != null) markers.addAll(eventMarkers);
+        List<KeyValuePair> keyValuePairs = event.getKeyValuePairs();
+        if (keyValuePairs != null) {
+            for (KeyValuePair pair : keyValuePairs) addKeyValue(pair.key, pair.value);
+        }
+    }
+
+    /**
+     * Copy the event for the async writer, the arguments are captured by {@link ArgumentCapture}.
+     */
+    void captureFrom(LongriLogEvent event) {
+        logger = event.logger;
+        loggerName = event.loggerName;
+        level = event.level;
+        timeMillis = event.timeMillis;
+        threadName = event.threadName;
+        threadId = event.threadId;
+        messagePattern = event.messagePattern;
+        throwable = event.throwable;
+        mdc = event.mdc;
+        if (event.arguments != null) {
+            ensureArguments(event.argumentCount);
+            for (int i = 0; i < event.argumentCount; i++) {
+                Object argument = event.arguments[i];
+                // a trailing throwable is never substituted, its stack trace is rendered on the calling thread
+                boolean trailingThrowable = i == event.argumentCount - 1 && argument instanceof Throwable;
+                ownArguments[i] = trailingThrowable ? argument : ArgumentCapture.capture(argument);
+            }
+            arguments = ownArguments;
+            argumentCount = event.argumentCount;
+        }
+        markers.addAll(event.markers);
+        for (int i = 0; i < event.keyValueCount; i++) {
+            addKeyValue(event.keys[i], ArgumentCapture.capture(event.values[i]));
+        }
+    }
+
+    void reset() {
+        logger = null;
+        loggerName = null;
+        level = null;
+        threadName = null;
+        messagePattern = null;
+        throwable = null;
+        mdc = null;
+        if (arguments == ownArguments) Arrays.fill(ownArguments, 0, argumentCount, null);
+        arguments = null;
+        argumentCount = 0;
+        markers.clear();
+        Arrays.fill(keys, 0, keyValueCount, null);
+        Arrays.fill(values, 0, keyValueCount, null);
+        keyValueCount = 0;
+    }
+
+    void addMarker(Marker marker) {
+        markers.add(marker);
+    }
+
+    /**
+     * @return the markers, null if there are none
+     */
+    List<Marker> getMarkers() {
+        return markers.isEmpty() ? null : markers;
+    }
+
+    void addArgument(Object argument) {
+        if (arguments != ownArguments) {
+            // continue the arguments of the caller in the own array
+            Object[] external = arguments;
+            ensureArguments(argumentCount + 1);
+            if (argumentCount > 0) System.arraycopy(external, 0, ownArguments, 0, argumentCount);
+        } else {
+            ensureArguments(argumentCount + 1);
+        }
+        arguments = ownArguments;
+        arguments[argumentCount++] = argument;
+    }
+
+    private void ensureArguments(int length) {
+        if (ownArguments.length < length) {
+            Object[] grown = new Object[Math.max(length, ownArguments.length * 2)];
+            if (arguments == ownArguments) System.arraycopy(ownArguments, 0, grown, 0, argumentCount);
+            ownArguments = grown;
+        }
+    }
+
+    void addKeyValue(String key, Object value) {
+        if (keys.length == keyValueCount) {
+            int length = Math.max(4, keyValueCount * 2);
+            keys = Arrays.copyOf(keys, length);
+            values = Arrays.copyOf(values, length);
+        }
+        keys[keyValueCount] = key;
+        values[keyValueCount] = value;
+        keyValueCount++;
+    }
+
+    String getLoggerName() {
+        return logger != null ? logger.getName() : loggerName;
+    }
+
+    /**
+     * @return the part of the logger name behind the last dot
+     */
+    String getShortLoggerName() {
+        if (logger != null) return logger.getShortName();
+        return loggerName.substring(loggerName.lastIndexOf('.') + 1);
+    }
+
+    int getKeyValueCount() {
+        return keyValueCount;
+    }
+
+    String getKey(int index) {
+        return keys[index];
+    }
+
+    Object getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Append the key-value pairs and the formatted message, in the same way SLF4J merges
+     * them for a logger, which doesn't handle events.
+     */
+    void appendMessage(StringBuilder buf) {
+        for (int i = 0; i < keyValueCount; i++) {
+            buf.append(keys[i]).append('=');
+            LongriMessageFormatter.appendArgument(buf, values[i]);
+            buf.append(' ');
+        }
+        LongriMessageFormatter.appendFormatted(buf, messagePattern, arguments, argumentCount);
+    }
+}
@@ -28,12 +28,9 @@ import org.slf4j.Marker;
 import org.slf4j.event.Level;
 import org.slf4j.event.LoggingEvent;
 import org.slf4j.helpers.LegacyAbstractLogger;
-import org.slf4j.helpers.MessageFormatter;
-import org.slf4j.helpers.NormalizedParameters;
+import org.slf4j.spi.LoggingEventBuilder;
 
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -101,6 +98,26 @@ import java.util.List;
  * <li><code>org.slf4j.simpleLogger.warnLevelString</code> - The string value
  * output for the warn level. Defaults to <code>WARN</code>.</li>
  *
+ * <li><code>longriLogger.pattern</code> - The layout of the output messages,
+ * like <code>%d{HH:mm:ss.SSS} [%t] %level %logger{short} - %msg%n</code>, see
+ * {@link PatternLayout}. If it is set, the settings above for the parts of the
+ * line are not used.</li>
+ *
+ * <li><code>longriLogger.markerDeny</code> - The names of markers, separated by
+ * commas, whose events are dropped before they are formatted, like
+ * <code>PERF,SQL</code>.</li>
+ *
+ * <li><code>longriLogger.markerRoute:&lt;markerName&gt;</code> - The targets of
+ * events with the marker, separated by commas, like <code>audit.log</code> or
+ * <code>security.log,default</code>. The target <code>default</code> adds the
+ * log targets above. See {@link MarkerRules}.</li>
+ *
+ * <li><code>longriLogger.sink.&lt;name&gt;.target</code> - An additional output
+ * target with its own <code>.level</code>, <code>.include</code> and
+ * <code>.exclude</code> logger names and <code>.pattern</code>, like
+ * <code>longriLogger.sink.errors.target=error.log</code> and
+ * <code>longriLogger.sink.errors.level=error</code>. See {@link LogSink}.</li>
+ *
  * </ul>
  *
  * <p>
@@ -146,7 +163,7 @@ import java.util.List;
  */
 public class LongriLogger extends LegacyAbstractLogger {
 
-    private static final long START_TIME = System.currentTimeMillis();
+    static final long START_TIME = System.currentTimeMillis();
 
     public static final int LOG_LEVEL_TRACE = 0;
     public static final int LOG_LEVEL_DEBUG = 10;
@@ -163,6 +180,37 @@ public class LongriLogger extends LegacyAbstractLogger {
     // no printing method associated with it in o.s.Logger interface.
     protected static final int LOG_LEVEL_OFF = LOG_LEVEL_ERROR + 10;
 
+    private static final int MAX_LINE_BUFFER_CAPACITY = 16 * 1024;
+
+    /**
+     * Per thread reusable buffer for the log line. A nested log call on the same
+     * thread (e.g. from a toString() of an argument) gets its own buffer.
+     */
+    private static final class LineBuffer {
+        private StringBuilder buffer = new StringBuilder(256);
+        private boolean inUse = false;
+
+        StringBuilder acquire() {
+            if (inUse) {
+                return new StringBuilder(256);
+            }
+            inUse = true;
+            buffer.setLength(0);
+            return buffer;
+        }
+
+        void release(StringBuilder buf) {
+            if (buf != buffer) return;
+            inUse = false;
+            if (buffer.capacity() > MAX_LINE_BUFFER_CAPACITY) {
+                // don't keep huge buffers of single big messages
+                buffer = new StringBuilder(256);
+            }
+        }
+    }
+
+    private static final ThreadLocal<LineBuffer> LINE_BUFFER = ThreadLocal.withInitial(LineBuffer::new);
+
     private static boolean INITIALIZED = false;
     static public final LongriLoggerConfiguration CONFIG_PARAMS = new LongriLoggerConfiguration();
 
@@ -185,9 +233,15 @@ public class LongriLogger extends LegacyAbstractLogger {
     }
 
     /**
-     * The current log level
+     * The current log level, volatile because it can be changed at runtime, see
+     * {@link LongriLoggerConfiguration#setLogLevel(String, String)}
      */
-    protected int currentLogLevel = LOG_LEVEL_INFO;
+    protected volatile int currentLogLevel = LOG_LEVEL_INFO;
+
+    /**
+     * The sinks of this logger by level, computed again if the configured sinks are replaced
+     */
+    private LogSinks.Routing sinkRouting = null;
     /**
      * The short name of this simple log instance
      */
@@ -216,6 +270,16 @@ public class LongriLogger extends LegacyAbstractLogger {
 
     public static final String LOG_FILE_PATTERN_KEY = LongriLogger.SYSTEM_PREFIX + "logFilePattern";
 
+    public static final String LOG_FILE_MAX_SIZE_KEY = LongriLogger.SYSTEM_PREFIX + "logFileMaxSize";
+
+    public static final String LOG_FILE_TIME_ROLLING_KEY = LongriLogger.SYSTEM_PREFIX + "logFileTimeRolling";
+
+    public static final String LOG_FILE_COMPRESSION_LEVEL_KEY = LongriLogger.SYSTEM_PREFIX + "logFileCompressionLevel";
+
+    public static final String LOG_FILE_TOTAL_SIZE_CAP_KEY = LongriLogger.SYSTEM_PREFIX + "logFileTotalSizeCap";
+
+    public static final String LOG_FILE_MAX_HISTORY_KEY = LongriLogger.SYSTEM_PREFIX + "logFileMaxHistory";
+
     public static final String SYS_LOG_KEY = LongriLogger.SYSTEM_PREFIX + "sysLog";
 
     public static final String DEFAULT_LOG = "System.out";
@@ -232,10 +296,52 @@ public class LongriLogger extends LegacyAbstractLogger {
 
     public static final String SHOW_DATE_TIME_KEY = LongriLogger.SYSTEM_PREFIX + "showDateTime";
 
+    public static final String PATTERN_KEY = LongriLogger.SYSTEM_PREFIX + "pattern";
+
+    public static final String MARKER_DENY_KEY = LongriLogger.SYSTEM_PREFIX + "markerDeny";
+
+    public static final String MARKER_ROUTE_PREFIX = LongriLogger.SYSTEM_PREFIX + "markerRoute:";
+
+    public static final String SINK_PREFIX = LongriLogger.SYSTEM_PREFIX + "sink.";
+
     public static final String DEFAULT_LOG_LEVEL_KEY = LongriLogger.SYSTEM_PREFIX + "defaultLogLevel";
 
     public static final String LOG_COLORFUL_KEY = LongriLogger.SYSTEM_PREFIX + "logColorful";
 
+    public static final String LOG_FILE_SINK_KEY = LongriLogger.SYSTEM_PREFIX + "logFileSink";
+
+    public static final String LOG_FILE_BUFFER_SIZE_KEY = LongriLogger.SYSTEM_PREFIX + "logFileBufferSize";
+
+    public static final String LOG_FILE_MAP_SIZE_KEY = LongriLogger.SYSTEM_PREFIX + "logFileMapSize";
+
+    public static final String FLUSH_POLICY_KEY = LongriLogger.SYSTEM_PREFIX + "flushPolicy";
+
+    public static final String FLUSH_EVERY_RECORDS_KEY = LongriLogger.SYSTEM_PREFIX + "flushEveryRecords";
+
+    public static final String FLUSH_INTERVAL_MILLIS_KEY = LongriLogger.SYSTEM_PREFIX + "flushIntervalMillis";
+
+    public static final String FLUSH_ON_LEVEL_KEY = LongriLogger.SYSTEM_PREFIX + "flushOnLevel";
+
+    public static final String STACK_TRACE_MAX_FRAMES_KEY = LongriLogger.SYSTEM_PREFIX + "stackTraceMaxFrames";
+
+    public static final String STACK_TRACE_FOLD_KEY = LongriLogger.SYSTEM_PREFIX + "stackTraceFold";
+
+    public static final String STACK_TRACE_CACHE_SIZE_KEY = LongriLogger.SYSTEM_PREFIX + "stackTraceCacheSize";
+
+    public static final String STACK_TRACE_REPEAT_WINDOW_MILLIS_KEY = LongriLogger.SYSTEM_PREFIX + "stackTraceRepeatWindowMillis";
+
+    public static final String ASYNC_KEY = LongriLogger.SYSTEM_PREFIX + "async";
+
+    public static final String ASYNC_CAPACITY_KEY = LongriLogger.SYSTEM_PREFIX + "asyncCapacity";
+
+    public static final String ASYNC_WAIT_STRATEGY_KEY = LongriLogger.SYSTEM_PREFIX + "asyncWaitStrategy";
+
+    public static final String ASYNC_QUEUE_FULL_POLICY_KEY = LongriLogger.SYSTEM_PREFIX + "asyncQueueFullPolicy";
+
+    public static final String ASYNC_DROP_LEVEL_KEY = LongriLogger.SYSTEM_PREFIX + "asyncDropLevel";
+
+    public static final String ASYNC_DEFER_FORMATTING_KEY = LongriLogger.SYSTEM_PREFIX + "asyncDeferFormatting";
+
     /**
      * Package access allows only {@link LongriLoggerFactory} to instantiate
      * SimpleLogger instances.
@@ -244,73 +350,207 @@ public class LongriLogger extends LegacyAbstractLogger {
         this.name = name;
         lazyInit();
 
-        String levelString = recursivelyComputeLevelString();
+        updateLevel(CONFIG_PARAMS.snapshot);
+    }
+
+    /**
+     * Set the level of the logger name or of the nearest parent, the default level if there is none.
+     */
+    void updateLevel(ConfigurationSnapshot config) {
+        String levelString = config.logLevels.find(name);
         if (levelString != null) {
             this.currentLogLevel = LongriLoggerConfiguration.stringToLevel(levelString);
         } else {
-            this.currentLogLevel = CONFIG_PARAMS.defaultLogLevel;
+            this.currentLogLevel = config.defaultLogLevel;
         }
     }
 
+    /**
+     * @return the level of the logger name or of the nearest parent, see {@link LogLevelTrie}
+     */
     String recursivelyComputeLevelString() {
-        String tempName = name;
-        String levelString = null;
-        int indexOfLastDot = tempName.length();
-        while ((levelString == null) && (indexOfLastDot > -1)) {
-            tempName = tempName.substring(0, indexOfLastDot);
-            levelString = CONFIG_PARAMS.getStringProperty(LongriLogger.LOG_KEY_PREFIX + tempName, null);
-            indexOfLastDot = String.valueOf(tempName).lastIndexOf(".");
+        return CONFIG_PARAMS.snapshot.logLevels.find(name);
+    }
+
+    /**
+     * Hand over the line to the async writer, if configured, or write it
+     * directly to all targets.
+     *
+     * @param level
+     * @param buf
+     * @param trace      the rendered stack trace, null without a throwable
+     * @param resetColor
+     */
+    void write(Level level, StringBuilder buf, String trace, boolean resetColor) {
+        write(level, buf, trace, resetColor, null);
+    }
+
+    /**
+     * @param route the targets of a marker route or a {@link LogSink}, null for the targets of the configuration
+     */
+    void write(Level level, StringBuilder buf, String trace, boolean resetColor, LogTargets route) {
+        AsyncLogWriter asyncWriter = CONFIG_PARAMS.asyncWriter;
+        if (asyncWriter != null) {
+            asyncWriter.publish(this, level.toInt(), buf, trace, resetColor, route);
+            return;
         }
-        return levelString;
+        writeToTargets(level.toInt(), buf, trace, resetColor, false, route);
     }
 
     /**
      * To avoid intermingling of log messages and associated stack traces, the two
-     * operations are done in a synchronized block.
+     * operations are done while holding the lock of the target. Each target has its
+     * own lock, a slow target doesn't stall the writes to the other targets.
      *
-     * @param buf
-     * @param t
+     * @param level
+     * @param line
+     * @param trace      the rendered stack trace, null without a throwable
      * @param resetColor
+     * @param inBatch    true, if the async writer has more lines to write
+     */
+    void writeToTargets(int level, CharSequence line, String trace, boolean resetColor, boolean inBatch) {
+        writeToTargets(level, line, trace, resetColor, inBatch, null);
+    }
+
+    /**
+     * @param route the targets of a marker route or a {@link LogSink}, null for the targets of the configuration
      */
-    void write(StringBuilder buf, Throwable t, boolean resetColor) {
+    void writeToTargets(int level, CharSequence line, String trace, boolean resetColor, boolean inBatch, LogTargets route) {
+        if (route != null && route.isClosed()) {
+            // a replaced sink is dropped, the event of a replaced marker route goes to the targets of the configuration
+            if (route instanceof LogSink) return;
+            route = null;
+        }
+        if (route != null) {
+            if (!writeToTargets(route.getTargets(), line, trace, resetColor)) {
+                // the route was replaced while writing
+                if (route instanceof LogSink) return;
+                route = null;
+            } else if (!route.includesDefault()) {
+                if (CONFIG_PARAMS.flushPolicy.onRecord(level, inBatch)) flush(route.getTargets());
+                return;
+            }
+        }
         List<PrintStream> targetStreamList = CONFIG_PARAMS.outputChoice;
+        if (!writeToTargets(targetStreamList, line, trace, resetColor)) {
+            targetStreamList = writeToReplacedTargets(targetStreamList, line, trace, resetColor);
+        }
+        if (CONFIG_PARAMS.flushPolicy.onRecord(level, inBatch)) {
+            flush(targetStreamList);
+            if (route != null) flush(route.getTargets());
+        }
+    }
 
-        synchronized (CONFIG_PARAMS) {
-            for (PrintStream targetStream : targetStreamList) {
-                targetStream.println(buf.toString());
-                writeThrowable(t, targetStream);
-                if (resetColor) {
-                    if (t != null) {
-                        targetStream.println(AnsiColor.D_RESET);
-                    } else {
-                        targetStream.print(AnsiColor.B_RESET);
-                    }
+    /**
+     * Write the line to each target while holding the lock of the target.
+     *
+     * @return false, if a target was closed, because the configuration has replaced it
+     */
+    private boolean writeToTargets(List<PrintStream> targetStreamList, CharSequence line, String trace, boolean resetColor) {
+        boolean written = true;
+        // one string for all PrintStream targets
+        String text = null;
+        for (PrintStream targetStream : targetStreamList) {
+            if (text == null && !(targetStream instanceof BufferedLogFileStream)) text = line.toString();
+            if (!writeToTarget(targetStream, line, text, trace, resetColor)) written = false;
+        }
+        return written;
+    }
+
+    /**
+     * The line and the stack trace are written in one block, they stay together in each target.
+     *
+     * @return false, if the target was closed, because the configuration has replaced it
+     */
+    private boolean writeToTarget(PrintStream targetStream, CharSequence line, String text, String trace, boolean resetColor) {
+        synchronized (targetStream) {
+            if (targetStream instanceof LogFileStream && ((LogFileStream) targetStream).isClosed()) return false;
+            if (targetStream instanceof BufferedLogFileStream) {
+                ((BufferedLogFileStream) targetStream).writeLine(line);
+            } else {
+                targetStream.println(text);
+            }
+            if (trace != null) targetStream.print(trace);
+            if (resetColor) {
+                if (trace != null) {
+                    targetStream.println(AnsiColor.D_RESET);
+                } else {
+                    targetStream.print(AnsiColor.B_RESET);
                 }
-                targetStream.flush();
             }
         }
+        if (targetStream instanceof LogFileStream) {
+            // other threads can write meanwhile, a roll only blocks them while the output is swapped
+            ((LogFileStream) targetStream).rollIfTooLarge();
+        }
+        return true;
+    }
+
+    /**
+     * The targets of the configuration were replaced while writing. The configuration replaces them
+     * while holding its lock, so the new targets are read with the lock and the line is written to
+     * the targets, which are new.
+     *
+     * @return the new targets
+     */
+    private List<PrintStream> writeToReplacedTargets(List<PrintStream> oldTargets, CharSequence line, String trace, boolean resetColor) {
+        List<PrintStream> targetStreamList;
+        synchronized (CONFIG_PARAMS) {
+            targetStreamList = CONFIG_PARAMS.outputChoice;
+        }
+        if (targetStreamList == oldTargets) return targetStreamList;
+        String text = line.toString();
+        for (PrintStream targetStream : targetStreamList) {
+            if (!oldTargets.contains(targetStream)) writeToTarget(targetStream, line, text, trace, resetColor);
+        }
+        return targetStreamList;
+    }
 
+    /**
+     * Called from the async writer, after all queued lines are written.
+     */
+    static void onBatchEnd() {
+        if (CONFIG_PARAMS.flushPolicy.onBatchEnd()) {
+            flushTargets();
+        }
     }
 
-    protected void writeThrowable(Throwable t, PrintStream targetStream) {
-        if (t != null) {
-            t.printStackTrace(targetStream);
+    /**
+     * Called from the flush timer, flush lines which are pending longer than the flush interval.
+     */
+    static void flushTargetsIfOverdue() {
+        if (CONFIG_PARAMS.flushPolicy.isOverdue()) {
+            flushTargets();
         }
     }
 
-    private String getFormattedDate() {
-        Date now = new Date();
-        String dateText;
-        synchronized (CONFIG_PARAMS.dateFormatter) {
-            dateText = CONFIG_PARAMS.dateFormatter.format(now);
+    /**
+     * Flush the targets of the configuration, of the marker routes and of the sinks. Each
+     * target is flushed with its own lock.
+     */
+    static void flushTargets() {
+        flush(CONFIG_PARAMS.outputChoice);
+        ConfigurationSnapshot config = CONFIG_PARAMS.snapshot;
+        config.markerRules.flush();
+        config.sinks.flush();
+    }
+
+    private static void flush(List<PrintStream> targetStreamList) {
+        for (PrintStream targetStream : targetStreamList) {
+            targetStream.flush();
         }
-        return dateText;
     }
 
     private String computeShortName() {
         return name.substring(name.lastIndexOf(".") + 1);
     }
 
+    String getShortName() {
+        if (shortLogName == null)
+            shortLogName = computeShortName();
+        return shortLogName;
+    }
+
     // /**
     // * For formatted messages, first substitute arguments and then log.
     // *
@@ -390,85 +630,121 @@ public class LongriLogger extends LegacyAbstractLogger {
         return isLevelEnabled(LOG_LEVEL_ERROR);
     }
 
-    private void innerHandleNormalizedLoggingCall(Level level, List<Marker> markers, String messagePattern, Object[] arguments, Throwable t) {
+    /**
+     * Format and write the event, or hand it over to the async writer.
+     */
+    void handle(LongriLogEvent event) {
+        // one read, all values of the same configuration
+        ConfigurationSnapshot config = CONFIG_PARAMS.snapshot;
+        LogTargets route = config.markerRules.route(event.getMarkers());
+        if (route == MarkerRules.DROP) return;
+        LogSink[] sinks = sinks(config.sinks, event.level.toInt());
+        if (config.layout.usesMdc() || (sinks.length > 0 && config.sinks.usesMdc())) {
+            // immutable, can be handed over to the async writer
+            event.mdc = LongriMDCAdapter.context();
+        }
+
+        // if published deferred, the line is formatted on the writer thread
+        AsyncLogWriter asyncWriter = CONFIG_PARAMS.asyncWriter;
+        boolean defer = asyncWriter != null && asyncWriter.isDeferFormatting();
+
+        LineBuffer lineBuffer = LINE_BUFFER.get();
+        StringBuilder buf = lineBuffer.acquire();
+        try {
+            // first all targets with the layout of the configuration, the line is formatted once
+            boolean formatted = false;
+            boolean resetColor = false;
+            // rendered once for all targets, a structured layout renders the throwable in the line
+            String trace = event.throwable != null && rendersTrace(config, sinks)
+                    ? CONFIG_PARAMS.throwableRenderer.render(event.throwable, event.timeMillis) : null;
+            String t = config.layout.isStructured() ? null : trace;
+            if (!defer || !asyncWriter.publishDeferred(config, event, route, trace)) {
+                resetColor = appendLine(buf, config, config.layout, event);
+                formatted = true;
+                write(event.level, buf, t, resetColor, route);
+            }
+            boolean ownLayouts = false;
+            for (LogSink sink : sinks) {
+                if (sink instanceof BinaryLogSink) {
+                    // the event is encoded, not formatted
+                    if (!defer || !asyncWriter.publishDeferred(config, event, sink, null)) ((BinaryLogSink) sink).write(event, false);
+                    continue;
+                }
+                if (sink.layout(config) != config.layout) {
+                    ownLayouts = true;
+                    continue;
+                }
+                if (defer && asyncWriter.publishDeferred(config, event, sink, trace)) continue;
+                if (!formatted) {
+                    resetColor = appendLine(buf, config, config.layout, event);
+                    formatted = true;
+                }
+                write(event.level, buf, t, resetColor, sink);
+            }
+            if (!ownLayouts) return;
+
+            for (LogSink sink : sinks) {
+                PatternLayout layout = sink.layout(config);
+                if (layout == config.layout || (defer && asyncWriter.publishDeferred(config, event, sink, trace))) continue;
+                buf.setLength(0);
+                resetColor = appendLine(buf, config, layout, event);
+                write(event.level, buf, layout.isStructured() ? null : trace, resetColor, sink);
+            }
+        } finally {
+            lineBuffer.release(buf);
+        }
+    }
+
+    /**
+     * @return true, if a target of the event writes the stack trace behind the line
+     */
+    private static boolean rendersTrace(ConfigurationSnapshot config, LogSink[] sinks) {
+        if (!config.layout.isStructured()) return true;
+        for (LogSink sink : sinks) {
+            if (!(sink instanceof BinaryLogSink) && !sink.layout(config).isStructured()) return true;
+        }
+        return false;
+    }
 
-        StringBuilder buf = new StringBuilder(32);
+    /**
+     * @return the sinks of this logger for the level, computed once for the configured sinks
+     */
+    private LogSink[] sinks(LogSinks sinks, int level) {
+        LogSinks.Routing routing = sinkRouting;
+        if (routing == null || routing.owner != sinks) {
+            routing = sinks.routing(name);
+            sinkRouting = routing;
+        }
+        return routing.sinks(level);
+    }
 
+    /**
+     * Append the line of an event, colored and laid out as configured by the snapshot.
+     *
+     * @return true, if the color must be reset behind the line
+     */
+    static boolean appendLine(StringBuilder buf, ConfigurationSnapshot config, PatternLayout layout, LongriLogEvent event) {
         boolean resetColor = false;
-        if (CONFIG_PARAMS.logColorful) {
-            if (level.toInt() >= LOG_LEVEL_ERROR) {
+        if (config.logColorful && !layout.isStructured()) {
+            int level = event.level.toInt();
+            if (level >= LOG_LEVEL_ERROR) {
                 buf.append(AnsiColor.D_ERROR);
                 resetColor = true;
-            } else if (level.toInt() >= LOG_LEVEL_WARN) {
+            } else if (level >= LOG_LEVEL_WARN) {
                 buf.append(AnsiColor.D_WARN);
                 resetColor = true;
-            } else if (level.toInt() >= LOG_LEVEL_INFO) {
+            } else if (level >= LOG_LEVEL_INFO) {
                 buf.append(AnsiColor.D_INFO);
                 resetColor = true;
-            } else if (level.toInt() == LOG_LEVEL_TRACE) {
+            } else if (level == LOG_LEVEL_TRACE) {
                 buf.append(AnsiColor.D_TRACE);
                 resetColor = true;
             }
         }
 
-
-        // Append date-time if so configured
-        if (CONFIG_PARAMS.showDateTime) {
-            if (CONFIG_PARAMS.dateFormatter != null) {
-                buf.append(getFormattedDate());
-                buf.append(SP);
-            } else {
-                buf.append(System.currentTimeMillis() - START_TIME);
-                buf.append(SP);
-            }
-        }
-
-        // Append current thread name if so configured
-        if (CONFIG_PARAMS.showThreadName) {
-            buf.append('[');
-            buf.append(Thread.currentThread().getName());
-            buf.append("] ");
-        }
-
-        if (CONFIG_PARAMS.showThreadId) {
-            buf.append(TID_PREFIX);
-            buf.append(Thread.currentThread().getId());
-            buf.append(SP);
-        }
-
-        if (CONFIG_PARAMS.levelInBrackets)
-            buf.append('[');
-
-        // Append a readable representation of the log level
-        String levelStr = level.name();
-        buf.append(levelStr);
-        if (CONFIG_PARAMS.levelInBrackets)
-            buf.append(']');
-        buf.append(SP);
-
-        // Append the name of the log instance if so configured
-        if (CONFIG_PARAMS.showShortLogName) {
-            if (shortLogName == null)
-                shortLogName = computeShortName();
-            buf.append(String.valueOf(shortLogName)).append(" - ");
-        } else if (CONFIG_PARAMS.showLogName) {
-            buf.append(String.valueOf(name)).append(" - ");
-        }
-
-        if (markers != null) {
-            buf.append(SP);
-            for (Marker marker : markers) {
-                buf.append(marker.getName()).append(SP);
-            }
-        }
-
-        String formattedMessage = MessageFormatter.arrayFormat(messagePattern, arguments).getMessage();
-
-        // Append the message
-        buf.append(formattedMessage);
-
-
-        write(buf, t, resetColor);
+        // Append the line as compiled from the pattern
+        layout.format(buf, event);
+        return resetColor;
     }
 
     public void log(LoggingEvent event) {
@@ -478,9 +754,22 @@ public class LongriLogger extends LegacyAbstractLogger {
             return;
         }
 
-        NormalizedParameters np = NormalizedParameters.normalize(event);
+        LongriLogEvent logEvent = LongriLogEvent.acquire();
+        try {
+            logEvent.set(this, event);
+            handle(logEvent);
+        } finally {
+            logEvent.release();
+        }
+    }
 
-        innerHandleNormalizedLoggingCall(event.getLevel(), null, np.getMessage(), np.getArguments(), event.getThrowable());
+    /**
+     * The events of the fluent API are built in a reused builder of the thread, see
+     * {@link LongriLoggingEventBuilder}.
+     */
+    @Override
+    public LoggingEventBuilder makeLoggingEventBuilder(Level level) {
+        return LongriLoggingEventBuilder.acquire(this, level);
     }
 
     @Override
@@ -502,15 +791,16 @@ public class LongriLogger extends LegacyAbstractLogger {
      */
     @Override
     protected void handleNormalizedLoggingCall(Level level, Marker marker, String messagePattern, Object[] arguments, Throwable throwable) {
-
-        List<Marker> markers = null;
-
-        if (marker != null) {
-            markers = new ArrayList<>();
-            markers.add(marker);
+        LongriLogEvent event = LongriLogEvent.acquire();
+        try {
+            event.set(this, level, messagePattern, arguments, throwable);
+            if (marker != null) {
+                event.addMarker(marker);
+            }
+            handle(event);
+        } finally {
+            event.release();
         }
-
-        innerHandleNormalizedLoggingCall(level, markers, messagePattern, arguments, throwable);
     }
 
     String getLevelName() {
@@ -23,14 +23,23 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.FileTime;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 /**
  * This class holds configuration values for {@link LongriLogger}. The
@@ -53,21 +62,10 @@ public class LongriLoggerConfiguration {
     private static InputStream CONFIGURATION_FILE;
 
     static int DEFAULT_LOG_LEVEL_DEFAULT = LongriLogger.LOG_LEVEL_INFO;
-    int defaultLogLevel = DEFAULT_LOG_LEVEL_DEFAULT;
-
     private static final boolean SHOW_DATE_TIME_DEFAULT = false;
-    boolean showDateTime = SHOW_DATE_TIME_DEFAULT;
-
     private static final boolean LOG_COLORFUL = true;
-    boolean logColorful = LOG_COLORFUL;
-
     private static final String DATE_TIME_FORMAT_STR_DEFAULT = null;
-    private static String dateTimeFormatStr = DATE_TIME_FORMAT_STR_DEFAULT;
-
-    DateFormat dateFormatter = null;
-
     private static final boolean SHOW_THREAD_NAME_DEFAULT = true;
-    boolean showThreadName = SHOW_THREAD_NAME_DEFAULT;
 
     /**
      * See https://jira.qos.ch/browse/SLF4J-499
@@ -75,31 +73,110 @@ public class LongriLoggerConfiguration {
      * @since 1.7.33 and 2.0.0-alpha6
      */
     private static final boolean SHOW_THREAD_ID_DEFAULT = false;
-    boolean showThreadId = SHOW_THREAD_ID_DEFAULT;
-
     final static boolean SHOW_LOG_NAME_DEFAULT = true;
-    boolean showLogName = SHOW_LOG_NAME_DEFAULT;
-
     private static final boolean SHOW_SHORT_LOG_NAME_DEFAULT = false;
-    boolean showShortLogName = SHOW_SHORT_LOG_NAME_DEFAULT;
-
     private static final boolean LEVEL_IN_BRACKETS_DEFAULT = false;
-    boolean levelInBrackets = LEVEL_IN_BRACKETS_DEFAULT;
+    private static final String WARN_LEVELS_STRING_DEFAULT = "WARN";
+
+    /**
+     * The values read while logging, replaced as a whole if the properties are applied
+     */
+    volatile ConfigurationSnapshot snapshot = new ConfigurationSnapshot(-1, DEFAULT_LOG_LEVEL_DEFAULT, LogLevelTrie.EMPTY,
+            LOG_COLORFUL, PatternLayout.compile(PatternLayout.fromSettings(SHOW_DATE_TIME_DEFAULT, DATE_TIME_FORMAT_STR_DEFAULT,
+            SHOW_THREAD_NAME_DEFAULT, SHOW_THREAD_ID_DEFAULT, LEVEL_IN_BRACKETS_DEFAULT, SHOW_SHORT_LOG_NAME_DEFAULT,
+            SHOW_LOG_NAME_DEFAULT)), WARN_LEVELS_STRING_DEFAULT, MarkerRules.NONE, LogSinks.NONE);
+
+    /**
+     * Counts the changes of the properties, the snapshot is built again only if it differs
+     * from the version of the snapshot
+     */
+    private final AtomicLong propertyVersion = new AtomicLong();
+
+    /**
+     * The output settings of the current {@link #outputChoice}, the log files are opened
+     * again only if they have changed
+     */
+    private String outputSettings = null;
 
     private static final String LOG_FILE_DEFAULT = "System.err";
 
     public void setOutputChoice(OutputChoice choice) {
-        outputChoice = choice;
+        synchronized (this) {
+            closeReplacedFileStreams(outputChoice, choice);
+            outputChoice = choice;
+        }
+    }
+
+    /**
+     * Close the log files of the old choice, which are not used by the new one.
+     * A memory mapped file must be released, before the file is opened again.
+     */
+    private static void closeReplacedFileStreams(OutputChoice oldChoice, OutputChoice newChoice) {
+        if (oldChoice == null) return;
+        for (PrintStream stream : oldChoice) {
+            if (stream instanceof LogFileStream && (newChoice == null || !newChoice.contains(stream))) {
+                stream.close();
+            }
+        }
     }
 
     public void addOutputChoice(PrintStream stream) {
-        outputChoice.add(stream);
+        synchronized (this) {
+            // the writers iterate the current choice without a lock, it is replaced as a whole
+            OutputChoice choice = new OutputChoice();
+            choice.addAll(outputChoice);
+            choice.add(stream);
+            outputChoice = choice;
+        }
     }
 
-    OutputChoice outputChoice = null;
+    /**
+     * The targets of the configuration, read by the writers without a lock. Replaced while
+     * holding the lock of this configuration, replaced log files are closed with the same lock.
+     */
+    volatile OutputChoice outputChoice = null;
+
+    private static final String LOG_FILE_SINK_DEFAULT = "stream";
+    private static final int LOG_FILE_BUFFER_SIZE_DEFAULT = 64 * 1024;
+    private static final int LOG_FILE_MAP_SIZE_DEFAULT = 32 * 1024 * 1024;
+    private static final String LOG_FILE_MAX_SIZE_DEFAULT = "0";
+    private static final boolean LOG_FILE_TIME_ROLLING_DEFAULT = true;
+    private static final int LOG_FILE_COMPRESSION_LEVEL_DEFAULT = Deflater.DEFAULT_COMPRESSION;
+    private static final String LOG_FILE_TOTAL_SIZE_CAP_DEFAULT = "0";
+    private static final int LOG_FILE_MAX_HISTORY_DEFAULT = 0;
+
+    private static final String FLUSH_POLICY_DEFAULT = "immediate";
+    private static final int FLUSH_EVERY_RECORDS_DEFAULT = 128;
+    private static final int FLUSH_INTERVAL_MILLIS_DEFAULT = 1000;
+    private static final String FLUSH_ON_LEVEL_DEFAULT = "warn";
 
-    private static final String WARN_LEVELS_STRING_DEFAULT = "WARN";
-    String warnLevelString = WARN_LEVELS_STRING_DEFAULT;
+    /**
+     * Decides when the output targets are flushed, replaced while holding the lock of this configuration
+     */
+    volatile FlushPolicy flushPolicy = new FlushPolicy(FlushPolicy.Mode.IMMEDIATE, FLUSH_EVERY_RECORDS_DEFAULT,
+            FLUSH_INTERVAL_MILLIS_DEFAULT, stringToLevel(FLUSH_ON_LEVEL_DEFAULT));
+
+    private static final int STACK_TRACE_MAX_FRAMES_DEFAULT = 0;
+    private static final int STACK_TRACE_CACHE_SIZE_DEFAULT = 256;
+    private static final int STACK_TRACE_REPEAT_WINDOW_MILLIS_DEFAULT = 0;
+
+    /**
+     * Renders the stack traces for the text targets, replaced while holding the lock of this configuration
+     */
+    volatile ThrowableRenderer throwableRenderer = ThrowableRenderer.DEFAULT;
+
+    private static final boolean ASYNC_DEFAULT = false;
+    private static final int ASYNC_CAPACITY_DEFAULT = 8192;
+    private static final String ASYNC_WAIT_STRATEGY_DEFAULT = "park";
+    private static final String ASYNC_QUEUE_FULL_POLICY_DEFAULT = "block";
+    private static final String ASYNC_DROP_LEVEL_DEFAULT = "warn";
+    private static final boolean ASYNC_DEFER_FORMATTING_DEFAULT = false;
+
+    /**
+     * The writer thread for async logging, null if the log lines are written on the caller thread
+     */
+    volatile AsyncLogWriter asyncWriter = null;
+    private boolean shutdownHookRegistered = false;
 
     private final Properties properties = new Properties();
 
@@ -113,23 +190,115 @@ public class LongriLoggerConfiguration {
     void init(InputStream inputStream) {
         loadProperties(inputStream);
 
-        applayProperties();
+        apply(true);
     }
 
+    /**
+     * Read all properties again, also the system properties, and publish a new snapshot.
+     * The log files are opened again, if their settings have changed.
+     */
     void applayProperties() {
+        apply(false);
+    }
+
+    /**
+     * Apply the properties, if they were changed since the last snapshot. Only the version
+     * counter is compared, this is cheap enough for every {@link LongriLoggerFactory#getLogger(String)}.
+     */
+    void applyIfChanged() {
+        if (snapshot.version == propertyVersion.get()) return;
+        synchronized (applyLock) {
+            if (snapshot.version != propertyVersion.get()) apply(false);
+        }
+    }
+
+    private final Object applyLock = new Object();
+
+    /**
+     * Held while a snapshot with other logger levels is published and the cached loggers are
+     * changed, so a logger created at the same time doesn't keep an old level
+     */
+    final Object levelLock = new Object();
+
+    /**
+     * Set the level of a logger and of all loggers below it at runtime, the loggers which are
+     * already created are changed too. A more specific level of a logger below keeps its level.
+     * <p>
+     * The level is stored like the property {@code longriLogger.logLevel:<loggerName>}.
+     * Disabled log calls stay a read of one field.
+     *
+     * @param loggerName the name of a logger or of a parent, like {@code com.foo}
+     * @param level      trace, debug, info, warn, error or off, null to remove the level
+     */
+    public void setLogLevel(String loggerName, String level) {
+        String key = LongriLogger.LOG_KEY_PREFIX + loggerName;
+        synchronized (applyLock) {
+            if (level == null) {
+                properties.remove(key);
+                System.clearProperty(key);
+            } else {
+                properties.setProperty(key, level);
+                System.setProperty(key, level);
+            }
+            ConfigurationSnapshot current = snapshot;
+            LogLevelTrie logLevels = logLevels(current.logLevels);
+            if (logLevels == current.logLevels) return;
+            synchronized (levelLock) {
+                // the property version is unchanged, the new levels are already in the snapshot
+                snapshot = current.withLogLevels(logLevels);
+                LongriLoggerFactory.updateLevels(snapshot, loggerName);
+            }
+        }
+    }
+
+    /**
+     * @return the level of the logger name or of the nearest parent, null if there is none
+     */
+    public String getLogLevel(String loggerName) {
+        return snapshot.logLevels.find(loggerName);
+    }
+
+    /**
+     * The fingerprint of the logger levels in the system properties, when the levels were read last
+     */
+    private volatile long systemLevelsFingerprint;
+
+    /**
+     * Read the logger levels of the system properties again, they can be set without a
+     * change of the version. Called before a new logger is created, not while logging.
+     * Only the fingerprint of the levels is computed without a lock, the levels are read
+     * again only if it has changed.
+     */
+    void refreshLogLevels() {
+        if (LogLevelTrie.fingerprint(systemProperties()) == systemLevelsFingerprint) return;
+        synchronized (applyLock) {
+            ConfigurationSnapshot current = snapshot;
+            LogLevelTrie logLevels = logLevels(current.logLevels);
+            if (logLevels == current.logLevels) return;
+            synchronized (levelLock) {
+                snapshot = current.withLogLevels(logLevels);
+            }
+        }
+    }
+
+    /**
+     * @param reopenOutputs true, to open the log files again even if their settings are unchanged
+     */
+    private void apply(boolean reopenOutputs) {
+        ConfigurationSnapshot current = snapshot;
+
         String defaultLogLevelString = getStringProperty(LongriLogger.DEFAULT_LOG_LEVEL_KEY, null);
-        if (defaultLogLevelString != null)
-            defaultLogLevel = stringToLevel(defaultLogLevelString);
-
-        showLogName = getBooleanProperty(LongriLogger.SHOW_LOG_NAME_KEY, LongriLoggerConfiguration.SHOW_LOG_NAME_DEFAULT);
-        showShortLogName = getBooleanProperty(LongriLogger.SHOW_SHORT_LOG_NAME_KEY, SHOW_SHORT_LOG_NAME_DEFAULT);
-        showDateTime = getBooleanProperty(LongriLogger.SHOW_DATE_TIME_KEY, SHOW_DATE_TIME_DEFAULT);
-        logColorful = getBooleanProperty(LongriLogger.LOG_COLORFUL_KEY, LOG_COLORFUL);
-        showThreadName = getBooleanProperty(LongriLogger.SHOW_THREAD_NAME_KEY, SHOW_THREAD_NAME_DEFAULT);
-        showThreadId = getBooleanProperty(LongriLogger.SHOW_THREAD_ID_KEY, SHOW_THREAD_ID_DEFAULT);
-        dateTimeFormatStr = getStringProperty(LongriLogger.DATE_TIME_FORMAT_KEY, DATE_TIME_FORMAT_STR_DEFAULT);
-        levelInBrackets = getBooleanProperty(LongriLogger.LEVEL_IN_BRACKETS_KEY, LEVEL_IN_BRACKETS_DEFAULT);
-        warnLevelString = getStringProperty(LongriLogger.WARN_LEVEL_STRING_KEY, WARN_LEVELS_STRING_DEFAULT);
+        int defaultLogLevel = defaultLogLevelString != null ? stringToLevel(defaultLogLevelString) : current.defaultLogLevel;
+
+        boolean showLogName = getBooleanProperty(LongriLogger.SHOW_LOG_NAME_KEY, LongriLoggerConfiguration.SHOW_LOG_NAME_DEFAULT);
+        boolean showShortLogName = getBooleanProperty(LongriLogger.SHOW_SHORT_LOG_NAME_KEY, SHOW_SHORT_LOG_NAME_DEFAULT);
+        boolean showDateTime = getBooleanProperty(LongriLogger.SHOW_DATE_TIME_KEY, SHOW_DATE_TIME_DEFAULT);
+        boolean logColorful = getBooleanProperty(LongriLogger.LOG_COLORFUL_KEY, LOG_COLORFUL);
+        boolean showThreadName = getBooleanProperty(LongriLogger.SHOW_THREAD_NAME_KEY, SHOW_THREAD_NAME_DEFAULT);
+        boolean showThreadId = getBooleanProperty(LongriLogger.SHOW_THREAD_ID_KEY, SHOW_THREAD_ID_DEFAULT);
+        String dateTimeFormatStr = getStringProperty(LongriLogger.DATE_TIME_FORMAT_KEY, DATE_TIME_FORMAT_STR_DEFAULT);
+        boolean levelInBrackets = getBooleanProperty(LongriLogger.LEVEL_IN_BRACKETS_KEY, LEVEL_IN_BRACKETS_DEFAULT);
+        String warnLevelString = getStringProperty(LongriLogger.WARN_LEVEL_STRING_KEY, WARN_LEVELS_STRING_DEFAULT);
 
         String logFile = getStringProperty(LongriLogger.LOG_FILE_KEY, null);
         String logBasePath = getStringProperty(LongriLogger.LOG_BASE_PATH_KEY, null);
@@ -155,20 +324,342 @@ public class LongriLoggerConfiguration {
             logFile = "${logFileBasePath}/" + f.getName();
         }
 
-        outputChoice = computeOutputChoice(logBasePath, logFilePattern, false, logFile, sysLog);
+        String settings = outputSettings(logBasePath, logFilePattern, logFile, sysLog);
+        synchronized (this) {
+            if (reopenOutputs || outputChoice == null || !settings.equals(outputSettings)) {
+                // close the current log file first, it will be opened again by computeOutputChoice
+                closeReplacedFileStreams(outputChoice, null);
+                outputChoice = computeOutputChoice(logBasePath, logFilePattern, false, logFile, sysLog);
+                outputSettings = settings;
+            }
+        }
+        MarkerRules markerRules = markerRules(current.markerRules, logBasePath, reopenOutputs);
+        LogSinks sinks = sinks(current.sinks, logBasePath, reopenOutputs);
+
+        applyFlushPolicy();
+        applyThrowableRenderer();
+        applyAsyncWriter();
+
+        String pattern = getStringProperty(LongriLogger.PATTERN_KEY);
+        if (pattern == null) {
+            pattern = PatternLayout.fromSettings(showDateTime, dateTimeFormatStr, showThreadName, showThreadId,
+                    levelInBrackets, showShortLogName, showLogName);
+        }
+
+        // the defaults, written by the getters above, are part of this version
+        ConfigurationSnapshot next = new ConfigurationSnapshot(propertyVersion.get(), defaultLogLevel, logLevels(current.logLevels),
+                logColorful, layout(current.layout, pattern), warnLevelString, markerRules, sinks);
+        synchronized (levelLock) {
+            snapshot = next;
+            if (next.logLevels != current.logLevels || next.defaultLogLevel != current.defaultLogLevel) {
+                // the cached loggers get the new levels
+                LongriLoggerFactory.updateLevels(next, null);
+            }
+        }
+    }
+
+    /**
+     * @return the compiled pattern, the current layout if the pattern hasn't changed
+     */
+    private PatternLayout layout(PatternLayout current, String pattern) {
+        if (current.getPattern().equals(pattern)) return current;
+        try {
+            return PatternLayout.compile(pattern);
+        } catch (IllegalArgumentException e) {
+            LongriMessageFormatter.report("Bad log pattern in " + CONFIGURATION_FILE + "; will keep the current layout", e);
+            return current;
+        }
+    }
+
+    /**
+     * Compile the marker rules, the targets of the routes are opened again only if the rules have changed.
+     * The replaced rules are closed before the new routes are opened, a queued event of an old route is written
+     * to the targets of the configuration.
+     *
+     * @return the rules of the properties, the current rules if they haven't changed
+     */
+    private MarkerRules markerRules(MarkerRules current, String logBasePath, boolean reopenOutputs) {
+        String deny = getStringProperty(LongriLogger.MARKER_DENY_KEY);
+        Map<String, String> routeSettings = collect(LongriLogger.MARKER_ROUTE_PREFIX);
+        String settings = deny == null && routeSettings.isEmpty() ? "" : logBasePath + '|' + deny + '|' + routeSettings;
+
+        synchronized (this) {
+            if (!reopenOutputs && settings.equals(current.getSettings())) return current;
+            // a memory mapped file must be released, before the file is opened again
+            current.close();
+            MarkerRules next = MarkerRules.NONE;
+            if (!settings.isEmpty()) {
+                Set<String> denied = new HashSet<>(Arrays.asList(split(deny)));
+                Map<String, LogTargets> routes = new HashMap<>();
+                for (Map.Entry<String, String> entry : routeSettings.entrySet()) {
+                    routes.put(entry.getKey(), route(logBasePath, entry.getValue()));
+                }
+                next = new MarkerRules(settings, denied, routes);
+            }
+            return next;
+        }
+    }
 
-        if (dateTimeFormatStr != null) {
+    /**
+     * Compile the sinks, they are opened again only if their properties have changed.
+     * The replaced sinks are closed before the new ones are opened, a queued event of an old sink is dropped.
+     *
+     * @return the sinks of the properties, the current sinks if they haven't changed
+     */
+    private LogSinks sinks(LogSinks current, String logBasePath, boolean reopenOutputs) {
+        Map<String, String> sinkSettings = collect(LongriLogger.SINK_PREFIX);
+        String settings = sinkSettings.isEmpty() ? "" : logBasePath + '|' + sinkSettings;
+
+        synchronized (this) {
+            if (!reopenOutputs && settings.equals(current.getSettings())) return current;
+            // a memory mapped file must be released, before the file is opened again
+            current.close();
+            List<LogSink> sinks = new ArrayList<>();
+            for (Map.Entry<String, String> entry : sinkSettings.entrySet()) {
+                if (!entry.getKey().endsWith(SINK_TARGET)) continue;
+                String name = entry.getKey().substring(0, entry.getKey().length() - SINK_TARGET.length());
+                LogSink sink = sink(name, logBasePath, entry.getValue(), sinkSettings);
+                if (sink != null) sinks.add(sink);
+            }
+            return sinks.isEmpty() ? LogSinks.NONE : new LogSinks(settings, sinks.toArray(new LogSink[0]));
+        }
+    }
+
+    private static final String SINK_TARGET = ".target";
+    private static final String SINK_FORMAT_BINARY = "binary";
+
+    private LogSink sink(String name, String logBasePath, String targets, Map<String, String> sinkSettings) {
+        String level = sinkSettings.get(name + ".level");
+        int sinkLevel = level != null ? stringToLevel(level) : LongriLogger.LOG_LEVEL_TRACE;
+        String[] includes = split(sinkSettings.get(name + ".include"));
+        String[] excludes = split(sinkSettings.get(name + ".exclude"));
+        if (SINK_FORMAT_BINARY.equalsIgnoreCase(sinkSettings.get(name + ".format"))) {
+            String[] files = split(targets);
+            if (files.length != 1) {
+                LongriMessageFormatter.report("The binary sink [" + name + "] will be ignored",
+                        new IllegalArgumentException("one target file expected, not [" + targets + "]"));
+                return null;
+            }
+            if (logBasePath == null) logBasePath = "./";
+            File baseDir = new File(logBasePath);
+            baseDir.mkdirs();
+            File file = new File(baseDir, new File(files[0]).getName());
+            try {
+                return new BinaryLogSink(name, file, sinkLevel, includes, excludes);
+            } catch (IOException e) {
+                LongriMessageFormatter.report("Could not open [" + file + "]; the binary sink [" + name + "] will be ignored", e);
+                return null;
+            }
+        }
+        String pattern = sinkSettings.get(name + ".pattern");
+        PatternLayout layout = null;
+        if (pattern != null) {
             try {
-                dateFormatter = new SimpleDateFormat(dateTimeFormatStr);
+                layout = PatternLayout.compile(pattern);
             } catch (IllegalArgumentException e) {
-                LongriMessageFormatter.report("Bad date format in " + CONFIGURATION_FILE + "; will output relative time", e);
+                LongriMessageFormatter.report("Bad log pattern of the sink [" + name + "]; will use the default layout", e);
+            }
+        }
+        return new LogSink(name, computeOutputChoice(logBasePath, null, false, split(targets)),
+                sinkLevel, includes, excludes, layout);
+    }
+
+    /**
+     * @return the trimmed, not empty values of a comma separated list
+     */
+    private static String[] split(String values) {
+        if (values == null) return new String[0];
+        List<String> list = new ArrayList<>();
+        for (String value : values.split(",")) {
+            if (!value.trim().isEmpty()) list.add(value.trim());
+        }
+        return list.toArray(new String[0]);
+    }
+
+    /**
+     * @return the properties and system properties with the prefix, sorted by the key without the prefix
+     */
+    private Map<String, String> collect(String prefix) {
+        Map<String, String> values = new TreeMap<>();
+        collect(properties, prefix, values);
+        try {
+            collect(System.getProperties(), prefix, values);
+        } catch (SecurityException e) {
+            // Ignore
+        }
+        return values;
+    }
+
+    private static void collect(Map<?, ?> properties, String prefix, Map<String, String> values) {
+        for (Map.Entry<?, ?> entry : properties.entrySet()) {
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            if (key instanceof String && value instanceof String && ((String) key).startsWith(prefix)) {
+                values.put(((String) key).substring(prefix.length()), (String) value);
+            }
+        }
+    }
+
+    /**
+     * @param targets the targets, separated by commas, {@code default} for the targets of the configuration
+     */
+    private LogTargets route(String logBasePath, String targets) {
+        boolean includesDefault = false;
+        List<String> logFiles = new ArrayList<>();
+        for (String target : targets.split(",")) {
+            target = target.trim();
+            if ("default".equalsIgnoreCase(target)) {
+                includesDefault = true;
+            } else if (!target.isEmpty()) {
+                logFiles.add(target);
+            }
+        }
+        // the log files of a route are not rolled by pattern
+        return new LogTargets(computeOutputChoice(logBasePath, null, false, logFiles.toArray(new String[0])), includesDefault);
+    }
+
+    /**
+     * The defaults are used for the missing settings, like the log file does. Opening the log file writes them
+     * to the properties, so the next call sees the same settings.
+     *
+     * @return all settings of the log files, which are read to open them
+     */
+    private String outputSettings(String logBasePath, String logFilePattern, String logFile, String sysLog) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(logBasePath).append('|').append(logFilePattern).append('|').append(logFile).append('|').append(sysLog);
+        for (int i = 0; i < OUTPUT_KEYS.length; i += 2) {
+            String value = getStringProperty(OUTPUT_KEYS[i]);
+            sb.append('|').append(value != null ? value : OUTPUT_KEYS[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The keys of the log file settings, each followed by its default
+     */
+    private static final String[] OUTPUT_KEYS = {
+            LongriLogger.LOG_FILE_AGE_KEY, "0",
+            LongriLogger.LOG_FILE_KEEP_KEY, "1",
+            LongriLogger.LOG_FILE_SINK_KEY, LOG_FILE_SINK_DEFAULT,
+            LongriLogger.LOG_FILE_BUFFER_SIZE_KEY, Integer.toString(LOG_FILE_BUFFER_SIZE_DEFAULT),
+            LongriLogger.LOG_FILE_MAP_SIZE_KEY, Integer.toString(LOG_FILE_MAP_SIZE_DEFAULT),
+            LongriLogger.LOG_FILE_MAX_SIZE_KEY, LOG_FILE_MAX_SIZE_DEFAULT,
+            LongriLogger.LOG_FILE_TIME_ROLLING_KEY, Boolean.toString(LOG_FILE_TIME_ROLLING_DEFAULT),
+            LongriLogger.LOG_FILE_COMPRESSION_LEVEL_KEY, Integer.toString(LOG_FILE_COMPRESSION_LEVEL_DEFAULT),
+            LongriLogger.LOG_FILE_TOTAL_SIZE_CAP_KEY, LOG_FILE_TOTAL_SIZE_CAP_DEFAULT,
+            LongriLogger.LOG_FILE_MAX_HISTORY_KEY, Integer.toString(LOG_FILE_MAX_HISTORY_DEFAULT)};
+
+    /**
+     * @return the tree of the logger levels, the current one if the entries haven't changed
+     */
+    private LogLevelTrie logLevels(LogLevelTrie current) {
+        Map<?, ?> systemProperties = systemProperties();
+        // read before the levels, a later change is seen by the next refresh
+        systemLevelsFingerprint = LogLevelTrie.fingerprint(systemProperties);
+        Map<String, String> levels = LogLevelTrie.collect(properties, systemProperties);
+        return current.isSameAs(levels) ? current : new LogLevelTrie(levels);
+    }
+
+    private static Map<?, ?> systemProperties() {
+        try {
+            return System.getProperties();
+        } catch (SecurityException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private void applyAsyncWriter() {
+        boolean async = getBooleanProperty(LongriLogger.ASYNC_KEY, ASYNC_DEFAULT);
+        AsyncLogWriter current = asyncWriter;
+
+        if (!async) {
+            if (current != null) {
+                asyncWriter = null;
+                current.stop();
             }
+            return;
         }
+
+        int capacity = AsyncLogWriter.ceilingPowerOfTwo(getIntegerProperty(LongriLogger.ASYNC_CAPACITY_KEY, ASYNC_CAPACITY_DEFAULT));
+        AsyncWaitStrategy waitStrategy = AsyncWaitStrategy.fromString(getStringProperty(LongriLogger.ASYNC_WAIT_STRATEGY_KEY, ASYNC_WAIT_STRATEGY_DEFAULT));
+        AsyncQueueFullPolicy queueFullPolicy = AsyncQueueFullPolicy.fromString(getStringProperty(LongriLogger.ASYNC_QUEUE_FULL_POLICY_KEY, ASYNC_QUEUE_FULL_POLICY_DEFAULT));
+        int dropLevel = stringToLevel(getStringProperty(LongriLogger.ASYNC_DROP_LEVEL_KEY, ASYNC_DROP_LEVEL_DEFAULT));
+        boolean deferFormatting = getBooleanProperty(LongriLogger.ASYNC_DEFER_FORMATTING_KEY, ASYNC_DEFER_FORMATTING_DEFAULT);
+
+        if (current != null && current.getCapacity() == capacity && current.getWaitStrategy() == waitStrategy
+                && current.getQueueFullPolicy() == queueFullPolicy && current.getDropLevel() == dropLevel
+                && current.isDeferFormatting() == deferFormatting) {
+            return;
+        }
+
+        asyncWriter = new AsyncLogWriter(capacity, waitStrategy, queueFullPolicy, dropLevel, deferFormatting);
+        if (current != null) current.stop();
+        registerShutdownHook();
+    }
+
+    private void applyThrowableRenderer() {
+        int maxFrames = getIntegerProperty(LongriLogger.STACK_TRACE_MAX_FRAMES_KEY, STACK_TRACE_MAX_FRAMES_DEFAULT);
+        String[] foldPackages = split(getStringProperty(LongriLogger.STACK_TRACE_FOLD_KEY));
+        for (int i = 0; i < foldPackages.length; i++) {
+            if (foldPackages[i].endsWith(".")) foldPackages[i] = foldPackages[i].substring(0, foldPackages[i].length() - 1);
+        }
+        int cacheSize = getIntegerProperty(LongriLogger.STACK_TRACE_CACHE_SIZE_KEY, STACK_TRACE_CACHE_SIZE_DEFAULT);
+        int repeatWindowMillis = getIntegerProperty(LongriLogger.STACK_TRACE_REPEAT_WINDOW_MILLIS_KEY, STACK_TRACE_REPEAT_WINDOW_MILLIS_DEFAULT);
+
+        synchronized (this) {
+            if (throwableRenderer.isSameAs(maxFrames, foldPackages, cacheSize, repeatWindowMillis)) return;
+            throwableRenderer = new ThrowableRenderer(maxFrames, foldPackages, cacheSize, repeatWindowMillis);
+        }
+    }
+
+    private void applyFlushPolicy() {
+        FlushPolicy.Mode mode = FlushPolicy.Mode.fromString(getStringProperty(LongriLogger.FLUSH_POLICY_KEY, FLUSH_POLICY_DEFAULT));
+        int records = getIntegerProperty(LongriLogger.FLUSH_EVERY_RECORDS_KEY, FLUSH_EVERY_RECORDS_DEFAULT);
+        int intervalMillis = getIntegerProperty(LongriLogger.FLUSH_INTERVAL_MILLIS_KEY, FLUSH_INTERVAL_MILLIS_DEFAULT);
+        int flushLevel = stringToLevel(getStringProperty(LongriLogger.FLUSH_ON_LEVEL_KEY, FLUSH_ON_LEVEL_DEFAULT));
+
+        synchronized (this) {
+            if (flushPolicy.isSameAs(mode, records, intervalMillis, flushLevel)) return;
+            flushPolicy.stop();
+            if (outputChoice != null) {
+                // don't keep lines of the old policy in the buffers
+                for (PrintStream stream : outputChoice) stream.flush();
+            }
+            flushPolicy = new FlushPolicy(mode, records, intervalMillis, flushLevel);
+            flushPolicy.start();
+        }
+        if (mode != FlushPolicy.Mode.IMMEDIATE) registerShutdownHook();
+    }
+
+    /**
+     * Write all pending lines, if the JVM shuts down.
+     */
+    private synchronized void registerShutdownHook() {
+        if (shutdownHookRegistered) return;
+        shutdownHookRegistered = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            AsyncLogWriter writer = asyncWriter;
+            if (writer != null) writer.stop();
+            LongriLogger.flushTargets();
+        }, "LongriLogger-Shutdown"));
+    }
+
+    /**
+     * Wait until the async writer has written all pending log lines.
+     * Returns immediately, if async logging is disabled.
+     *
+     * @param timeoutMillis max time to wait
+     * @return true, if all pending lines are written
+     */
+    public boolean flushAsync(long timeoutMillis) {
+        AsyncLogWriter writer = asyncWriter;
+        return writer == null || writer.flush(timeoutMillis);
     }
 
     private void loadProperties(InputStream in) {
         // Add props from the resource simplelogger.properties
         if (null != in) {
+            propertyVersion.incrementAndGet();
             try {
                 properties.load(in);
             } catch (IOException e) {
@@ -271,7 +762,17 @@ public class LongriLoggerConfiguration {
         int age = getIntegerProperty(LongriLogger.LOG_FILE_AGE_KEY, 0);
         int keep = getIntegerProperty(LongriLogger.LOG_FILE_KEEP_KEY, 1);
 
-        boolean roll = rollingFileHandle.rolling(logFilePattern.replace("${logFileBasePath}", ""), age, keep);
+        String rollingPattern = logFilePattern != null ? logFilePattern.replace("${logFileBasePath}", "") : null;
+        int compressionLevel = getIntegerProperty(LongriLogger.LOG_FILE_COMPRESSION_LEVEL_KEY, LOG_FILE_COMPRESSION_LEVEL_DEFAULT);
+        LogFileRetention.of(baseDir, logFile).setLimits(
+                parseFileSize(getStringProperty(LongriLogger.LOG_FILE_TOTAL_SIZE_CAP_KEY, LOG_FILE_TOTAL_SIZE_CAP_DEFAULT)),
+                getIntegerProperty(LongriLogger.LOG_FILE_MAX_HISTORY_KEY, LOG_FILE_MAX_HISTORY_DEFAULT));
+        boolean roll = rollingFileHandle.rolling(rollingPattern, age, keep, compressionLevel);
+
+        long maxFileSize = parseFileSize(getStringProperty(LongriLogger.LOG_FILE_MAX_SIZE_KEY, LOG_FILE_MAX_SIZE_DEFAULT));
+        if (maxFileSize > 0 && rollingPattern != null && rollingFileHandle.HANDLE.length() >= maxFileSize) {
+            rollingFileHandle.rollBySize(rollingPattern, keep, compressionLevel);
+        }
 
         File currentLogFile = new File(baseDir, logFile);
         if (!currentLogFile.exists()) {
@@ -286,10 +787,53 @@ public class LongriLoggerConfiguration {
             attributes.setTimes(time, time, time);
 
         }
-        return new LogFileStream(currentLogFile);
+
+        LogFileStream stream;
+        String sink = getStringProperty(LongriLogger.LOG_FILE_SINK_KEY, LOG_FILE_SINK_DEFAULT);
+        if ("channel".equalsIgnoreCase(sink)) {
+            int bufferSize = getIntegerProperty(LongriLogger.LOG_FILE_BUFFER_SIZE_KEY, LOG_FILE_BUFFER_SIZE_DEFAULT);
+            stream = new BufferedLogFileStream(new ChannelLogFileOutput(currentLogFile, bufferSize), currentLogFile);
+        } else if ("mapped".equalsIgnoreCase(sink)) {
+            int mapSize = getIntegerProperty(LongriLogger.LOG_FILE_MAP_SIZE_KEY, LOG_FILE_MAP_SIZE_DEFAULT);
+            stream = new BufferedLogFileStream(new MappedLogFileOutput(currentLogFile, mapSize), currentLogFile);
+        } else {
+            stream = new LogFileStream(currentLogFile);
+        }
+        stream.setRolling(rollingPattern, age, keep, maxFileSize);
+        stream.setCompressionLevel(compressionLevel);
+        if (getBooleanProperty(LongriLogger.LOG_FILE_TIME_ROLLING_KEY, LOG_FILE_TIME_ROLLING_DEFAULT)) {
+            RollingScheduler.schedule(stream, rollingPattern);
+        }
+        return stream;
 
     }
 
+    /**
+     * Parse a size like "10MB", "512KB", "1GB" or a plain number of bytes.
+     *
+     * @return the size in bytes, 0 if the value is empty or invalid
+     */
+    static long parseFileSize(String value) {
+        if (value == null) return 0;
+        String size = value.trim().toUpperCase();
+        long factor = 1;
+        if (size.endsWith("B")) size = size.substring(0, size.length() - 1);
+        if (size.endsWith("K")) {
+            factor = 1024L;
+        } else if (size.endsWith("M")) {
+            factor = 1024L * 1024L;
+        } else if (size.endsWith("G")) {
+            factor = 1024L * 1024L * 1024L;
+        }
+        if (factor > 1) size = size.substring(0, size.length() - 1);
+        try {
+            return Long.parseLong(size.trim()) * factor;
+        } catch (NumberFormatException e) {
+            LongriMessageFormatter.report("Bad log file size [" + value + "], the size limit is disabled", e);
+            return 0;
+        }
+    }
+
     public static boolean isSameDay(Date date1, Date date2) {
         LocalDate localDate1 = date1.toInstant()
                 .atZone(ZoneId.systemDefault())
@@ -316,18 +860,25 @@ public class LongriLoggerConfiguration {
     }
 
 
+    /**
+     * Remove the property, e.g. the {@link LongriLogger#PATTERN_KEY}, so the default is used again
+     */
+    public void removeProperty(String key) {
+        Object old = properties.remove(key);
+        if (System.clearProperty(key) != null || old != null) propertyVersion.incrementAndGet();
+        applayProperties();
+    }
+
     private void setProperty(String key, boolean value, boolean applay) {
-        properties.setProperty(key, String.valueOf(value));
-        System.setProperty(key, String.valueOf(value));
-        if (applay) {
-            applayProperties();
-        }
+        setProperty(key, String.valueOf(value), applay);
     }
 
     private void setProperty(String key, String value, boolean applay) {
         if (value == null) return;
+        String old = getStringProperty(key);
         properties.setProperty(key, value);
         System.setProperty(key, value);
+        if (!value.equals(old)) propertyVersion.incrementAndGet();
         if (applay) {
             applayProperties();
         }
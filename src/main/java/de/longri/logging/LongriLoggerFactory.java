@@ -26,6 +26,11 @@ package de.longri.logging;
 import org.slf4j.ILoggerFactory;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -37,10 +42,18 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class LongriLoggerFactory implements ILoggerFactory {
 
+    /**
+     * All factories, to change the level of the cached loggers
+     */
+    private static final Set<LongriLoggerFactory> FACTORIES = Collections.newSetFromMap(new WeakHashMap<>());
+
     ConcurrentMap<String, Logger> loggerMap;
 
     public LongriLoggerFactory() {
         loggerMap = new ConcurrentHashMap<>();
+        synchronized (FACTORIES) {
+            FACTORIES.add(this);
+        }
         LongriLogger.lazyInit();
     }
 
@@ -49,17 +62,47 @@ public class LongriLoggerFactory implements ILoggerFactory {
      */
     public Logger getLogger(String name) {
 
-        // maybe system Properties have changed
-        LongriLogger.CONFIG_PARAMS.applayProperties();
-
         Logger simpleLogger = loggerMap.get(name);
         if (simpleLogger != null) {
             return simpleLogger;
         } else {
-            Logger newInstance = new LongriLogger(name);
-            Logger oldInstance = loggerMap.putIfAbsent(name, newInstance);
-            return oldInstance == null ? newInstance : oldInstance;
+            // apply the properties, only if they were changed, and the levels of new system properties
+            LongriLogger.CONFIG_PARAMS.applyIfChanged();
+            LongriLogger.CONFIG_PARAMS.refreshLogLevels();
+            LongriLogger newInstance = new LongriLogger(name);
+            synchronized (LongriLogger.CONFIG_PARAMS.levelLock) {
+                Logger oldInstance = loggerMap.putIfAbsent(name, newInstance);
+                if (oldInstance != null) return oldInstance;
+                // the levels may have changed while the logger was created
+                newInstance.updateLevel(LongriLogger.CONFIG_PARAMS.snapshot);
+                return newInstance;
+            }
+        }
+    }
+
+    /**
+     * Set the levels of the cached loggers of all factories, called while holding the
+     * {@link LongriLoggerConfiguration#levelLock} after a new snapshot was published.
+     *
+     * @param config     the new configuration
+     * @param loggerName only the logger and the loggers below it are changed, null for all loggers
+     */
+    static void updateLevels(ConfigurationSnapshot config, String loggerName) {
+        List<LongriLoggerFactory> factories;
+        synchronized (FACTORIES) {
+            factories = new ArrayList<>(FACTORIES);
         }
+        for (LongriLoggerFactory factory : factories) {
+            for (Logger logger : factory.loggerMap.values()) {
+                if (loggerName == null || isSameOrChild(logger.getName(), loggerName)) {
+                    ((LongriLogger) logger).updateLevel(config);
+                }
+            }
+        }
+    }
+
+    private static boolean isSameOrChild(String name, String parent) {
+        return name.startsWith(parent) && (name.length() == parent.length() || name.charAt(parent.length()) == '.');
     }
 
     /**
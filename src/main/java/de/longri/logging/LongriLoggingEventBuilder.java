@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+
+import java.util.function.Supplier;
+
+/**
+ * The {@link LoggingEventBuilder} of the fluent API, which fills a {@link LongriLogEvent} in place.
+ * <p>
+ * Every thread reuses one builder, it is given back when the event is logged. A builder, which is
+ * requested while the one of the thread is in use, e.g. from an argument supplier, is a new one.
+ * A builder must not be used any more after one of its {@code log} methods was called.
+ */
+final class LongriLoggingEventBuilder implements LoggingEventBuilder {
+
+    private static final ThreadLocal<LongriLoggingEventBuilder> POOL = ThreadLocal.withInitial(LongriLoggingEventBuilder::new);
+
+    private final LongriLogEvent event = new LongriLogEvent();
+    private boolean inUse = false;
+    private LongriLogger logger;
+
+    /**
+     * @return the builder of the current thread, a new one if it is already in use
+     */
+    static LongriLoggingEventBuilder acquire(LongriLogger logger, Level level) {
+        LongriLoggingEventBuilder builder = POOL.get();
+        if (builder.inUse) {
+            builder = new LongriLoggingEventBuilder();
+        }
+        builder.inUse = true;
+        builder.logger = logger;
+        builder.event.level = level;
+        return builder;
+    }
+
+    @Override
+    public LoggingEventBuilder setCause(Throwable cause) {
+        event.throwable = cause;
+        return this;
+    }
+
+    @Override
+    public LoggingEventBuilder addMarker(Marker marker) {
+        event.addMarker(marker);
+        return this;
+    }
+
+    @Override
+    public LoggingEventBuilder addArgument(Object p) {
+        event.addArgument(p);
+        return this;
+    }
+
+    @Override
+    public LoggingEventBuilder addArgument(Supplier<?> objectSupplier) {
+        event.addArgument(objectSupplier.get());
+        return this;
+    }
+
+    @Override
+    public LoggingEventBuilder addKeyValue(String key, Object value) {
+        event.addKeyValue(key, value);
+        return this;
+    }
+
+    @Override
+    public LoggingEventBuilder addKeyValue(String key, Supplier<Object> valueSupplier) {
+        event.addKeyValue(key, valueSupplier.get());
+        return this;
+    }
+
+    @Override
+    public LoggingEventBuilder setMessage(String message) {
+        event.messagePattern = message;
+        return this;
+    }
+
+    @Override
+    public LoggingEventBuilder setMessage(Supplier<String> messageSupplier) {
+        event.messagePattern = messageSupplier.get();
+        return this;
+    }
+
+    @Override
+    public void log() {
+        int argumentCount = event.argumentCount;
+        if (event.throwable == null && argumentCount > 0 && event.arguments[argumentCount - 1] instanceof Throwable) {
+            // a trailing throwable, same as NormalizedParameters
+            event.throwable = (Throwable) event.arguments[argumentCount - 1];
+        }
+        try {
+            event.logger = logger;
+            event.stamp();
+            logger.handle(event);
+        } finally {
+            event.reset();
+            logger = null;
+            inUse = false;
+        }
+    }
+
+    @Override
+    public void log(String message) {
+        setMessage(message);
+        log();
+    }
+
+    @Override
+    public void log(String format, Object arg) {
+        setMessage(format);
+        addArgument(arg);
+        log();
+    }
+
+    @Override
+    public void log(String format, Object arg0, Object arg1) {
+        setMessage(format);
+        addArgument(arg0);
+        addArgument(arg1);
+        log();
+    }
+
+    @Override
+    public void log(String format, Object... args) {
+        setMessage(format);
+        if (args != null) {
+            for (Object arg : args) addArgument(arg);
+        }
+        log();
+    }
+
+    @Override
+    public void log(Supplier<String> messageSupplier) {
+        setMessage(messageSupplier);
+        log();
+    }
+}
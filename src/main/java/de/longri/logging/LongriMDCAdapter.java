@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.slf4j.spi.MDCAdapter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The MDC of the {@link LongriLogger}.
+ * <p>
+ * The values of a thread are kept in an immutable {@link Context}, a put or remove replaces it
+ * with a changed copy. An event captures the context of its thread with one reference read,
+ * so it can be handed over to the async writer without a copy. The MDC is usually small,
+ * the keys and values are kept in one array.
+ */
+public class LongriMDCAdapter implements MDCAdapter {
+
+    private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<>();
+    private static final ThreadLocal<Map<String, Deque<String>>> DEQUES = new ThreadLocal<>();
+
+    /**
+     * The immutable MDC values of a thread
+     */
+    static final class Context {
+
+        static final Context EMPTY = new Context(new String[0]);
+
+        /**
+         * Pairs of key and value
+         */
+        private final String[] entries;
+
+        private Context(String[] entries) {
+            this.entries = entries;
+        }
+
+        static Context of(Map<String, String> map) {
+            String[] entries = new String[map.size() * 2];
+            int i = 0;
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                if (entry.getKey() == null) continue;
+                entries[i++] = entry.getKey();
+                entries[i++] = entry.getValue();
+            }
+            return new Context(i == entries.length ? entries : Arrays.copyOf(entries, i));
+        }
+
+        private int indexOf(String key) {
+            for (int i = 0; i < entries.length; i += 2) {
+                if (entries[i].equals(key)) return i;
+            }
+            return -1;
+        }
+
+        String get(String key) {
+            int index = indexOf(key);
+            return index < 0 ? null : entries[index + 1];
+        }
+
+        /**
+         * @return a context with the value, this if it is unchanged
+         */
+        Context put(String key, String value) {
+            int index = indexOf(key);
+            String[] copy;
+            if (index >= 0) {
+                if (Objects.equals(entries[index + 1], value)) return this;
+                copy = entries.clone();
+            } else {
+                index = entries.length;
+                copy = Arrays.copyOf(entries, index + 2);
+                copy[index] = key;
+            }
+            copy[index + 1] = value;
+            return new Context(copy);
+        }
+
+        /**
+         * @return a context without the key, this if there is no such key
+         */
+        Context remove(String key) {
+            int index = indexOf(key);
+            if (index < 0) return this;
+            if (entries.length == 2) return EMPTY;
+            String[] copy = new String[entries.length - 2];
+            System.arraycopy(entries, 0, copy, 0, index);
+            System.arraycopy(entries, index + 2, copy, index, entries.length - index - 2);
+            return new Context(copy);
+        }
+
+        int size() {
+            return entries.length / 2;
+        }
+
+        String key(int index) {
+            return entries[index * 2];
+        }
+
+        String value(int index) {
+            return entries[index * 2 + 1];
+        }
+
+        Map<String, String> toMap() {
+            Map<String, String> map = new HashMap<>();
+            for (int i = 0; i < entries.length; i += 2) {
+                map.put(entries[i], entries[i + 1]);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * @return the MDC values of the current thread, null if there are none
+     */
+    static Context context() {
+        return CONTEXT.get();
+    }
+
+    private static void set(Context context) {
+        if (context.size() == 0) {
+            // don't keep an empty context in pooled threads
+            CONTEXT.remove();
+        } else {
+            CONTEXT.set(context);
+        }
+    }
+
+    @Override
+    public void put(String key, String val) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        Context context = CONTEXT.get();
+        if (context == null) context = Context.EMPTY;
+        Context changed = context.put(key, val);
+        if (changed != context) CONTEXT.set(changed);
+    }
+
+    @Override
+    public String get(String key) {
+        Context context = CONTEXT.get();
+        return context == null || key == null ? null : context.get(key);
+    }
+
+    @Override
+    public void remove(String key) {
+        Context context = CONTEXT.get();
+        if (context == null || key == null) return;
+        Context changed = context.remove(key);
+        if (changed != context) set(changed);
+    }
+
+    @Override
+    public void clear() {
+        CONTEXT.remove();
+    }
+
+    @Override
+    public Map<String, String> getCopyOfContextMap() {
+        Context context = CONTEXT.get();
+        return context == null ? null : context.toMap();
+    }
+
+    @Override
+    public void setContextMap(Map<String, String> contextMap) {
+        if (contextMap == null) {
+            CONTEXT.remove();
+        } else {
+            set(Context.of(contextMap));
+        }
+    }
+
+    @Override
+    public void pushByKey(String key, String value) {
+        if (key == null) return;
+        Map<String, Deque<String>> deques = DEQUES.get();
+        if (deques == null) {
+            deques = new HashMap<>();
+            DEQUES.set(deques);
+        }
+        deques.computeIfAbsent(key, k -> new ArrayDeque<>()).push(value);
+    }
+
+    @Override
+    public String popByKey(String key) {
+        Map<String, Deque<String>> deques = DEQUES.get();
+        if (key == null || deques == null) return null;
+        Deque<String> deque = deques.get(key);
+        return deque == null ? null : deque.pollFirst();
+    }
+
+    @Override
+    public Deque<String> getCopyOfDequeByKey(String key) {
+        Map<String, Deque<String>> deques = DEQUES.get();
+        if (key == null || deques == null) return null;
+        Deque<String> deque = deques.get(key);
+        return deque == null ? null : new ArrayDeque<>(deque);
+    }
+
+    @Override
+    public void clearDequeByKey(String key) {
+        Map<String, Deque<String>> deques = DEQUES.get();
+        if (key == null || deques == null) return;
+        Deque<String> deque = deques.get(key);
+        if (deque != null) deque.clear();
+    }
+}
@@ -18,10 +18,190 @@
  */
 package de.longri.logging;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 public class LongriMessageFormatter {
+
+    static final char DELIM_START = '{';
+    static final String DELIM_STR = "{}";
+    static final char ESCAPE_CHAR = '\\';
+
     public static  void report(String msg, Throwable t) {
         System.err.println(msg);
         System.err.println("Reported exception:");
         t.printStackTrace();
     }
+
+    /**
+     * Substitute the {} placeholders of the message pattern with the arguments and append the
+     * result to the given buffer. The output is the same as from
+     * {@link org.slf4j.helpers.MessageFormatter#arrayFormat(String, Object[])}, but without the
+     * intermediate message string. Common argument types are appended without {@code toString()}.
+     * The pattern is parsed once, see {@link MessageTemplate}.
+     *
+     * @param buf            the target buffer
+     * @param messagePattern the message pattern with {} placeholders
+     * @param arguments      the arguments, may be null
+     */
+    static void appendFormatted(StringBuilder buf, String messagePattern, Object[] arguments) {
+        appendFormatted(buf, messagePattern, arguments, arguments == null ? 0 : arguments.length);
+    }
+
+    /**
+     * Same as {@link #appendFormatted(StringBuilder, String, Object[])}, with the first count elements
+     * of the array as arguments.
+     */
+    static void appendFormatted(StringBuilder buf, String messagePattern, Object[] arguments, int count) {
+        if (messagePattern == null) {
+            buf.append((String) null);
+            return;
+        }
+        if (arguments == null) {
+            buf.append(messagePattern);
+            return;
+        }
+
+        int argCount = count;
+        if (argCount > 0 && arguments[argCount - 1] instanceof Throwable) {
+            // a trailing throwable is never substituted, same as MessageFormatter
+            argCount--;
+        }
+        if (argCount == 0) {
+            buf.append(messagePattern);
+            return;
+        }
+
+        // the pattern is scanned for the placeholders only once
+        MessageTemplate.of(messagePattern).appendTo(buf, arguments, argCount);
+    }
+
+    /**
+     * Append a single argument, primitives and char sequences without an intermediate string.
+     */
+    static void appendArgument(StringBuilder buf, Object o) {
+        if (o == null) {
+            buf.append("null");
+        } else if (o instanceof String) {
+            buf.append((String) o);
+        } else if (o instanceof Integer) {
+            buf.append(((Integer) o).intValue());
+        } else if (o instanceof Long) {
+            buf.append(((Long) o).longValue());
+        } else if (o instanceof Boolean) {
+            buf.append(((Boolean) o).booleanValue());
+        } else if (o instanceof Double) {
+            buf.append(((Double) o).doubleValue());
+        } else if (o instanceof Float) {
+            buf.append(((Float) o).floatValue());
+        } else if (o instanceof Short || o instanceof Byte) {
+            buf.append(((Number) o).intValue());
+        } else if (o instanceof Character) {
+            buf.append(((Character) o).charValue());
+        } else if (o instanceof StringBuilder) {
+            buf.append((StringBuilder) o);
+        } else if (o.getClass().isArray()) {
+            appendArray(buf, o, null);
+        } else {
+            safeObjectAppend(buf, o);
+        }
+    }
+
+    private static void appendArray(StringBuilder buf, Object o, Map<Object[], Object> seenMap) {
+        if (o instanceof boolean[]) {
+            boolean[] a = (boolean[]) o;
+            buf.append('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(a[i]);
+            }
+            buf.append(']');
+        } else if (o instanceof byte[]) {
+            byte[] a = (byte[]) o;
+            buf.append('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(a[i]);
+            }
+            buf.append(']');
+        } else if (o instanceof char[]) {
+            char[] a = (char[]) o;
+            buf.append('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(a[i]);
+            }
+            buf.append(']');
+        } else if (o instanceof short[]) {
+            short[] a = (short[]) o;
+            buf.append('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(a[i]);
+            }
+            buf.append(']');
+        } else if (o instanceof int[]) {
+            int[] a = (int[]) o;
+            buf.append('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(a[i]);
+            }
+            buf.append(']');
+        } else if (o instanceof long[]) {
+            long[] a = (long[]) o;
+            buf.append('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(a[i]);
+            }
+            buf.append(']');
+        } else if (o instanceof float[]) {
+            float[] a = (float[]) o;
+            buf.append('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(a[i]);
+            }
+            buf.append(']');
+        } else if (o instanceof double[]) {
+            double[] a = (double[]) o;
+            buf.append('[');
+            for (int i = 0; i < a.length; i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(a[i]);
+            }
+            buf.append(']');
+        } else {
+            Object[] a = (Object[]) o;
+            if (seenMap == null) seenMap = new IdentityHashMap<>();
+            buf.append('[');
+            if (!seenMap.containsKey(a)) {
+                seenMap.put(a, null);
+                for (int i = 0; i < a.length; i++) {
+                    if (i > 0) buf.append(", ");
+                    Object element = a[i];
+                    if (element != null && element.getClass().isArray()) {
+                        appendArray(buf, element, seenMap);
+                    } else {
+                        appendArgument(buf, element);
+                    }
+                }
+                // allow repeats in siblings
+                seenMap.remove(a);
+            } else {
+                buf.append("...");
+            }
+            buf.append(']');
+        }
+    }
+
+    private static void safeObjectAppend(StringBuilder buf, Object o) {
+        try {
+            buf.append(o.toString());
+        } catch (Throwable t) {
+            report("SLF4J: Failed toString() invocation on an object of type [" + o.getClass().getName() + "]", t);
+            buf.append("[FAILED toString()]");
+        }
+    }
 }
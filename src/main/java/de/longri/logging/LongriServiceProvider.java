@@ -21,7 +21,6 @@ package de.longri.logging;
 import org.slf4j.ILoggerFactory;
 import org.slf4j.IMarkerFactory;
 import org.slf4j.helpers.BasicMarkerFactory;
-import org.slf4j.helpers.NOPMDCAdapter;
 import org.slf4j.spi.MDCAdapter;
 import org.slf4j.spi.SLF4JServiceProvider;
 
@@ -61,7 +60,7 @@ public class LongriServiceProvider implements SLF4JServiceProvider {
     public void initialize() {
         loggerFactory = new LongriLoggerFactory();
         markerFactory = new BasicMarkerFactory();
-        mdcAdapter = new NOPMDCAdapter();
+        mdcAdapter = new LongriMDCAdapter();
     }
 
 }
\ No newline at end of file
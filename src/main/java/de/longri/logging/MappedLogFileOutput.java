@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends the log bytes into a memory mapped window of the log file, so writing a line
+ * is a memory copy instead of a system call.
+ * <p>
+ * The window is mapped in fixed size chunks behind the current end of the file. If a
+ * chunk is full, the next one is mapped. On close the mapping is released and the file
+ * is truncated to the real length, so it can be moved or zipped by the
+ * {@link RollingFileHandle}. Until then, the file on disk ends with the zero filled rest
+ * of the current chunk. If a previous run ended without close, the next one appends
+ * behind the last written byte instead of behind that rest.
+ */
+class MappedLogFileOutput extends LogFileOutput {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final File file;
+    private final FileChannel channel;
+    private final int chunkSize;
+
+    /**
+     * File position of the current mapping
+     */
+    private long mapPosition;
+
+    MappedLogFileOutput(File file, int chunkSize) throws IOException {
+        super(EMPTY);
+        this.file = file;
+        this.chunkSize = Math.max(chunkSize, 4096);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapPosition = contentLength(channel, this.chunkSize);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, mapPosition, this.chunkSize);
+    }
+
+    /**
+     * A log file never ends with zero bytes, they are the unused rest of a chunk, if the
+     * file was not closed.
+     *
+     * @return the length of the file without the zero bytes at the end, at most one chunk is searched
+     */
+    static long contentLength(FileChannel channel, int chunkSize) throws IOException {
+        long size = channel.size();
+        int tail = (int) Math.min(size, chunkSize);
+        if (tail == 0) return size;
+        ByteBuffer bytes = ByteBuffer.allocate(tail);
+        long position = size - tail;
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position()) < 0) break;
+        }
+        int end = bytes.position();
+        while (end > 0 && bytes.get(end - 1) == 0) end--;
+        return position + end;
+    }
+
+    /**
+     * @return the real length of the log file, without the unused rest of the mapping
+     */
+    @Override
+    long length() {
+        return mapPosition + buffer.position();
+    }
+
+    @Override
+    LogFileOutput reopen() throws IOException {
+        return new MappedLogFileOutput(file, chunkSize);
+    }
+
+    @Override
+    protected void drain(int required) throws IOException {
+        long position = length();
+        unmap(buffer);
+        buffer = EMPTY;
+        mapPosition = position;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, mapPosition, Math.max(chunkSize, required));
+    }
+
+    @Override
+    public void flush() {
+        // the bytes are visible for other readers of the file as soon as they are copied
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) return;
+        long length = length();
+        try {
+            ((MappedByteBuffer) buffer).force();
+            unmap(buffer);
+            buffer = EMPTY;
+            mapPosition = length;
+            channel.truncate(length);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static Object unsafe;
+    private static Method invokeCleaner;
+
+    /**
+     * Release the mapping now, instead of waiting for the garbage collector. A file with
+     * an active mapping can't be moved or deleted on some platforms.
+     */
+    static synchronized void unmap(ByteBuffer buffer) {
+        if (!(buffer instanceof MappedByteBuffer) || !buffer.isDirect()) return;
+        try {
+            if (invokeCleaner == null) {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            }
+            invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the mapping is released by the garbage collector
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.slf4j.Marker;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The marker rules of the configuration: events with a denied marker are dropped, events
+ * with a routed marker are written to the targets of the route.
+ * <pre>
+ * longriLogger.markerDeny=PERF,SQL
+ * longriLogger.markerRoute:AUDIT=audit.log
+ * longriLogger.markerRoute:SECURITY=security.log,default
+ * </pre>
+ * A marker matches a rule by its name or by the name of one of its references, so a marker
+ * {@code LOGIN} with a reference to {@code SECURITY} is routed like {@code SECURITY}. A deny
+ * wins over a route. The target {@code default} adds the targets of the configuration.
+ * <p>
+ * The decision for a marker is computed once and kept by marker identity, the markers of the
+ * {@link org.slf4j.helpers.BasicMarkerFactory} are the same objects for the same name. The
+ * decision is made before the line is formatted.
+ */
+final class MarkerRules {
+
+    /**
+     * The route of dropped events
+     */
+    static final LogTargets DROP = new LogTargets(new OutputChoice(), false);
+
+    /**
+     * The decision of markers without a rule, the event is written to the targets of the configuration
+     */
+    private static final LogTargets NO_RULE = new LogTargets(new OutputChoice(), true);
+
+    /**
+     * Markers, created on the fly, are not cached beyond this count
+     */
+    private static final int MAX_CACHED_MARKERS = 1024;
+
+    private static final int MAX_REFERENCE_DEPTH = 16;
+
+    static final MarkerRules NONE = new MarkerRules("", Collections.emptySet(), Collections.emptyMap());
+
+    private final String settings;
+    private final Set<String> denied;
+    private final Map<String, LogTargets> routes;
+    private final boolean empty;
+
+    /**
+     * Replaced as a whole, read without a lock
+     */
+    private volatile IdentityHashMap<Marker, LogTargets> decisions = new IdentityHashMap<>();
+
+    /**
+     * @param settings the property values, the rules are compiled again if they change
+     * @param denied   the names of the dropped markers
+     * @param routes   the routes by marker name
+     */
+    MarkerRules(String settings, Set<String> denied, Map<String, LogTargets> routes) {
+        this.settings = settings;
+        this.denied = denied;
+        this.routes = routes;
+        this.empty = denied.isEmpty() && routes.isEmpty();
+    }
+
+    String getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return true, if there are no rules
+     */
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return {@link #DROP}, if the event must be dropped, the route of the first routed marker or
+     * null for the targets of the configuration
+     */
+    LogTargets route(List<Marker> markers) {
+        if (empty || markers == null) return null;
+        LogTargets route = null;
+        for (int i = 0; i < markers.size(); i++) {
+            LogTargets decision = decide(markers.get(i));
+            if (decision == DROP) return DROP;
+            if (route == null && decision != NO_RULE) route = decision;
+        }
+        return route;
+    }
+
+    private LogTargets decide(Marker marker) {
+        IdentityHashMap<Marker, LogTargets> current = decisions;
+        LogTargets decision = current.get(marker);
+        if (decision != null) return decision;
+
+        decision = compute(marker, 0);
+        if (current.size() < MAX_CACHED_MARKERS) {
+            IdentityHashMap<Marker, LogTargets> copy = new IdentityHashMap<>(current);
+            copy.put(marker, decision);
+            decisions = copy;
+        }
+        return decision;
+    }
+
+    private LogTargets compute(Marker marker, int depth) {
+        if (denied.contains(marker.getName())) return DROP;
+        LogTargets route = routes.get(marker.getName());
+        if (depth < MAX_REFERENCE_DEPTH && marker.hasReferences()) {
+            Iterator<Marker> references = marker.iterator();
+            while (references.hasNext()) {
+                LogTargets decision = compute(references.next(), depth + 1);
+                if (decision == DROP) return DROP;
+                if (route == null && decision != NO_RULE) route = decision;
+            }
+        }
+        return route == null ? NO_RULE : route;
+    }
+
+    /**
+     * Flush the targets of all routes.
+     */
+    void flush() {
+        for (LogTargets route : routes.values()) route.flush();
+    }
+
+    /**
+     * Close the log files of the routes, called with the lock of the configuration after the rules are replaced.
+     */
+    void close() {
+        for (LogTargets route : routes.values()) route.close();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.util.Arrays;
+
+/**
+ * A message pattern with {} placeholders, parsed once into the ranges of literal text
+ * and the argument slots. Appending a message then only copies the literal ranges and
+ * the arguments.
+ * <p>
+ * The parsed templates are kept in a small cache, one slot per hash of the pattern. A
+ * pattern is found by identity first, for the usual string literal, and by equality
+ * second. A slot is replaced by the next pattern with the same hash, so patterns built
+ * at runtime can't fill the memory. The templates are immutable, the cache needs no lock.
+ */
+final class MessageTemplate {
+
+    static final int CACHE_SIZE = 1024;
+
+    private static final MessageTemplate[] CACHE = new MessageTemplate[CACHE_SIZE];
+
+    private static final int[] NO_SEGMENTS = new int[0];
+
+    private final String pattern;
+
+    /**
+     * Pairs of start and end index of a literal range, an argument slot is stored as -1 and
+     * the index of the pattern behind the placeholder
+     */
+    private final int[] segments;
+
+    private MessageTemplate(String pattern, int[] segments) {
+        this.pattern = pattern;
+        this.segments = segments;
+    }
+
+    /**
+     * @return the parsed template of the pattern, cached
+     */
+    static MessageTemplate of(String messagePattern) {
+        int index = messagePattern.hashCode() & (CACHE_SIZE - 1);
+        MessageTemplate template = CACHE[index];
+        if (template != null && (template.pattern == messagePattern || template.pattern.equals(messagePattern))) {
+            return template;
+        }
+        template = parse(messagePattern);
+        CACHE[index] = template;
+        return template;
+    }
+
+    /**
+     * Parse the pattern in the same way {@link org.slf4j.helpers.MessageFormatter} does.
+     */
+    static MessageTemplate parse(String messagePattern) {
+        if (messagePattern.indexOf(LongriMessageFormatter.DELIM_STR) < 0) {
+            return new MessageTemplate(messagePattern, NO_SEGMENTS);
+        }
+        int[] segments = new int[8];
+        int count = 0;
+        int i = 0;
+        int j;
+        while ((j = messagePattern.indexOf(LongriMessageFormatter.DELIM_STR, i)) >= 0) {
+            if (count + 6 > segments.length) segments = Arrays.copyOf(segments, segments.length * 2);
+            if (isEscapedDelimiter(messagePattern, j)) {
+                if (!isDoubleEscaped(messagePattern, j)) {
+                    // DELIM_START was escaped, thus no argument is used
+                    segments[count++] = i;
+                    segments[count++] = j - 1;
+                    segments[count++] = j;
+                    segments[count++] = j + 1;
+                    i = j + 1;
+                    continue;
+                }
+                // the escape character preceding the delimiter start is itself escaped: "abc x:\\{}"
+                segments[count++] = i;
+                segments[count++] = j - 1;
+            } else {
+                segments[count++] = i;
+                segments[count++] = j;
+            }
+            segments[count++] = -1;
+            segments[count++] = j + 2;
+            i = j + 2;
+        }
+        if (count + 2 > segments.length) segments = Arrays.copyOf(segments, count + 2);
+        segments[count++] = i;
+        segments[count++] = messagePattern.length();
+        return new MessageTemplate(messagePattern, Arrays.copyOf(segments, count));
+    }
+
+    private static boolean isEscapedDelimiter(String messagePattern, int delimiterStartIndex) {
+        return delimiterStartIndex != 0 && messagePattern.charAt(delimiterStartIndex - 1) == LongriMessageFormatter.ESCAPE_CHAR;
+    }
+
+    private static boolean isDoubleEscaped(String messagePattern, int delimiterStartIndex) {
+        return delimiterStartIndex >= 2 && messagePattern.charAt(delimiterStartIndex - 2) == LongriMessageFormatter.ESCAPE_CHAR;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return true, if the pattern has {} placeholders
+     */
+    boolean hasPlaceholders() {
+        return segments.length > 0;
+    }
+
+    /**
+     * Append the pattern with the first argCount arguments. Behind the last used argument the
+     * pattern is appended unchanged, as from {@link org.slf4j.helpers.MessageFormatter}.
+     */
+    void appendTo(StringBuilder buf, Object[] arguments, int argCount) {
+        if (argCount == 0 || segments.length == 0) {
+            buf.append(pattern);
+            return;
+        }
+        int used = 0;
+        for (int k = 0; k < segments.length; k += 2) {
+            int start = segments[k];
+            int end = segments[k + 1];
+            if (start >= 0) {
+                buf.append(pattern, start, end);
+            } else {
+                LongriMessageFormatter.appendArgument(buf, arguments[used++]);
+                if (used == argCount) {
+                    buf.append(pattern, end, pattern.length());
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The layout of a log line, compiled once from a pattern like
+ * {@code %d{HH:mm:ss.SSS} [%t] %level %logger{short} - %msg%n} into an array of converters.
+ * Each converter appends its part straight into the line buffer.
+ * <p>
+ * Supported conversion words:
+ * <ul>
+ * <li>{@code %d{format}}, {@code %date{format}} - the time, formatted like {@link java.text.SimpleDateFormat}</li>
+ * <li>{@code %r}, {@code %relative} - milliseconds since the start</li>
+ * <li>{@code %t}, {@code %thread} - the thread name</li>
+ * <li>{@code %tid} - the thread id</li>
+ * <li>{@code %p}, {@code %le}, {@code %level} - the level</li>
+ * <li>{@code %c}, {@code %lo}, {@code %logger} - the logger name, {@code {short}} for the part behind the last dot</li>
+ * <li>{@code %marker} - the markers, if there are any</li>
+ * <li>{@code %X{key}}, {@code %mdc{key}} - the MDC value of the key, without a key all values as {@code key=value, ...}</li>
+ * <li>{@code %m}, {@code %msg}, {@code %message} - the key-value pairs, if there are any, and the formatted message</li>
+ * <li>{@code %n} - a line separator, at the end of the pattern it is ignored, every line is ended by the targets</li>
+ * <li>{@code %%} - a percent sign</li>
+ * <li>{@code %json{format}} - the whole event as JSON object, see {@link JsonConverter}</li>
+ * </ul>
+ */
+final class PatternLayout {
+
+    static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+    /**
+     * Appends one part of the line
+     */
+    abstract static class Converter {
+        abstract void append(StringBuilder buf, LongriLogEvent event);
+    }
+
+    private final String pattern;
+    private final Converter[] converters;
+    private final boolean usesMdc;
+    private final boolean structured;
+
+    private PatternLayout(String pattern, Converter[] converters) {
+        this.pattern = pattern;
+        this.converters = converters;
+        boolean mdc = false;
+        boolean json = false;
+        for (Converter converter : converters) {
+            mdc |= converter instanceof MdcConverter || converter instanceof JsonConverter;
+            json |= converter instanceof JsonConverter;
+        }
+        this.usesMdc = mdc;
+        this.structured = json;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return true, if the events must capture the MDC
+     */
+    boolean usesMdc() {
+        return usesMdc;
+    }
+
+    /**
+     * @return true, if the line is structured like JSON, it renders the throwable and isn't colored
+     */
+    boolean isStructured() {
+        return structured;
+    }
+
+    /**
+     * Append the line of the event, without the line separator.
+     */
+    void format(StringBuilder buf, LongriLogEvent event) {
+        for (Converter converter : converters) {
+            converter.append(buf, event);
+        }
+    }
+
+    /**
+     * @return the pattern with the same line as the boolean properties of the previous versions
+     */
+    static String fromSettings(boolean showDateTime, String dateTimeFormat, boolean showThreadName, boolean showThreadId,
+                               boolean levelInBrackets, boolean showShortLogName, boolean showLogName) {
+        StringBuilder sb = new StringBuilder();
+        if (showDateTime) {
+            if (dateTimeFormat != null) {
+                sb.append("%d{").append(dateTimeFormat).append("} ");
+            } else {
+                sb.append("%r ");
+            }
+        }
+        if (showThreadName) sb.append("[%t] ");
+        if (showThreadId) sb.append(LongriLogger.TID_PREFIX).append("%tid ");
+        sb.append(levelInBrackets ? "[%level] " : "%level ");
+        if (showShortLogName) {
+            sb.append("%logger{short} - ");
+        } else if (showLogName) {
+            sb.append("%logger - ");
+        }
+        sb.append("%marker%msg%n");
+        return sb.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if a conversion word is unknown
+     */
+    static PatternLayout compile(String pattern) {
+        List<Converter> converters = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        int length = pattern.length();
+        while (i < length) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i < length && pattern.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+            int wordStart = i;
+            while (i < length && Character.isLetter(pattern.charAt(i))) i++;
+            String word = pattern.substring(wordStart, i);
+            String option = null;
+            if (i < length && pattern.charAt(i) == '{') {
+                int optionEnd = pattern.indexOf('}', i);
+                if (optionEnd < 0) throw new IllegalArgumentException("Missing '}' in log pattern [" + pattern + "]");
+                option = pattern.substring(i + 1, optionEnd);
+                i = optionEnd + 1;
+            }
+
+            if ("n".equals(word)) {
+                // the targets end the line
+                if (i < length) literal.append(System.lineSeparator());
+                continue;
+            }
+            if (literal.length() > 0) {
+                converters.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            converters.add(converter(word, option, pattern));
+        }
+        if (literal.length() > 0) converters.add(new Literal(literal.toString()));
+        return new PatternLayout(pattern, converters.toArray(new Converter[0]));
+    }
+
+    private static Converter converter(String word, String option, String pattern) {
+        switch (word) {
+            case "d":
+            case "date":
+                String format = option == null || option.isEmpty() ? DEFAULT_DATE_FORMAT : option;
+                try {
+                    return new DateConverter(new CachedDateFormatter(format));
+                } catch (IllegalArgumentException e) {
+                    LongriMessageFormatter.report("Bad date format [" + format + "] in the log pattern; will output relative time", e);
+                    return new RelativeTimeConverter();
+                }
+            case "r":
+            case "relative":
+                return new RelativeTimeConverter();
+            case "t":
+            case "thread":
+                return new ThreadNameConverter();
+            case "tid":
+                return new ThreadIdConverter();
+            case "p":
+            case "le":
+            case "level":
+                return new LevelConverter();
+            case "c":
+            case "lo":
+            case "logger":
+                return "short".equals(option) ? new ShortLoggerConverter() : new LoggerConverter();
+            case "marker":
+                return new MarkerConverter();
+            case "X":
+            case "mdc":
+                return new MdcConverter(option == null || option.isEmpty() ? null : option);
+            case "m":
+            case "msg":
+            case "message":
+                return new MessageConverter();
+            case "json":
+                return new JsonConverter(option);
+            default:
+                throw new IllegalArgumentException("Unknown conversion word [%" + word + "] in log pattern [" + pattern + "]");
+        }
+    }
+
+    private static final class Literal extends Converter {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            buf.append(text);
+        }
+    }
+
+    private static final class DateConverter extends Converter {
+        private final CachedDateFormatter formatter;
+
+        DateConverter(CachedDateFormatter formatter) {
+            this.formatter = formatter;
+        }
+
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            formatter.appendTo(buf, event.timeMillis);
+        }
+    }
+
+    private static final class RelativeTimeConverter extends Converter {
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            buf.append(event.timeMillis - LongriLogger.START_TIME);
+        }
+    }
+
+    private static final class ThreadNameConverter extends Converter {
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            buf.append(event.threadName);
+        }
+    }
+
+    private static final class ThreadIdConverter extends Converter {
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            buf.append(event.threadId);
+        }
+    }
+
+    private static final class LevelConverter extends Converter {
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            buf.append(event.level.name());
+        }
+    }
+
+    private static final class LoggerConverter extends Converter {
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            buf.append(event.getLoggerName());
+        }
+    }
+
+    private static final class ShortLoggerConverter extends Converter {
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            buf.append(event.getShortLoggerName());
+        }
+    }
+
+    private static final class MarkerConverter extends Converter {
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            List<Marker> markers = event.getMarkers();
+            if (markers == null) return;
+            buf.append(' ');
+            for (Marker marker : markers) {
+                buf.append(marker.getName()).append(' ');
+            }
+        }
+    }
+
+    private static final class MessageConverter extends Converter {
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            event.appendMessage(buf);
+        }
+    }
+
+    private static final class MdcConverter extends Converter {
+        /**
+         * null for all values
+         */
+        private final String key;
+
+        MdcConverter(String key) {
+            this.key = key;
+        }
+
+        @Override
+        void append(StringBuilder buf, LongriLogEvent event) {
+            LongriMDCAdapter.Context mdc = event.mdc;
+            if (mdc == null) return;
+            if (key != null) {
+                String value = mdc.get(key);
+                if (value != null) buf.append(value);
+                return;
+            }
+            for (int i = 0; i < mdc.size(); i++) {
+                if (i > 0) buf.append(", ");
+                buf.append(mdc.key(i)).append('=').append(mdc.value(i));
+            }
+        }
+    }
+}
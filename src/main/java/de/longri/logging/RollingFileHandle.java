@@ -20,26 +20,21 @@ package de.longri.logging;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 
 public class RollingFileHandle {
 
-    static void sleep(long ms) {
-        try {
-            Thread.sleep(ms);
-        } catch (InterruptedException e) {
-            //ignore
-        }
-    }
+    static final String INDEX_TOKEN = "%i";
 
     static File getFth(File baseDir, String filename) {
         if (baseDir == null) throw new RuntimeException("baseDir can't be NULL");
@@ -65,9 +60,11 @@ public class RollingFileHandle {
 
         if (!baseDir.exists()) {
             //create base dir if not exist
-            baseDir.mkdirs();
-            sleep(200);
-            if (!baseDir.exists()) throw new RuntimeException("Can't create base dir");
+            try {
+                Files.createDirectories(baseDir.toPath());
+            } catch (IOException e) {
+                throw new RuntimeException("Can't create base dir", e);
+            }
         }
     }
 
@@ -78,11 +75,23 @@ public class RollingFileHandle {
      * @return
      */
     public boolean rolling(String datePattern, int age, int keep) {
+        return rolling(datePattern, age, keep, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param datePattern
+     * @param age              days for keep, before rolling
+     * @param keep
+     * @param compressionLevel the {@link Deflater} level for {@code .zip} and {@code .gz} files
+     * @return
+     */
+    public boolean rolling(String datePattern, int age, int keep, int compressionLevel) {
         boolean rolling = false;
-        if (!HANDLE.exists()) {
+        if (datePattern == null || !HANDLE.exists()) {
             return rolling;
         }
 
+        long startMillis;
         try {
             BasicFileAttributes attr = Files.readAttributes(HANDLE.toPath(), BasicFileAttributes.class);
             LocalDateTime now = LocalDateTime.now();
@@ -92,48 +101,159 @@ public class RollingFileHandle {
             if (!isDateBefore(keepDate, now)) {
                 return rolling;
             }
+            startMillis = attr.creationTime().toMillis();
         } catch (Exception e) {
             return rolling;
         }
+        long endMillis = HANDLE.lastModified();
 
         //create new storage name from pattern
-        sleep(500);
-        String newName = getFileNameFromPattern(datePattern);
-        File movedFile = new File(BASE_DIR, newName);
+        File movedFile = nextRollingFile(datePattern, LocalDateTime.now().minusDays(1));// file is from yesterday
+        File source = LogFileCompressor.source(movedFile);
+        if (!this.moveTo(source))
+            throw new RuntimeException("can't moving rolling file from '" + this + "' to '" + source + "'");
 
-        if (extension(movedFile).equals("zip")) {
+        compressAndKeep(source, movedFile, datePattern, keep, compressionLevel, startMillis, endMillis);
+        return true;
+    }
 
-            try {
-                this.zipTo(movedFile);
-            } catch (IOException  e) {
-                throw new RuntimeException(e);
-            }
+    /**
+     * Roll the log file, because it has reached the max size. The rolled file gets the date
+     * of today and the next free index. If the pattern has no {@code %i}, the index is
+     * added behind the date, see {@link #withIndex(String)}.
+     *
+     * @param datePattern      the file pattern
+     * @param keep             the number of rolled files to keep
+     * @param compressionLevel the {@link Deflater} level for {@code .zip} and {@code .gz} files
+     * @return true, if the file was rolled
+     */
+    public boolean rollBySize(String datePattern, int keep, int compressionLevel) {
+        if (!HANDLE.exists()) {
+            return false;
+        }
+        String pattern = withIndex(datePattern);
+        File movedFile = nextRollingFile(pattern, LocalDateTime.now());
+        File source = LogFileCompressor.source(movedFile);
+        long endMillis = HANDLE.lastModified();
+        if (!this.moveTo(source))
+            throw new RuntimeException("can't moving rolling file from '" + this + "' to '" + source + "'");
+
+        compressAndKeep(source, movedFile, pattern, keep, compressionLevel, endMillis, endMillis);
+        return true;
+    }
 
-            // delete the current log file, this will then create new later
-            sleep(500);
-            HANDLE.delete();
+    /**
+     * Compress the rolled file in the background, if the pattern ends with {@code .zip} or
+     * {@code .gz}, and add it to the {@link LogFileRetention} after that.
+     *
+     * @param source      the rolled, uncompressed file
+     * @param movedFile   the final name of the rolled file
+     * @param startMillis time of the first record in the file
+     * @param endMillis   time of the last record in the file
+     */
+    void compressAndKeep(File source, File movedFile, String datePattern, int keep, int compressionLevel,
+                         long startMillis, long endMillis) {
+        LogFileRetention retention = LogFileRetention.of(BASE_DIR, HANDLE.getName());
+        if (LogFileCompressor.isArchive(movedFile)) {
+            LogFileCompressor.submit(source, HANDLE.getName(), movedFile, compressionLevel, () ->
+                    // a failed compression keeps the source
+                    retention.add(this, datePattern, movedFile.exists() ? movedFile : source, startMillis, endMillis, keep));
         } else {
-            this.moveTo(movedFile);
+            retention.add(this, datePattern, movedFile, startMillis, endMillis, keep);
         }
-        sleep(500);
-        if (!movedFile.exists())
-            throw new RuntimeException("can't moving rolling file from '" + this + "' to '" + movedFile + "'");
+    }
 
-        keep(datePattern, age, keep);
-        return true;
+    /**
+     * @return the file for the pattern and date, with the next free {@code %i} index
+     */
+    File nextRollingFile(String datePattern, LocalDateTime date) {
+        String name = getFileNameFromPattern(datePattern, date, -1);
+        int pos = name.indexOf(INDEX_TOKEN);
+        if (pos < 0) return new File(BASE_DIR, name);
+
+        // highest index of the existing files + 1, so the order of the rolled files is kept
+        File template = new File(BASE_DIR, name);
+        String fileName = template.getName();
+        int namePos = fileName.indexOf(INDEX_TOKEN);
+        String prefix = fileName.substring(0, namePos);
+        String suffix = fileName.substring(namePos + INDEX_TOKEN.length());
+        // a rolled file which isn't zipped yet has no .zip extension
+        String sourceSuffix = LogFileCompressor.source(new File(suffix)).getName();
+        int index = 0;
+        String[] names = template.getParentFile().list();
+        if (names != null) {
+            for (String existing : names) {
+                index = Math.max(index, indexOf(existing, prefix, suffix));
+                index = Math.max(index, indexOf(existing, prefix, sourceSuffix));
+            }
+        }
+        return new File(BASE_DIR, getFileNameFromPattern(datePattern, date, index + 1));
     }
 
-    private String extension(File file) {
-        String name = file.getName();
-        int pos = name.lastIndexOf(".");
-        if (pos < 1) return null;
-        return name.substring(pos + 1);
+    private static int indexOf(String name, String prefix, String suffix) {
+        if (name.length() <= prefix.length() + suffix.length()
+                || !name.startsWith(prefix) || !name.endsWith(suffix)) return 0;
+        try {
+            return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            // not a rolled file of this pattern
+            return 0;
+        }
     }
 
-    private void moveTo(File dest) {
-        File rnf = new File(HANDLE.getAbsolutePath());
-        File nf = new File(dest.getAbsolutePath());
-        rnf.renameTo(nf);
+    /**
+     * @param age days for keep, before rolling
+     * @return true, if the log file is old enough for rolling. Always true for an age of one day or less.
+     */
+    boolean isAgeReached(int age) {
+        if (age <= 1) return true;
+        try {
+            BasicFileAttributes attr = Files.readAttributes(HANDLE.toPath(), BasicFileAttributes.class);
+            LocalDateTime creationTime = LocalDateTime.ofInstant(attr.creationTime().toInstant(), ZoneId.systemDefault());
+            return isDateBefore(creationTime.plusDays(age - 1), LocalDateTime.now());
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Rename the log file with one atomic file system operation. Used for the open log file,
+     * a copy would miss the lines written while copying.
+     *
+     * @return true, if the file was renamed
+     */
+    boolean renameTo(File dest) {
+        try {
+            Files.move(HANDLE.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Move the closed log file. The file is renamed atomically if possible, copied and
+     * deleted if the target is on another file system.
+     *
+     * @return true, if the file was moved
+     */
+    boolean moveTo(File dest) {
+        if (renameTo(dest)) return true;
+        Path source = HANDLE.toPath();
+        Path target = dest.toPath();
+        try {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            Files.delete(source);
+            return true;
+        } catch (IOException e) {
+            // don't keep the lines twice
+            dest.delete();
+            return false;
+        }
     }
 
     boolean isDateBefore(LocalDateTime ldt1, LocalDateTime ldt2) {
@@ -143,48 +263,30 @@ public class RollingFileHandle {
         return ld1.isBefore(ld2);
     }
 
-    void keep(String datePattern, int age, int keep) {
+    /**
+     * Search the rolled files of the pattern in the base dir, used if there is no index of
+     * the {@link LogFileRetention} yet.
+     */
+    File[] listRolledFiles(String datePattern) {
         String searchSplit = datePattern.startsWith("/") ? datePattern.replaceFirst("/", "") : datePattern;
-        String[] search;
         int posStart = searchSplit.indexOf("%d{");
         int posEnd = searchSplit.indexOf("}", posStart) + 1;
         if (posStart >= 0 && posEnd > posStart) {
             String dateFormatSubStr = searchSplit.substring(posStart, posEnd);
             searchSplit = searchSplit.replace(dateFormatSubStr, "@#@#@#");
-            search = searchSplit.split("@#@#@#");
-        } else {
-            search = new String[]{searchSplit};
-        }
-
-
-        File[] rollingFiles = BASE_DIR.listFiles(new FilenameFilter() {
-            /**
-             * Tests if a specified file should be included in a file list.
-             *
-             * @param dir  the directory in which the file was found.
-             * @param name the name of the file.
-             * @return {@code true} if and only if the name should be
-             * included in the file list; {@code false} otherwise.
-             */
-            @Override
-            public boolean accept(File dir, String name) {
-                for (String s : search) {
-                    if (!name.contains(s)) return false;
-                }
-                return true;
+        }
+        searchSplit = searchSplit.replace(INDEX_TOKEN, "@#@#@#");
+        String[] search = searchSplit.split("@#@#@#");
+
+        File[] rollingFiles = BASE_DIR.listFiles((dir, name) -> {
+            // the index and unfinished archives
+            if (name.startsWith(".") || name.endsWith(".tmp")) return false;
+            for (String s : search) {
+                if (!name.contains(s)) return false;
             }
+            return true;
         });
-
-        if (rollingFiles.length > keep) {
-            //sort files at date
-            Arrays.sort(rollingFiles, Comparator.comparingLong(File::lastModified).reversed());
-
-            //delete all file's they're over rolling
-
-            for (int i = keep; i < rollingFiles.length; i++) {
-                rollingFiles[i].delete();
-            }
-        }
+        return rollingFiles != null ? rollingFiles : new File[0];
     }
 
 
@@ -194,17 +296,48 @@ public class RollingFileHandle {
     }
 
     static String getFileNameFromPattern(String pattern) {
+        return getFileNameFromPattern(pattern, LocalDateTime.now().minusDays(1), 1);// file is from yesterday
+    }
+
+    /**
+     * @param pattern the file pattern with {@code %d{...}} and {@code %i}
+     * @param date    the date for {@code %d{...}}
+     * @param index   the index for {@code %i}, a negative index keeps the {@code %i} token
+     * @return the file name
+     */
+    static String getFileNameFromPattern(String pattern, LocalDateTime date, int index) {
         int posStart = pattern.indexOf("%d{");
         int posEnd = pattern.indexOf("}", posStart) + 1;
         if (posStart >= 0 && posEnd > posStart) {
             String dateFormatSubStr = pattern.substring(posStart + 3, posEnd - 1);
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern(dateFormatSubStr);
-            String dateStr = formatter.format(LocalDate.now().minusDays(1));// file is from yesterday
+            String dateStr = formatter.format(date);
             pattern = pattern.replace("%d{" + dateFormatSubStr + "}", dateStr);
         }
+        if (index >= 0) {
+            pattern = pattern.replace(INDEX_TOKEN, Integer.toString(index));
+        }
         return pattern;
     }
 
+    /**
+     * Add the {@code %i} token to a pattern without one, behind the date or in front of
+     * the extensions of the file name. {@code log_%d{yyyy_MM_dd}.log.zip} becomes
+     * {@code log_%d{yyyy_MM_dd}_%i.log.zip}.
+     */
+    static String withIndex(String pattern) {
+        if (pattern.contains(INDEX_TOKEN)) return pattern;
+        int posStart = pattern.indexOf("%d{");
+        int posEnd = pattern.indexOf("}", posStart) + 1;
+        if (posStart >= 0 && posEnd > posStart) {
+            return pattern.substring(0, posEnd) + "_" + INDEX_TOKEN + pattern.substring(posEnd);
+        }
+        int nameStart = Math.max(pattern.lastIndexOf('/'), pattern.lastIndexOf('\\')) + 1;
+        int dot = pattern.indexOf('.', nameStart + 1);
+        if (dot < 0) return pattern + "_" + INDEX_TOKEN;
+        return pattern.substring(0, dot) + "_" + INDEX_TOKEN + pattern.substring(dot);
+    }
+
     public void zipTo(File targetFileHandle) throws IOException {
         FileOutputStream fos = new FileOutputStream(targetFileHandle);
         ZipOutputStream zipOut = new ZipOutputStream(fos);
@@ -234,7 +367,7 @@ public class RollingFileHandle {
         FileInputStream fis = new FileInputStream(fileToZip);
         ZipEntry zipEntry = new ZipEntry(fileName);
         zipOut.putNextEntry(zipEntry);
-        byte[] bytes = new byte[1024];
+        byte[] bytes = new byte[LogFileCompressor.BUFFER_SIZE];
         int length;
         while ((length = fis.read(bytes)) >= 0) {
             zipOut.write(bytes, 0, length);
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.WeekFields;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Rolls the log files at the time boundaries of their {@code %d{...}} pattern, while the
+ * application is running. The smallest field of the date pattern sets the granularity,
+ * {@code %d{yyyy_MM_dd_HH}} rolls every hour, {@code %d{yyyy_MM}} every month.
+ * <p>
+ * The roll at the boundary and closing the old output run on one daemon thread, the
+ * rolled file is compressed by the {@link LogFileCompressor}. Writers only wait for the
+ * swap of the output.
+ */
+final class RollingScheduler {
+
+    static final String THREAD_NAME = "LongriLogger-Rolling";
+
+    private static ScheduledExecutorService executor;
+    private static volatile Thread thread;
+
+    private RollingScheduler() {
+    }
+
+    private static synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                thread = new Thread(r, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Run a task on the rolling thread, used to close rolled files.
+     */
+    static void execute(Runnable task) {
+        executor().execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LongriMessageFormatter.report("Log file rolling failed", e);
+            }
+        });
+    }
+
+    /**
+     * @return true, if the current thread is the rolling thread
+     */
+    static boolean isRollingThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Wait until all tasks, submitted before this call, are done.
+     *
+     * @return true, if the tasks are done in time
+     */
+    static boolean await(long timeoutMillis) {
+        try {
+            executor().submit(() -> {
+            }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Schedule the next roll of the stream, if the pattern has a {@code %d{...}} field.
+     */
+    static void schedule(LogFileStream stream, String pattern) {
+        ChronoUnit unit = granularity(pattern);
+        if (unit == null) return;
+        schedule(stream, unit, nextBoundary(ZonedDateTime.now(), unit));
+    }
+
+    private static void schedule(LogFileStream stream, ChronoUnit unit, ZonedDateTime boundary) {
+        long delay = Math.max(ChronoUnit.MILLIS.between(ZonedDateTime.now(), boundary), 0);
+        ScheduledFuture<?> task = executor().schedule(() -> {
+            if (stream.isRollingStopped()) return;
+            ZonedDateTime now = ZonedDateTime.now();
+            if (now.isBefore(boundary)) {
+                // woke up too early, the clock was changed
+                schedule(stream, unit, boundary);
+                return;
+            }
+            try {
+                stream.rollOnTime(boundary.toLocalDateTime());
+            } catch (RuntimeException e) {
+                LongriMessageFormatter.report("Log file rolling failed", e);
+            }
+            schedule(stream, unit, nextBoundary(now, unit));
+        }, delay, TimeUnit.MILLISECONDS);
+        stream.setRollingTask(task);
+    }
+
+    /**
+     * @return the smallest unit of the {@code %d{...}} field of the pattern, null if there is none
+     */
+    static ChronoUnit granularity(String pattern) {
+        if (pattern == null) return null;
+        int posStart = pattern.indexOf("%d{");
+        int posEnd = pattern.indexOf("}", posStart);
+        if (posStart < 0 || posEnd < posStart) return null;
+
+        ChronoUnit unit = null;
+        boolean quoted = false;
+        for (int i = posStart + 3; i < posEnd; i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                continue;
+            }
+            if (quoted) continue;
+            ChronoUnit fieldUnit = unitOf(c);
+            if (fieldUnit != null && (unit == null || fieldUnit.getDuration().compareTo(unit.getDuration()) < 0)) {
+                unit = fieldUnit;
+            }
+        }
+        return unit;
+    }
+
+    private static ChronoUnit unitOf(char field) {
+        switch (field) {
+            case 's':
+            case 'S':
+            case 'n':
+            case 'N':
+            case 'A':
+                return ChronoUnit.SECONDS;
+            case 'm':
+                return ChronoUnit.MINUTES;
+            case 'H':
+            case 'h':
+            case 'k':
+            case 'K':
+                return ChronoUnit.HOURS;
+            case 'a':
+                return ChronoUnit.HALF_DAYS;
+            case 'd':
+            case 'D':
+            case 'E':
+            case 'e':
+            case 'c':
+            case 'F':
+                return ChronoUnit.DAYS;
+            case 'w':
+            case 'W':
+                return ChronoUnit.WEEKS;
+            case 'M':
+            case 'L':
+            case 'Q':
+            case 'q':
+                return ChronoUnit.MONTHS;
+            case 'y':
+            case 'u':
+            case 'Y':
+                return ChronoUnit.YEARS;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the start of the next period of the unit, after now
+     */
+    static ZonedDateTime nextBoundary(ZonedDateTime now, ChronoUnit unit) {
+        ZoneId zone = now.getZone();
+        LocalDateTime local = now.toLocalDateTime();
+        LocalDateTime next;
+        switch (unit) {
+            case SECONDS:
+            case MINUTES:
+            case HOURS:
+            case HALF_DAYS:
+                next = local.truncatedTo(unit).plus(1, unit);
+                break;
+            case WEEKS:
+                next = local.toLocalDate().with(WeekFields.of(Locale.getDefault()).dayOfWeek(), 1).plusWeeks(1).atStartOfDay();
+                break;
+            case MONTHS:
+                next = local.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+                break;
+            case YEARS:
+                next = local.toLocalDate().withDayOfYear(1).plusYears(1).atStartOfDay();
+                break;
+            default:
+                next = local.toLocalDate().plusDays(1).atStartOfDay();
+        }
+        ZonedDateTime boundary = next.atZone(zone);
+        // a boundary in a DST gap is moved forward, never return a time before now
+        return boundary.isAfter(now) ? boundary : nextBoundary(boundary.plusSeconds(1), unit);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders the stack trace of a throwable in the same form as {@link Throwable#printStackTrace()}.
+ * <p>
+ * The rendered frames are cached in a LRU map by a hash of the trace: the classes and the frames
+ * of the throwable, its suppressed throwables and its causes. The first line of each throwable
+ * is rendered again every time, only the messages of a repeated exception differ usually. The
+ * cache can be configured with:
+ * <ul>
+ * <li>{@code longriLogger.stackTraceMaxFrames} - the frames of each throwable, the others are
+ * written as {@code ... 42 frames omitted}, 0 for all frames</li>
+ * <li>{@code longriLogger.stackTraceFold} - comma separated packages, a run of frames in these
+ * packages is written as {@code ... 7 frames folded}</li>
+ * <li>{@code longriLogger.stackTraceCacheSize} - the number of cached traces, 0 to render every trace</li>
+ * <li>{@code longriLogger.stackTraceRepeatWindowMillis} - a trace, which was written in this time
+ * window, is written as the first line and {@code ... same as trace #1a2b3c4d (seen 12 times)},
+ * 0 to write every trace. A written trace ends with {@code ... trace #1a2b3c4d}.</li>
+ * </ul>
+ * The map is guarded by the lock of the renderer, the rendering is done without the lock.
+ */
+final class ThrowableRenderer {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final String CAUSE_CAPTION = "Caused by: ";
+    private static final String SUPPRESSED_CAPTION = "Suppressed: ";
+
+    static final ThrowableRenderer DEFAULT = new ThrowableRenderer(0, new String[0], 256, 0);
+
+    /**
+     * One throwable of the trace, in the order of printStackTrace
+     */
+    private static final class Node {
+        final Throwable throwable;
+        final String prefix;
+        final String caption;
+        final StackTraceElement[] frames;
+        /**
+         * The frames in common with the enclosing throwable, -1 for a circular reference
+         */
+        final int framesInCommon;
+
+        Node(Throwable throwable, String prefix, String caption, StackTraceElement[] frames, int framesInCommon) {
+            this.throwable = throwable;
+            this.prefix = prefix;
+            this.caption = caption;
+            this.frames = frames;
+            this.framesInCommon = framesInCommon;
+        }
+    }
+
+    /**
+     * The rendered frames of a trace
+     */
+    private static final class Trace {
+        final String id;
+        final Class<?>[] classes;
+        final StackTraceElement[][] frames;
+        final int[] framesInCommon;
+        final String[] blocks;
+
+        // guarded by the lock of the renderer, seen is 0 until the trace is written with the repeat window
+        long windowStart;
+        int seen;
+
+        Trace(long hash, List<Node> nodes, String[] blocks) {
+            this.id = String.format("%08x", (int) (hash ^ (hash >>> 32)));
+            int size = nodes.size();
+            classes = new Class<?>[size];
+            frames = new StackTraceElement[size][];
+            framesInCommon = new int[size];
+            for (int i = 0; i < size; i++) {
+                Node node = nodes.get(i);
+                classes[i] = node.throwable.getClass();
+                frames[i] = node.frames;
+                framesInCommon[i] = node.framesInCommon;
+            }
+            this.blocks = blocks;
+        }
+
+        boolean matches(List<Node> nodes) {
+            if (nodes.size() != classes.length) return false;
+            for (int i = 0; i < classes.length; i++) {
+                Node node = nodes.get(i);
+                if (node.throwable.getClass() != classes[i] || node.framesInCommon != framesInCommon[i]
+                        || !Arrays.equals(node.frames, frames[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final int maxFrames;
+    private final String[] foldPackages;
+    private final int cacheSize;
+    private final long repeatWindowMillis;
+    private final Map<Long, Trace> cache;
+
+    /**
+     * @param maxFrames          the frames of each throwable, 0 for all
+     * @param foldPackages       the packages of the frames, which are folded
+     * @param cacheSize          the number of cached traces, 0 for no cache
+     * @param repeatWindowMillis the time window, in which a trace is written once, 0 to write every trace
+     */
+    ThrowableRenderer(int maxFrames, String[] foldPackages, int cacheSize, long repeatWindowMillis) {
+        this.maxFrames = Math.max(0, maxFrames);
+        this.foldPackages = foldPackages;
+        this.cacheSize = Math.max(0, cacheSize);
+        // the repeats are counted by the cached traces
+        this.repeatWindowMillis = this.cacheSize > 0 ? Math.max(0, repeatWindowMillis) : 0;
+        this.cache = new LinkedHashMap<Long, Trace>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Trace> eldest) {
+                return size() > ThrowableRenderer.this.cacheSize;
+            }
+        };
+    }
+
+    boolean isSameAs(int maxFrames, String[] foldPackages, int cacheSize, long repeatWindowMillis) {
+        return this.maxFrames == Math.max(0, maxFrames) && Arrays.equals(this.foldPackages, foldPackages)
+                && this.cacheSize == Math.max(0, cacheSize)
+                && this.repeatWindowMillis == (this.cacheSize > 0 ? Math.max(0, repeatWindowMillis) : 0);
+    }
+
+    /**
+     * @return the stack trace, each line ends with a line separator
+     */
+    String render(Throwable throwable, long timeMillis) {
+        return render(throwable, timeMillis, repeatWindowMillis > 0);
+    }
+
+    /**
+     * @return the stack trace with the limits of the frames, but never as repeat of a trace
+     */
+    String render(Throwable throwable) {
+        return render(throwable, 0, false);
+    }
+
+    private String render(Throwable throwable, long timeMillis, boolean repeats) {
+        List<Node> nodes = new ArrayList<>();
+        collect(throwable, null, "", "", Collections.newSetFromMap(new IdentityHashMap<>()), nodes);
+        if (cacheSize == 0) return render(nodes, renderBlocks(nodes), null);
+
+        long hash = hash(nodes);
+        Trace trace;
+        int seen = 0;
+        synchronized (this) {
+            trace = cache.get(hash);
+            if (trace != null && !trace.matches(nodes)) trace = null;
+            if (trace != null && repeats) {
+                if (trace.seen > 0 && timeMillis - trace.windowStart < repeatWindowMillis) {
+                    seen = ++trace.seen;
+                } else {
+                    trace.windowStart = timeMillis;
+                    trace.seen = 1;
+                }
+            }
+        }
+        if (seen > 0) {
+            return throwable + LINE_SEPARATOR + "\t... same as trace #" + trace.id + " (seen " + seen + " times)" + LINE_SEPARATOR;
+        }
+        if (trace == null) {
+            trace = new Trace(hash, nodes, renderBlocks(nodes));
+            if (repeats) {
+                trace.windowStart = timeMillis;
+                trace.seen = 1;
+            }
+            synchronized (this) {
+                cache.put(hash, trace);
+            }
+        }
+        return render(nodes, trace.blocks, repeats ? trace.id : null);
+    }
+
+    /**
+     * Collect the throwable, its suppressed throwables and its causes in the order of printStackTrace.
+     */
+    private static void collect(Throwable throwable, StackTraceElement[] enclosingFrames, String prefix, String caption,
+                                Set<Throwable> dejaVu, List<Node> nodes) {
+        if (!dejaVu.add(throwable)) {
+            nodes.add(new Node(throwable, prefix, caption, new StackTraceElement[0], -1));
+            return;
+        }
+        StackTraceElement[] frames = throwable.getStackTrace();
+        int framesInCommon = 0;
+        if (enclosingFrames != null) {
+            int m = frames.length - 1;
+            int n = enclosingFrames.length - 1;
+            while (m >= 0 && n >= 0 && frames[m].equals(enclosingFrames[n])) {
+                m--;
+                n--;
+            }
+            framesInCommon = frames.length - 1 - m;
+        }
+        nodes.add(new Node(throwable, prefix, caption, frames, framesInCommon));
+        for (Throwable suppressed : throwable.getSuppressed()) {
+            collect(suppressed, frames, prefix + "\t", SUPPRESSED_CAPTION, dejaVu, nodes);
+        }
+        Throwable cause = throwable.getCause();
+        if (cause != null) collect(cause, frames, prefix, CAUSE_CAPTION, dejaVu, nodes);
+    }
+
+    private static long hash(List<Node> nodes) {
+        long hash = 17;
+        for (Node node : nodes) {
+            hash = hash * 31 + node.throwable.getClass().getName().hashCode();
+            hash = hash * 31 + node.prefix.length();
+            hash = hash * 31 + node.caption.hashCode();
+            hash = hash * 31 + node.framesInCommon;
+            for (StackTraceElement frame : node.frames) hash = hash * 31 + frame.hashCode();
+        }
+        return hash;
+    }
+
+    private String[] renderBlocks(List<Node> nodes) {
+        String[] blocks = new String[nodes.size()];
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < blocks.length; i++) {
+            Node node = nodes.get(i);
+            if (node.framesInCommon < 0) continue;
+            buf.setLength(0);
+            appendFrames(buf, node);
+            blocks[i] = buf.toString();
+        }
+        return blocks;
+    }
+
+    private void appendFrames(StringBuilder buf, Node node) {
+        String prefix = node.prefix;
+        int ownFrames = node.frames.length - node.framesInCommon;
+        int limit = maxFrames > 0 ? Math.min(maxFrames, ownFrames) : ownFrames;
+        int i = 0;
+        while (i < limit) {
+            int folded = 0;
+            while (i + folded < limit && isFolded(node.frames[i + folded])) folded++;
+            if (folded > 1) {
+                buf.append(prefix).append("\t... ").append(folded).append(" frames folded").append(LINE_SEPARATOR);
+                i += folded;
+                continue;
+            }
+            buf.append(prefix).append("\tat ").append(node.frames[i++]).append(LINE_SEPARATOR);
+        }
+        if (limit < ownFrames) {
+            buf.append(prefix).append("\t... ").append(ownFrames - limit).append(" frames omitted").append(LINE_SEPARATOR);
+        }
+        if (node.framesInCommon > 0) {
+            buf.append(prefix).append("\t... ").append(node.framesInCommon).append(" more").append(LINE_SEPARATOR);
+        }
+    }
+
+    private boolean isFolded(StackTraceElement frame) {
+        String className = frame.getClassName();
+        for (String foldPackage : foldPackages) {
+            if (className.startsWith(foldPackage)
+                    && (className.length() == foldPackage.length() || className.charAt(foldPackage.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param id the id of the trace, which is written at the end, null without id
+     */
+    private static String render(List<Node> nodes, String[] blocks, String id) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            buf.append(node.prefix).append(node.caption);
+            if (node.framesInCommon < 0) {
+                buf.append("[CIRCULAR REFERENCE: ").append(node.throwable).append(']').append(LINE_SEPARATOR);
+                continue;
+            }
+            buf.append(node.throwable).append(LINE_SEPARATOR).append(blocks[i]);
+        }
+        if (id != null) buf.append("\t... trace #").append(id).append(LINE_SEPARATOR);
+        return buf.toString();
+    }
+}
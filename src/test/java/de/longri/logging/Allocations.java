@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+/**
+ * Measures the bytes allocated by the current thread, for the tests of the paths which should not allocate.
+ */
+final class Allocations {
+
+    static final int WARM_UP = 20_000;
+    static final int CALLS = 10_000;
+
+    private Allocations() {
+    }
+
+    /**
+     * Calls the task {@link #WARM_UP} times, then measures {@link #CALLS} further calls.
+     * The task gets the number of the call.
+     *
+     * @return the bytes allocated by the measured calls, -1 if the JVM can't measure it
+     */
+    static long allocatedBytes(IntConsumer task) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) return -1;
+
+        for (int i = 0; i < WARM_UP; i++) task.accept(i);
+        long tid = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < CALLS; i++) task.accept(i);
+        return bean.getThreadAllocatedBytes(tid) - before;
+    }
+}
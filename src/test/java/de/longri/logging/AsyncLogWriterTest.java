@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLogWriterTest {
+
+    @AfterEach
+    void after() {
+        CONFIG_PARAMS.setProperty(LongriLogger.ASYNC_KEY, false);
+        assertNull(CONFIG_PARAMS.asyncWriter);
+    }
+
+    @Test
+    void multipleProducers() throws IOException, InterruptedException {
+        CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+        CONFIG_PARAMS.setProperty(LongriLogger.ASYNC_CAPACITY_KEY, "64");
+        CONFIG_PARAMS.setProperty(LongriLogger.ASYNC_KEY, true);
+        assertNotNull(CONFIG_PARAMS.asyncWriter);
+        assertEquals(64, CONFIG_PARAMS.asyncWriter.getCapacity());
+
+        OutputChoice choice = new OutputChoice();
+        StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+        choice.add(sbs);
+        CONFIG_PARAMS.setOutputChoice(choice);
+
+        LongriLogger logger = new LongriLogger("AsyncTest");
+        logger.currentLogLevel = LongriLogger.LOG_LEVEL_TRACE;
+
+        int threadCount = 8;
+        int lineCount = 1000;
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < lineCount; j++) {
+                    logger.info("line {}", j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertTrue(CONFIG_PARAMS.flushAsync(10000));
+        String[] lines = sbs.toString().split("\n");
+        assertEquals(threadCount * lineCount, lines.length);
+        assertTrue(lines[0].endsWith("AsyncTest - line 0"));
+        assertEquals(0, CONFIG_PARAMS.asyncWriter.getDroppedCount());
+    }
+
+    @Test
+    void dropAllIfFull() throws IOException {
+        LongriLogger logger = new LongriLogger("AsyncDropTest");
+        OutputChoice choice = new OutputChoice();
+        StringBuilderPrintStream sbs = new StringBuilderPrintStream() {
+            @Override
+            public void println(String s) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                super.println(s);
+            }
+        };
+        choice.add(sbs);
+        CONFIG_PARAMS.setOutputChoice(choice);
+
+        AsyncLogWriter writer = new AsyncLogWriter(2, AsyncWaitStrategy.PARK, AsyncQueueFullPolicy.DROP_ALL, LongriLogger.LOG_LEVEL_WARN);
+        try {
+            int published = 0;
+            for (int i = 0; i < 100; i++) {
+                if (writer.publish(logger, LongriLogger.LOG_LEVEL_ERROR, "line " + i, null, false)) published++;
+            }
+            assertTrue(writer.flush(10000));
+            assertTrue(writer.getDroppedCount() > 0);
+            assertEquals(100, published + writer.getDroppedCount());
+            assertEquals(published, sbs.toString().split("\n").length);
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void dropBelowLevelIfFull() throws IOException {
+        LongriLogger logger = new LongriLogger("AsyncDropLevelTest");
+        OutputChoice choice = new OutputChoice();
+        StringBuilderPrintStream sbs = new StringBuilderPrintStream() {
+            @Override
+            public void println(String s) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+                super.println(s);
+            }
+        };
+        choice.add(sbs);
+        CONFIG_PARAMS.setOutputChoice(choice);
+
+        AsyncLogWriter writer = new AsyncLogWriter(2, AsyncWaitStrategy.YIELD, AsyncQueueFullPolicy.DROP_BELOW_LEVEL, LongriLogger.LOG_LEVEL_WARN);
+        try {
+            for (int i = 0; i < 50; i++) {
+                writer.publish(logger, LongriLogger.LOG_LEVEL_DEBUG, "debug " + i, null, false);
+                assertTrue(writer.publish(logger, LongriLogger.LOG_LEVEL_ERROR, "error " + i, null, false));
+            }
+            assertTrue(writer.flush(10000));
+            assertTrue(writer.getDroppedCount() > 0);
+            String content = sbs.toString();
+            for (int i = 0; i < 50; i++) {
+                assertTrue(content.contains("error " + i + "\n"));
+            }
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void stopWhilePublishing() throws IOException, InterruptedException {
+        LongriLogger logger = new LongriLogger("AsyncStopTest");
+        for (int round = 0; round < 50; round++) {
+            OutputChoice choice = new OutputChoice();
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            choice.add(sbs);
+            CONFIG_PARAMS.setOutputChoice(choice);
+
+            AsyncLogWriter writer = new AsyncLogWriter(64, AsyncWaitStrategy.PARK, AsyncQueueFullPolicy.BLOCK, LongriLogger.LOG_LEVEL_WARN);
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger published = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(4);
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    started.countDown();
+                    while (!done.get()) {
+                        if (writer.publish(logger, LongriLogger.LOG_LEVEL_INFO, "line", null, false)) published.incrementAndGet();
+                    }
+                });
+                threads[i].start();
+            }
+            started.await();
+            // the producers keep on publishing, while the writer is stopped
+            writer.stop();
+            done.set(true);
+            for (Thread thread : threads) thread.join();
+
+            // every published line is written, none is lost at the shutdown
+            assertEquals(0, writer.getDroppedCount());
+            assertEquals(published.get(), sbs.toString().split("\n").length);
+        }
+    }
+
+    @ImmutableArgument
+    static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + x + "," + y + ")";
+        }
+    }
+
+    @Test
+    void captureImmutableArguments() {
+        assertTrue(ArgumentCapture.isImmutable(null));
+        assertTrue(ArgumentCapture.isImmutable("text"));
+        assertTrue(ArgumentCapture.isImmutable(42));
+        assertTrue(ArgumentCapture.isImmutable(java.time.Duration.ofSeconds(1)));
+        assertTrue(ArgumentCapture.isImmutable(java.time.LocalDate.of(2024, 1, 1)));
+        assertTrue(ArgumentCapture.isImmutable(java.time.ZoneId.of("Europe/Berlin")));
+        assertTrue(ArgumentCapture.isImmutable(java.time.ZoneOffset.UTC));
+        assertTrue(ArgumentCapture.isImmutable(java.time.DayOfWeek.MONDAY));
+        // mutable classes of java.time
+        assertFalse(ArgumentCapture.isImmutable(new java.time.format.DateTimeFormatterBuilder()));
+        assertTrue(ArgumentCapture.isImmutable(AsyncQueueFullPolicy.BLOCK));
+        assertTrue(ArgumentCapture.isImmutable(new Point(1, 2)));
+        // the message, the cause and the suppressed exceptions may change after the log call
+        assertFalse(ArgumentCapture.isImmutable(new RuntimeException()));
+        assertFalse(ArgumentCapture.isImmutable(new StringBuilder()));
+        assertFalse(ArgumentCapture.isImmutable(new int[]{1}));
+        assertFalse(ArgumentCapture.isImmutable(new java.util.ArrayList<>()));
+
+        Point point = new Point(1, 2);
+        assertSame(point, ArgumentCapture.capture(point));
+        assertEquals("[1, 2]", ArgumentCapture.capture(new int[]{1, 2}));
+
+        // a throwable in a placeholder is formatted, a trailing one is kept for the stack trace
+        RuntimeException cause = new RuntimeException("cause");
+        RuntimeException trailing = new RuntimeException("trailing");
+        LongriLogEvent event = new LongriLogEvent();
+        event.set(new LongriLogger("AsyncCaptureTest"), org.slf4j.event.Level.INFO, "failed by {}",
+                new Object[]{cause, trailing}, trailing);
+        LongriLogEvent captured = new LongriLogEvent();
+        captured.captureFrom(event);
+        assertEquals("java.lang.RuntimeException: cause", captured.arguments[0]);
+        assertSame(trailing, captured.arguments[1]);
+    }
+
+    @Test
+    void deferredFormatting() throws IOException {
+        LongriLogger logger = new LongriLogger("AsyncDeferTest");
+        logger.currentLogLevel = LongriLogger.LOG_LEVEL_TRACE;
+        CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+        CONFIG_PARAMS.setProperty(LongriLogger.ASYNC_DEFER_FORMATTING_KEY, true);
+        try {
+            CONFIG_PARAMS.setProperty(LongriLogger.ASYNC_KEY, true);
+            assertTrue(CONFIG_PARAMS.asyncWriter.isDeferFormatting());
+
+            OutputChoice choice = new OutputChoice();
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            choice.add(sbs);
+            CONFIG_PARAMS.setOutputChoice(choice);
+
+            StringBuilder mutable = new StringBuilder("before");
+            for (int i = 0; i < 100; i++) {
+                logger.info("line {} {} {}", i, mutable, new Point(i, -i));
+            }
+            mutable.append(" changed");
+            logger.warn("end {}", mutable);
+            // changed before the writer formats the line
+            mutable.setLength(0);
+
+            assertTrue(CONFIG_PARAMS.flushAsync(10000));
+            String[] lines = sbs.toString().split("\n");
+            assertEquals(101, lines.length);
+            String thread = Thread.currentThread().getName();
+            for (int i = 0; i < 100; i++) {
+                assertTrue(lines[i].contains("[" + thread + "]"), lines[i]);
+                assertTrue(lines[i].endsWith("AsyncDeferTest - line " + i + " before (" + i + "," + -i + ")"), lines[i]);
+            }
+            assertTrue(lines[100].endsWith("end before changed"), lines[100]);
+        } finally {
+            CONFIG_PARAMS.setProperty(LongriLogger.ASYNC_DEFER_FORMATTING_KEY, false);
+        }
+    }
+}
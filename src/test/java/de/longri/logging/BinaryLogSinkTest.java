@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.Level;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryLogSinkTest {
+
+    private static final String PATTERN = "%d{HH:mm:ss.SSS} [%t] %tid %level %logger - %marker%msg";
+
+    private static File testDir() throws IOException {
+        File dir = new File("./Test/binarySink");
+        deleteDirectoryRecursion(dir);
+        assertTrue(dir.mkdirs());
+        return dir;
+    }
+
+    private static BinaryLogSink sink(File file) throws IOException {
+        return new BinaryLogSink("bin", file, LongriLogger.LOG_LEVEL_TRACE, new String[0], new String[0]);
+    }
+
+    private static List<BinaryLogDecoder.Record> decode(File file) throws IOException {
+        List<BinaryLogDecoder.Record> records = new ArrayList<>();
+        try (BinaryLogDecoder decoder = new BinaryLogDecoder(new FileInputStream(file), PATTERN)) {
+            decoder.forEachRemaining(records::add);
+        }
+        return records;
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        File dir = testDir();
+        File file = new File(dir, "app.llog");
+        LongriLogger logger = new LongriLogger("de.longri.BinaryTest");
+        PatternLayout layout = PatternLayout.compile(PATTERN);
+        IllegalStateException exception = new IllegalStateException("broken", new IOException("cause"));
+
+        List<String> expected = new ArrayList<>();
+        BinaryLogSink sink = sink(file);
+        for (int i = 0; i < 3; i++) {
+            LongriLogEvent event = new LongriLogEvent();
+            event.set(logger, Level.INFO, "int {} long {} double {} text {} list {} null {} flag {} äöü 😀",
+                    new Object[]{i, 5_000_000_000L + i, 1.5, "text " + i, Arrays.asList(1, 2), null, true}, null);
+            if (i == 1) {
+                event.addMarker(MarkerFactory.getMarker("AUDIT"));
+                event.addKeyValue("user", "bob");
+                event.level = Level.ERROR;
+                event.throwable = exception;
+            }
+            sink.write(event, false);
+
+            StringBuilder buf = new StringBuilder();
+            layout.format(buf, event);
+            if (event.throwable != null) {
+                StringWriter stackTrace = new StringWriter();
+                event.throwable.printStackTrace(new PrintWriter(stackTrace));
+                buf.append(System.lineSeparator()).append(stackTrace.toString().trim());
+            }
+            expected.add(buf.toString());
+        }
+        sink.close();
+
+        // an appended file starts with a new header and a new dictionary
+        sink = sink(file);
+        LongriLogEvent event = new LongriLogEvent();
+        event.set(new LongriLogger("de.longri.Other"), Level.DEBUG, "second {}", new Object[]{(short) -7}, null);
+        sink.write(event, false);
+        sink.close();
+
+        List<BinaryLogDecoder.Record> records = decode(file);
+        assertEquals(4, records.size());
+        try (BinaryLogDecoder decoder = new BinaryLogDecoder(new FileInputStream(file), PATTERN)) {
+            for (String line : expected) assertEquals(line, decoder.format(decoder.next()));
+            assertTrue(decoder.format(decoder.next()).endsWith("DEBUG de.longri.Other - second -7"));
+            assertFalse(decoder.hasNext());
+        }
+
+        BinaryLogDecoder.Record record = records.get(1);
+        assertEquals(Level.ERROR, record.getLevel());
+        assertEquals("de.longri.BinaryTest", record.getLoggerName());
+        assertEquals(Thread.currentThread().getName(), record.getThreadName());
+        assertArrayEquals(new Object[]{1, 5_000_000_001L, 1.5, "text 1", "[1, 2]", null, true}, record.getArguments());
+        assertEquals(Arrays.asList("AUDIT"), record.getMarkers());
+        assertEquals("user", record.getKey(0));
+        assertEquals("bob", record.getValue(0));
+        assertTrue(record.getThrowable().startsWith("java.lang.IllegalStateException: broken"));
+        assertTrue(record.getThrowable().contains("Caused by: java.io.IOException: cause"));
+        assertNull(records.get(0).getThrowable());
+        assertEquals(-7, records.get(3).getArguments()[0]);
+    }
+
+    @Test
+    void nestedLogging() throws IOException {
+        File file = new File(testDir(), "app.llog");
+        LongriLogger logger = new LongriLogger("de.longri.BinaryTest");
+        BinaryLogSink sink = sink(file);
+        Object nested = new Object() {
+            @Override
+            public String toString() {
+                // a log call from the toString() of an argument
+                LongriLogEvent event = new LongriLogEvent();
+                event.set(logger, Level.DEBUG, "inner {}", new Object[]{"nested"}, null);
+                sink.write(event, false);
+                return "value";
+            }
+        };
+        LongriLogEvent event = new LongriLogEvent();
+        event.set(logger, Level.INFO, "outer {} {}", new Object[]{1, nested}, null);
+        event.addKeyValue("key", nested);
+        sink.write(event, false);
+        sink.close();
+
+        List<BinaryLogDecoder.Record> records = decode(file);
+        assertEquals(3, records.size());
+        assertEquals("inner nested", records.get(0).getMessage());
+        assertEquals("inner nested", records.get(1).getMessage());
+        assertEquals("outer 1 value", records.get(2).getMessage());
+        assertEquals("value", records.get(2).getValue(0));
+    }
+
+    @Test
+    void truncatedRecord() throws IOException {
+        File dir = testDir();
+        File file = new File(dir, "app.llog");
+        LongriLogger logger = new LongriLogger("de.longri.BinaryTest");
+        BinaryLogSink sink = sink(file);
+        for (int i = 0; i < 2; i++) {
+            LongriLogEvent event = new LongriLogEvent();
+            event.set(logger, Level.INFO, "message {}", new Object[]{i}, null);
+            sink.write(event, false);
+        }
+        sink.close();
+
+        // a crash cuts off the last record
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        try (BinaryLogDecoder decoder = new BinaryLogDecoder(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 2)))) {
+            assertEquals("message 0", decoder.next().getMessage());
+            assertFalse(decoder.hasNext());
+        }
+
+        assertThrows(RuntimeException.class, () -> new BinaryLogDecoder(new ByteArrayInputStream(new byte[]{2, 0})).hasNext());
+    }
+
+    @Test
+    void sinkProperties() throws IOException {
+        File dir = testDir();
+        synchronized (CONFIG_PARAMS) {
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            OutputChoice choice = new OutputChoice();
+            choice.add(sbs);
+            String prefix = LongriLogger.SINK_PREFIX + "bin";
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%level %msg");
+                LongriLogger logger = new LongriLogger("de.longri.BinarySinkTest");
+                logger.currentLogLevel = LongriLogger.LOG_LEVEL_DEBUG;
+                // the base path opens the targets again
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_BASE_PATH_KEY, dir.getPath());
+                CONFIG_PARAMS.setOutputChoice(choice);
+
+                CONFIG_PARAMS.setProperty(prefix + ".format", "binary");
+                CONFIG_PARAMS.setProperty(prefix + ".level", "info");
+                CONFIG_PARAMS.setProperty(prefix + ".target", "app.llog");
+                LogSink[] sinks = CONFIG_PARAMS.snapshot.sinks.getSinks();
+                assertEquals(1, sinks.length);
+                assertTrue(sinks[0] instanceof BinaryLogSink);
+
+                logger.debug("debug");
+                logger.info("info {}", 1);
+                assertEquals("DEBUG debug\nINFO info 1\n", sbs.toString());
+
+                CONFIG_PARAMS.removeProperty(prefix + ".target");
+                assertTrue(sinks[0].isClosed());
+                List<BinaryLogDecoder.Record> records = decode(new File(dir, "app.llog"));
+                assertEquals(1, records.size());
+                assertEquals("info 1", records.get(0).getMessage());
+            } finally {
+                CONFIG_PARAMS.removeProperty(prefix + ".target");
+                CONFIG_PARAMS.removeProperty(prefix + ".format");
+                CONFIG_PARAMS.removeProperty(prefix + ".level");
+                CONFIG_PARAMS.removeProperty(LongriLogger.LOG_BASE_PATH_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+        }
+    }
+
+    @Test
+    void smallerThanText() throws IOException {
+        File dir = testDir();
+        File file = new File(dir, "app.llog");
+        LongriLogger logger = new LongriLogger("de.longri.service.OrderService");
+        PatternLayout layout = PatternLayout.compile(BinaryLogDecoder.DEFAULT_PATTERN);
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        PrintStream textOut = new PrintStream(text, false);
+        StringBuilder buf = new StringBuilder();
+
+        int count = 100_000;
+        BinaryLogSink sink = sink(file);
+        for (int i = 0; i < count; i++) {
+            LongriLogEvent event = new LongriLogEvent();
+            event.set(logger, Level.INFO, "Order {} of customer {} processed in {} ms, total {}",
+                    new Object[]{i, 4711 + i % 100, i % 250, 19.99 * (i % 10)}, null);
+            sink.write(event, true);
+        }
+        sink.close();
+
+        for (int i = 0; i < count; i++) {
+            LongriLogEvent event = new LongriLogEvent();
+            event.set(logger, Level.INFO, "Order {} of customer {} processed in {} ms, total {}",
+                    new Object[]{i, 4711 + i % 100, i % 250, 19.99 * (i % 10)}, null);
+            buf.setLength(0);
+            layout.format(buf, event);
+            textOut.println(buf);
+        }
+        textOut.flush();
+
+        long binarySize = file.length();
+        assertTrue(binarySize * 3 < text.size(), "binary " + binarySize + " text " + text.size());
+        assertEquals(count, decode(file).size());
+    }
+}
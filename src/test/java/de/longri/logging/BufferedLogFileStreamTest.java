@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferedLogFileStreamTest {
+
+    static final String LS = System.lineSeparator();
+
+    static File newTestFile(String name) throws IOException {
+        File dir = new File("./Test/bufferedStream");
+        deleteDirectoryRecursion(dir);
+        assertTrue(dir.mkdirs());
+        return new File(dir, name);
+    }
+
+    @Test
+    void channelOutput() throws IOException {
+        File file = newTestFile("channel.log");
+        // small buffer, to force a lot of drains
+        BufferedLogFileStream stream = new BufferedLogFileStream(new ChannelLogFileOutput(file, 64), file);
+        assertEquals(file.getPath(), stream.logPath);
+
+        StringBuilder expected = new StringBuilder();
+        String[] lines = {
+                "ascii only",
+                "Umlaute äöü ß",
+                "Euro € and emoji 😀",
+                "unpaired \uD83D surrogate",
+                "x".repeat(1000)
+        };
+        for (String line : lines) {
+            stream.writeLine(new StringBuilder(line));
+        }
+        stream.print("print ");
+        stream.print(42);
+        stream.println();
+        stream.println((Object) "object");
+        stream.flush();
+
+        for (String line : lines) {
+            expected.append(line.replace("\uD83D ", "? ")).append(LS);
+        }
+        expected.append("print 42").append(LS).append("object").append(LS);
+        assertEquals(expected.toString(), Files.readString(file.toPath(), StandardCharsets.UTF_8));
+
+        new RuntimeException("trace").printStackTrace(stream);
+        stream.close();
+        String content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+        assertTrue(content.startsWith(expected + "java.lang.RuntimeException: trace" + LS + "\tat "));
+    }
+
+    @Test
+    void appendToExistingFile() throws IOException {
+        File file = newTestFile("append.log");
+        Files.writeString(file.toPath(), "first" + LS);
+        BufferedLogFileStream stream = new BufferedLogFileStream(new ChannelLogFileOutput(file, 1024), file);
+        stream.writeLine("second");
+        stream.close();
+        assertEquals("first" + LS + "second" + LS, Files.readString(file.toPath()));
+    }
+
+    @Test
+    void appendAfterCrashedMapping() throws IOException {
+        File file = newTestFile("mapped.log");
+        // a previous run ended without close, the rest of its chunk is still zero filled
+        byte[] crashed = new byte[4096 + 100];
+        byte[] first = ("first" + LS).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(first, 0, crashed, 4096, first.length);
+        Files.write(file.toPath(), crashed);
+
+        BufferedLogFileStream stream = new BufferedLogFileStream(new MappedLogFileOutput(file, 4096), file);
+        stream.writeLine("second");
+        stream.close();
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertEquals(4096 + first.length + ("second" + LS).length(), content.length);
+        assertEquals("first" + LS + "second" + LS,
+                new String(content, 4096, content.length - 4096, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedDateFormatterTest {
+
+    static final String[] PATTERNS = {
+            "yyyy-MM-dd HH:mm:ss",
+            "yyyy-MM-dd HH:mm:ss.SSS",
+            "yyyy-MM-dd HH:mm:ss,SSS",
+            "yyyy-MM-dd'T'HH:mm:ss",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS",
+            "HH:mm:ss",
+            "HH:mm:ss.SSS",
+            "dd.MM.yyyy HH:mm:ss.SSS 'ms' Z",
+            "EEE, d MMM yyyy HH:mm:ss",
+            "HH:mm:ss.S",
+            "HH:mm:ss.SSSSS",
+            "'SSS' HH:mm:ss"
+    };
+
+    @Test
+    void sameAsSimpleDateFormat() {
+        long[] times = {
+                0L,
+                1_000L,
+                951_782_400_999L,       // 2000-02-29
+                1_709_164_799_999L,     // end of a leap day
+                System.currentTimeMillis(),
+                System.currentTimeMillis() + 1,
+                System.currentTimeMillis() + 1_234,
+                4_102_444_799_999L      // 2099-12-31
+        };
+        for (String pattern : PATTERNS) {
+            CachedDateFormatter formatter = new CachedDateFormatter(pattern);
+            SimpleDateFormat expected = new SimpleDateFormat(pattern);
+            for (long time : times) {
+                assertEquals(expected.format(new Date(time)), formatter.format(time), pattern + " @ " + time);
+                // cached second, other millisecond
+                assertEquals(expected.format(new Date(time + 7)), formatter.format(time + 7), pattern + " @ " + (time + 7));
+            }
+        }
+    }
+
+    @Test
+    void invalidPattern() {
+        assertThrows(IllegalArgumentException.class, () -> new CachedDateFormatter("yyyy-MM-dd bbb"));
+    }
+
+    @Test
+    void concurrentThreads() throws InterruptedException {
+        CachedDateFormatter formatter = new CachedDateFormatter("yyyy-MM-dd HH:mm:ss.SSS");
+        long start = System.currentTimeMillis();
+        boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            int offset = i * 997;
+            threads[i] = new Thread(() -> {
+                SimpleDateFormat expected = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+                for (int j = 0; j < 20_000; j++) {
+                    long time = start + offset + j * 13L;
+                    if (!expected.format(new Date(time)).equals(formatter.format(time))) failed[0] = true;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertFalse(failed[0]);
+    }
+
+    @Test
+    void noAllocationWithinSecond() {
+        CachedDateFormatter formatter = new CachedDateFormatter("yyyy-MM-dd HH:mm:ss.SSS");
+        StringBuilder buf = new StringBuilder(64);
+        long second = (System.currentTimeMillis() / 1000) * 1000;
+        long allocated = Allocations.allocatedBytes(i -> {
+            buf.setLength(0);
+            formatter.appendTo(buf, second + i % 1000);
+        });
+        if (allocated < 0) return;
+        assertTrue(allocated < 10_000, "allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigurationSnapshotTest {
+
+    @Test
+    void getLoggerDoesNotApply() {
+        LongriLoggerFactory factory = new LongriLoggerFactory();
+        synchronized (CONFIG_PARAMS) {
+            Logger logger = factory.getLogger("SnapshotTest");
+            ConfigurationSnapshot snapshot = CONFIG_PARAMS.snapshot;
+            List<?> outputs = CONFIG_PARAMS.outputChoice;
+
+            for (int i = 0; i < 1000; i++) {
+                assertSame(logger, factory.getLogger("SnapshotTest"));
+            }
+            // a new logger, but the properties are unchanged
+            factory.getLogger("SnapshotTest.Other");
+            assertSame(snapshot, CONFIG_PARAMS.snapshot);
+            assertSame(outputs, CONFIG_PARAMS.outputChoice);
+        }
+    }
+
+    @Test
+    void setPropertyPublishesNewSnapshot() {
+        synchronized (CONFIG_PARAMS) {
+            CONFIG_PARAMS.setProperty(LongriLogger.LEVEL_IN_BRACKETS_KEY, false);
+            ConfigurationSnapshot snapshot = CONFIG_PARAMS.snapshot;
+            List<?> outputs = CONFIG_PARAMS.outputChoice;
+            assertFalse(snapshot.layout.getPattern().contains("[%level]"));
+
+            CONFIG_PARAMS.setProperty(LongriLogger.LEVEL_IN_BRACKETS_KEY, true);
+            ConfigurationSnapshot changed = CONFIG_PARAMS.snapshot;
+            assertNotSame(snapshot, changed);
+            assertTrue(changed.layout.getPattern().contains("[%level]"));
+            assertTrue(changed.version > snapshot.version);
+            // the output settings are unchanged, the targets aren't opened again
+            assertSame(outputs, CONFIG_PARAMS.outputChoice);
+
+            // nothing has changed, no new version
+            CONFIG_PARAMS.applyIfChanged();
+            assertSame(changed, CONFIG_PARAMS.snapshot);
+
+            CONFIG_PARAMS.setProperty(LongriLogger.LEVEL_IN_BRACKETS_KEY, false);
+            assertFalse(CONFIG_PARAMS.snapshot.layout.getPattern().contains("[%level]"));
+        }
+    }
+
+    @Test
+    void unrelatedPropertyKeepsLogFile() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            File dir = new File("./Test/outputSettings");
+            LongriLoggerConfigurationTest.deleteDirectoryRecursion(dir);
+            new LongriLogger("SnapshotTest.File");
+            try {
+                // no log file settings yet, like after the start, the log file writes the defaults
+                for (String key : new String[]{LongriLogger.LOG_FILE_AGE_KEY, LongriLogger.LOG_FILE_KEEP_KEY,
+                        LongriLogger.LOG_FILE_SINK_KEY, LongriLogger.LOG_FILE_MAX_SIZE_KEY,
+                        LongriLogger.LOG_FILE_TIME_ROLLING_KEY, LongriLogger.LOG_FILE_COMPRESSION_LEVEL_KEY,
+                        LongriLogger.LOG_FILE_TOTAL_SIZE_CAP_KEY, LongriLogger.LOG_FILE_MAX_HISTORY_KEY}) {
+                    CONFIG_PARAMS.removeProperty(key);
+                }
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_BASE_PATH_KEY, dir.getPath());
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_FILE_KEY, "${logFileBasePath}/app.log");
+                List<PrintStream> outputs = CONFIG_PARAMS.outputChoice;
+                LogFileStream stream = null;
+                for (PrintStream output : outputs) {
+                    if (output instanceof LogFileStream) stream = (LogFileStream) output;
+                }
+                assertNotNull(stream);
+                String files = Arrays.toString(dir.list());
+
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                assertSame(outputs, CONFIG_PARAMS.outputChoice);
+                assertFalse(stream.isClosed());
+                // the log file is not rolled again
+                assertEquals(files, Arrays.toString(dir.list()));
+            } finally {
+                CONFIG_PARAMS.removeProperty(LongriLogger.LOG_FILE_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.LOG_BASE_PATH_KEY);
+                LongriLoggerConfigurationTest.deleteDirectoryRecursion(dir);
+            }
+        }
+    }
+}
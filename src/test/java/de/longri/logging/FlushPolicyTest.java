@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.longri.logging.LongriLogger.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlushPolicyTest {
+
+    @AfterEach
+    void after() {
+        CONFIG_PARAMS.setProperty(LongriLogger.FLUSH_POLICY_KEY, "immediate");
+    }
+
+    @Test
+    void immediate() {
+        FlushPolicy policy = new FlushPolicy(FlushPolicy.Mode.IMMEDIATE, 10, 1000, LOG_LEVEL_OFF);
+        assertTrue(policy.onRecord(LOG_LEVEL_INFO, false));
+        assertTrue(policy.onRecord(LOG_LEVEL_INFO, false));
+
+        // the async writer flushes at the end of a batch
+        assertFalse(policy.onRecord(LOG_LEVEL_INFO, true));
+        assertFalse(policy.onRecord(LOG_LEVEL_INFO, true));
+        assertTrue(policy.onBatchEnd());
+        assertFalse(policy.onBatchEnd());
+    }
+
+    @Test
+    void count() {
+        FlushPolicy policy = new FlushPolicy(FlushPolicy.Mode.COUNT, 3, 60_000, LOG_LEVEL_OFF);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(policy.onRecord(LOG_LEVEL_INFO, false));
+            assertFalse(policy.onRecord(LOG_LEVEL_INFO, false));
+            assertTrue(policy.onRecord(LOG_LEVEL_INFO, false));
+        }
+        assertFalse(policy.onRecord(LOG_LEVEL_INFO, true));
+        assertFalse(policy.onBatchEnd());
+        assertFalse(policy.isOverdue());
+    }
+
+    @Test
+    void interval() throws InterruptedException {
+        FlushPolicy policy = new FlushPolicy(FlushPolicy.Mode.INTERVAL, 1, 50, LOG_LEVEL_OFF);
+        assertFalse(policy.onRecord(LOG_LEVEL_INFO, false));
+        assertFalse(policy.isOverdue());
+        Thread.sleep(60);
+        assertTrue(policy.isOverdue());
+        assertFalse(policy.isOverdue());
+        Thread.sleep(60);
+        assertTrue(policy.onRecord(LOG_LEVEL_INFO, false));
+    }
+
+    @Test
+    void adaptive() throws InterruptedException {
+        FlushPolicy policy = new FlushPolicy(FlushPolicy.Mode.ADAPTIVE, 5, 60_000, LOG_LEVEL_OFF);
+        // first record after an idle time
+        assertTrue(policy.onRecord(LOG_LEVEL_INFO, false));
+
+        // burst, batch until the record limit
+        int flushes = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (policy.onRecord(LOG_LEVEL_INFO, false)) flushes++;
+        }
+        assertTrue(flushes >= 1000 / 5 - 1 && flushes < 1000, "flushes " + flushes);
+
+        // idle again
+        Thread.sleep(5);
+        assertTrue(policy.onRecord(LOG_LEVEL_INFO, false));
+
+        // async writer drained the queue
+        assertFalse(policy.onRecord(LOG_LEVEL_INFO, true));
+        assertTrue(policy.onBatchEnd());
+    }
+
+    @Test
+    void flushOnLevel() {
+        FlushPolicy policy = new FlushPolicy(FlushPolicy.Mode.COUNT, 100, 60_000, LOG_LEVEL_WARN);
+        assertFalse(policy.onRecord(LOG_LEVEL_INFO, false));
+        assertTrue(policy.onRecord(LOG_LEVEL_WARN, false));
+        assertTrue(policy.onRecord(LOG_LEVEL_ERROR, true));
+    }
+
+    @Test
+    void timerFlushesPendingLines() throws IOException, InterruptedException {
+        AtomicInteger flushCount = new AtomicInteger();
+        StringBuilderPrintStream sbs = new StringBuilderPrintStream() {
+            @Override
+            public void flush() {
+                flushCount.incrementAndGet();
+            }
+        };
+        LongriLogger logger = new LongriLogger("FlushTest");
+        CONFIG_PARAMS.setProperty(LongriLogger.FLUSH_EVERY_RECORDS_KEY, "1000");
+        CONFIG_PARAMS.setProperty(LongriLogger.FLUSH_INTERVAL_MILLIS_KEY, "50");
+        CONFIG_PARAMS.setProperty(LongriLogger.FLUSH_ON_LEVEL_KEY, "error");
+        CONFIG_PARAMS.setProperty(LongriLogger.FLUSH_POLICY_KEY, "count");
+        assertEquals(FlushPolicy.Mode.COUNT, CONFIG_PARAMS.flushPolicy.mode);
+
+        OutputChoice choice = new OutputChoice();
+        choice.add(sbs);
+        CONFIG_PARAMS.setOutputChoice(choice);
+
+        logger.warn("pending");
+        assertEquals(0, flushCount.get());
+        long end = System.currentTimeMillis() + 5000;
+        while (flushCount.get() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, flushCount.get());
+
+        logger.error("forced");
+        assertEquals(2, flushCount.get());
+    }
+}
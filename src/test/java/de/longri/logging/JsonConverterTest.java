@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.Level;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonConverterTest {
+
+    private static String escaped(String text) {
+        StringBuilder buf = new StringBuilder();
+        JsonConverter.appendEscaped(buf, text);
+        return buf.toString();
+    }
+
+    @Test
+    void escape() {
+        assertEquals("plain", escaped("plain"));
+        assertEquals("a\\\"b\\\\c\\nd\\re\\tf\\bg\\fh\\u0001i\\u001f", escaped("a\"b\\c\nd\re\tf\bg\fh\u0001i\u001f"));
+        assertEquals("äöü €", escaped("äöü €"));
+
+        // in place, the same as appended
+        char[] chars = {'a', '"', '\\', '\n', '\u0000', '\u001b', 'ä', ' ', '\t'};
+        Random random = new Random(7);
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) text.append(chars[random.nextInt(chars.length)]);
+            StringBuilder buf = new StringBuilder("prefix");
+            buf.append(text);
+            JsonConverter.escape(buf, "prefix".length());
+            assertEquals("prefix" + escaped(text.toString()), buf.toString());
+        }
+    }
+
+    @Test
+    void event() {
+        LongriLogger logger = new LongriLogger("de.longri.JsonTest");
+        LongriLogEvent event = new LongriLogEvent();
+        event.set(logger, Level.WARN, "user {} said \"{}\"", new Object[]{42, "hi\n"}, null);
+        event.threadName = "main";
+        event.addMarker(MarkerFactory.getMarker("AUDIT"));
+        event.addKeyValue("tenant", "t-1");
+        event.addKeyValue("missing", null);
+        event.mdc = LongriMDCAdapter.Context.of(java.util.Collections.singletonMap("requestId", "r-1"));
+
+        PatternLayout layout = PatternLayout.compile("%json{yyyy}%n");
+        assertTrue(layout.isStructured());
+        assertTrue(layout.usesMdc());
+        StringBuilder buf = new StringBuilder();
+        layout.format(buf, event);
+        String year = new SimpleDateFormat("yyyy").format(new Date(event.timeMillis));
+        assertEquals("{\"timestamp\":\"" + year + "\",\"level\":\"WARN\",\"logger\":\"de.longri.JsonTest\",\"thread\":\"main\","
+                + "\"message\":\"user 42 said \\\"hi\\n\\\"\",\"arguments\":[\"42\",\"hi\\n\"],\"markers\":[\"AUDIT\"],"
+                + "\"mdc\":{\"requestId\":\"r-1\"},\"kv\":{\"tenant\":\"t-1\",\"missing\":null}}", buf.toString());
+
+        // a throwable with a cause
+        RuntimeException cause = new RuntimeException("inner \"cause\"");
+        cause.setStackTrace(new StackTraceElement[]{new StackTraceElement("a.B", "run", "B.java", 7)});
+        IllegalStateException t = new IllegalStateException("outer", cause);
+        t.setStackTrace(new StackTraceElement[]{new StackTraceElement("a.C", "call", null, -1),
+                new StackTraceElement("a.D", "nat", "D.java", -2)});
+        event = new LongriLogEvent();
+        event.set(logger, Level.ERROR, "failed", null, t);
+        event.threadName = "worker";
+        buf.setLength(0);
+        layout.format(buf, event);
+        assertTrue(buf.toString().endsWith("\"thread\":\"worker\",\"message\":\"failed\",\"throwable\":{\"class\":\"java.lang.IllegalStateException\","
+                + "\"message\":\"outer\",\"frames\":[\"a.C.call(Unknown Source)\",\"a.D.nat(Native Method)\"],"
+                + "\"cause\":{\"class\":\"java.lang.RuntimeException\",\"message\":\"inner \\\"cause\\\"\",\"frames\":[\"a.B.run(B.java:7)\"]}}}"),
+                buf.toString());
+    }
+
+    @Test
+    void jsonPattern() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            OutputChoice choice = new OutputChoice();
+            choice.add(sbs);
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, true);
+                LongriLogger logger = new LongriLogger("JsonPattern");
+                logger.currentLogLevel = LongriLogger.LOG_LEVEL_INFO;
+                CONFIG_PARAMS.setOutputChoice(choice);
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%json");
+
+                logger.error("broken", new RuntimeException("x"));
+                String output = sbs.toString();
+                // one line without color, the stack trace is part of the line
+                assertTrue(output.startsWith("{\"timestamp\":\""), output);
+                assertTrue(output.contains("\"throwable\":{\"class\":\"java.lang.RuntimeException\",\"message\":\"x\",\"frames\":[\"de.longri.logging.JsonConverterTest"), output);
+                assertEquals(1, output.split("\n").length);
+                assertTrue(output.endsWith("}\n"));
+            } finally {
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+            }
+        }
+    }
+
+    /**
+     * The JSON layout formats the event into a reused buffer, without allocating per line.
+     */
+    @Test
+    void noAllocationPerLine() {
+        LongriLogger logger = new LongriLogger("de.longri.JsonAllocation");
+        LongriLogEvent event = new LongriLogEvent();
+        event.set(logger, Level.INFO, "request {} took {} ms for \"{}\"", new Object[]{"r-17", "12", "/api/users"}, null);
+        event.addMarker(MarkerFactory.getMarker("PERF"));
+        event.addKeyValue("tenant", "t-1");
+
+        PatternLayout json = PatternLayout.compile("%json%n");
+        StringBuilder buf = new StringBuilder(512);
+        long allocated = Allocations.allocatedBytes(i -> {
+            buf.setLength(0);
+            json.format(buf, event);
+        });
+        if (allocated < 0) return;
+        // the timestamp is cached per second, nothing else is allocated
+        assertTrue(allocated / Allocations.CALLS < 50, "allocated " + allocated / Allocations.CALLS + " bytes per line");
+    }
+}
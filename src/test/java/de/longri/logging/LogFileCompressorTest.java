@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFileCompressorTest {
+
+    static File newTestDir() throws IOException {
+        File dir = new File("./Test/compressor");
+        deleteDirectoryRecursion(dir);
+        assertTrue(dir.mkdirs());
+        return dir;
+    }
+
+    static String content() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            sb.append("2024-03-09 13:45:12 [INFO] de.longri.Test - line ").append(i).append(" äöü €\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void archiveNames() {
+        assertTrue(LogFileCompressor.isArchive(new File("app_1.log.zip")));
+        assertTrue(LogFileCompressor.isArchive(new File("app_1.log.gz")));
+        assertFalse(LogFileCompressor.isArchive(new File("app_1.log")));
+        assertEquals(new File("logs/app_1.log"), LogFileCompressor.source(new File("logs/app_1.log.zip")));
+        assertEquals(new File("logs/app_1.log"), LogFileCompressor.source(new File("logs/app_1.log.gz")));
+        assertEquals(new File("logs/app_1.log"), LogFileCompressor.source(new File("logs/app_1.log")));
+    }
+
+    @Test
+    void zip() throws IOException {
+        File dir = newTestDir();
+        String content = content();
+        File source = new File(dir, "app_1.log");
+        Files.writeString(source.toPath(), content);
+        File archive = new File(dir, "app_1.log.zip");
+
+        LogFileCompressor.submit(source, "app.log", archive, 1, null);
+        assertTrue(LogFileCompressor.await(10000));
+
+        assertFalse(source.exists());
+        assertFalse(new File(dir, "app_1.log.zip.tmp").exists());
+        assertTrue(archive.length() < content.length() / 4);
+        File extractFolder = new File(dir, "extract");
+        rollingZipTest.unzip(archive, extractFolder);
+        assertEquals(content, Files.readString(new File(extractFolder, "app.log").toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void gzipLevels() throws IOException {
+        File dir = newTestDir();
+        String content = content();
+        long[] sizes = new long[2];
+        int[] levels = {0, 9};
+        for (int i = 0; i < levels.length; i++) {
+            File source = new File(dir, "app_" + i + ".log");
+            Files.writeString(source.toPath(), content);
+            File archive = new File(dir, "app_" + i + ".log.gz");
+            LogFileCompressor.compress(source, "app.log", archive, levels[i]);
+            assertFalse(source.exists());
+            sizes[i] = archive.length();
+
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(archive.toPath()))) {
+                assertEquals(content, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        // level 0 only stores the bytes
+        assertTrue(sizes[0] > content.length());
+        assertTrue(sizes[1] < content.length() / 4);
+    }
+
+    @Test
+    void failedCompressionKeepsSource() throws IOException {
+        File dir = newTestDir();
+        File source = new File(dir, "app_1.log");
+        Files.writeString(source.toPath(), "content");
+        // the archive can't be created inside a missing directory
+        File archive = new File(dir, "missing/app_1.log.zip");
+
+        boolean[] done = {false};
+        LogFileCompressor.submit(source, "app.log", archive, -1, () -> done[0] = true);
+        assertTrue(LogFileCompressor.await(10000));
+
+        assertTrue(done[0]);
+        assertTrue(source.exists());
+        assertFalse(archive.exists());
+        assertEquals("content", Files.readString(source.toPath()));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFileRetentionTest {
+
+    static final String PATTERN = "/app_%i.log";
+
+    static File newTestDir() throws IOException {
+        File dir = new File("./Test/retention");
+        deleteDirectoryRecursion(dir);
+        assertTrue(dir.mkdirs());
+        return dir;
+    }
+
+    static File rolled(File dir, int index, int size) throws IOException {
+        File file = new File(dir, "app_" + index + ".log");
+        Files.write(file.toPath(), new byte[size]);
+        return file;
+    }
+
+    @Test
+    void keepCount() throws IOException {
+        File dir = newTestDir();
+        RollingFileHandle handle = new RollingFileHandle(dir, "app.log");
+        LogFileRetention retention = LogFileRetention.of(dir, "app.log");
+        retention.setLimits(0, 0);
+
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 5; i++) {
+            retention.add(handle, PATTERN, rolled(dir, i, 100), now + i, now + i, 3);
+        }
+        assertTrue(RollingScheduler.await(5000));
+
+        assertFalse(new File(dir, "app_1.log").exists());
+        assertFalse(new File(dir, "app_2.log").exists());
+        assertTrue(new File(dir, "app_3.log").exists());
+        assertTrue(new File(dir, "app_5.log").exists());
+        assertEquals(3, retention.getEntries().size());
+    }
+
+    @Test
+    void totalSizeCap() throws IOException {
+        File dir = newTestDir();
+        RollingFileHandle handle = new RollingFileHandle(dir, "app.log");
+        LogFileRetention retention = LogFileRetention.of(dir, "app.log");
+        retention.setLimits(250, 0);
+
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 4; i++) {
+            retention.add(handle, PATTERN, rolled(dir, i, 100), now + i, now + i, 10);
+        }
+        assertTrue(RollingScheduler.await(5000));
+
+        // only two files fit into 250 bytes
+        assertFalse(new File(dir, "app_2.log").exists());
+        assertTrue(new File(dir, "app_3.log").exists());
+        assertTrue(new File(dir, "app_4.log").exists());
+
+        // the newest file is kept, even if it is larger than the cap
+        retention.add(handle, PATTERN, rolled(dir, 5, 1000), now + 5, now + 5, 10);
+        assertTrue(RollingScheduler.await(5000));
+        assertFalse(new File(dir, "app_4.log").exists());
+        assertTrue(new File(dir, "app_5.log").exists());
+        assertEquals(1, retention.getEntries().size());
+        retention.setLimits(0, 0);
+    }
+
+    @Test
+    void maxHistory() throws IOException {
+        File dir = newTestDir();
+        RollingFileHandle handle = new RollingFileHandle(dir, "app.log");
+        LogFileRetention retention = LogFileRetention.of(dir, "app.log");
+        retention.setLimits(0, 7);
+
+        long now = System.currentTimeMillis();
+        long old = now - TimeUnit.DAYS.toMillis(8);
+        retention.add(handle, PATTERN, rolled(dir, 1, 10), old - 1000, old, 10);
+        retention.add(handle, PATTERN, rolled(dir, 2, 10), now - 1000, now, 10);
+        assertTrue(RollingScheduler.await(5000));
+
+        assertFalse(new File(dir, "app_1.log").exists());
+        assertTrue(new File(dir, "app_2.log").exists());
+        retention.setLimits(0, 0);
+    }
+
+    @Test
+    void maxHistoryKeepsNewest() throws IOException {
+        File dir = newTestDir();
+        RollingFileHandle handle = new RollingFileHandle(dir, "app.log");
+        LogFileRetention retention = LogFileRetention.of(dir, "app.log");
+        retention.setLimits(0, 1);
+
+        // a quiet period, all rolled files are older than the history
+        long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(3);
+        retention.add(handle, PATTERN, rolled(dir, 1, 10), old - 2000, old - 1000, 10);
+        retention.add(handle, PATTERN, rolled(dir, 2, 10), old - 1000, old, 10);
+        assertTrue(RollingScheduler.await(5000));
+
+        assertFalse(new File(dir, "app_1.log").exists());
+        assertTrue(new File(dir, "app_2.log").exists());
+        assertEquals(1, retention.getEntries().size());
+        retention.setLimits(0, 0);
+    }
+
+    @Test
+    void indexIsWrittenAndBootstrapped() throws IOException {
+        File dir = newTestDir();
+        // rolled files of a version without an index
+        File old1 = rolled(dir, 1, 10);
+        File old2 = rolled(dir, 2, 10);
+        long now = System.currentTimeMillis();
+        assertTrue(old1.setLastModified(now - 2000));
+        assertTrue(old2.setLastModified(now - 1000));
+
+        RollingFileHandle handle = new RollingFileHandle(dir, "app.log");
+        LogFileRetention retention = LogFileRetention.of(dir, "app.log");
+        retention.setLimits(0, 0);
+        retention.add(handle, PATTERN, rolled(dir, 3, 20), now - 500, now, 2);
+        assertTrue(RollingScheduler.await(5000));
+
+        // the existing files are found once, the oldest is deleted
+        assertFalse(old1.exists());
+        assertTrue(old2.exists());
+
+        File index = retention.getIndexFile();
+        assertTrue(index.exists());
+        List<String> lines = Files.readAllLines(index.toPath());
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith("app_2.log\t"));
+        assertEquals("app_3.log\t" + (now - 500) + "\t" + now + "\t20", lines.get(2));
+
+        // the index isn't a rolled file
+        assertEquals(2, handle.listRolledFiles(PATTERN).length);
+    }
+}
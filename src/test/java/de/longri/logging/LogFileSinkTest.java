@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static de.longri.logging.BufferedLogFileStreamTest.newTestFile;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The file sinks write the same content. Every line is flushed, like with the default flush policy.
+ */
+class LogFileSinkTest {
+
+    static final int LINES = 5_000;
+    static final String LS = System.lineSeparator();
+
+    interface SinkFactory {
+        PrintStream open(File file) throws IOException;
+    }
+
+    /**
+     * Write the lines into a new file of the sink.
+     *
+     * @return the length of the file
+     */
+    static long run(File file, SinkFactory factory, int lines) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        PrintStream stream = factory.open(file);
+        for (int i = 0; i < lines; i++) {
+            line.setLength(0);
+            line.append("2024-01-01 12:00:00.000 [INFO] LogFileSinkTest - line number ").append(i);
+            if (stream instanceof BufferedLogFileStream) {
+                ((BufferedLogFileStream) stream).writeLine(line);
+            } else {
+                stream.println(line.toString());
+            }
+            stream.flush();
+        }
+        stream.close();
+        return file.length();
+    }
+
+    @Test
+    void compareSinks() throws IOException {
+        File dir = newTestFile("stream.log").getParentFile();
+        long streamLength = run(new File(dir, "stream.log"), LogFileStream::new, LINES);
+        long channelLength = run(new File(dir, "channel.log"),
+                file -> new BufferedLogFileStream(new ChannelLogFileOutput(file, 64 * 1024), file), LINES);
+        long mappedLength = run(new File(dir, "mapped.log"),
+                file -> new BufferedLogFileStream(new MappedLogFileOutput(file, 1024 * 1024), file), LINES);
+
+        assertEquals(streamLength, channelLength);
+        assertEquals(streamLength, mappedLength);
+        assertEquals(Files.readString(new File(dir, "stream.log").toPath()), Files.readString(new File(dir, "mapped.log").toPath()));
+    }
+
+    @Test
+    void mappedChunksAndTruncate() throws IOException {
+        File file = newTestFile("mapped.log");
+        Files.writeString(file.toPath(), "existing" + LS);
+
+        // small chunks, to remap a lot
+        MappedLogFileOutput output = new MappedLogFileOutput(file, 4096);
+        BufferedLogFileStream stream = new BufferedLogFileStream(output, file);
+        StringBuilder expected = new StringBuilder("existing" + LS);
+        for (int i = 0; i < 1000; i++) {
+            String line = "mapped line äöü " + i;
+            stream.writeLine(line);
+            expected.append(line).append(LS);
+        }
+        stream.writeLine("x".repeat(10_000));
+        expected.append("x".repeat(10_000)).append(LS);
+        new RuntimeException("mapped trace").printStackTrace(stream);
+
+        // the mapped file is longer than the content, until it is closed
+        assertTrue(file.length() >= output.length());
+        stream.close();
+        assertEquals(output.length(), file.length());
+        String content = Files.readString(file.toPath());
+        assertTrue(content.startsWith(expected + "java.lang.RuntimeException: mapped trace" + LS));
+
+        // mapping is released, the file can be moved
+        File moved = new File(file.getParentFile(), "moved.log");
+        Files.move(file.toPath(), moved.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(content, Files.readString(moved.toPath()));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogLevelTrieTest {
+
+    static final int LOGGERS = 4_000;
+
+    @Test
+    void find() {
+        Map<String, String> levels = new HashMap<>();
+        levels.put("com", "warn");
+        levels.put("com.foo", "debug");
+        levels.put("com.foo.Bar", "trace");
+        levels.put("org.other", "error");
+        LogLevelTrie trie = new LogLevelTrie(levels);
+
+        assertEquals("warn", trie.find("com"));
+        assertEquals("warn", trie.find("com.example.Main"));
+        assertEquals("debug", trie.find("com.foo"));
+        assertEquals("debug", trie.find("com.foo.Baz"));
+        assertEquals("trace", trie.find("com.foo.Bar"));
+        assertEquals("trace", trie.find("com.foo.Bar.Inner"));
+        // only whole parts of the name match
+        assertEquals("warn", trie.find("com.foobar"));
+        assertEquals("debug", trie.find("com.foo.Barrel"));
+        assertNull(trie.find("comx"));
+        assertNull(trie.find("org"));
+        assertNull(trie.find("org.otherX"));
+        assertNull(trie.find(""));
+    }
+
+    @Test
+    void systemPropertyOverridesFile() {
+        Properties file = new Properties();
+        file.setProperty(LongriLogger.LOG_KEY_PREFIX + "a", "info");
+        file.setProperty(LongriLogger.LOG_KEY_PREFIX + "b", "info");
+        file.setProperty(LongriLogger.SHOW_LOG_NAME_KEY, "true");
+        Properties system = new Properties();
+        system.setProperty(LongriLogger.LOG_KEY_PREFIX + "b", "error");
+
+        Map<String, String> levels = LogLevelTrie.collect(file, system);
+        assertEquals(2, levels.size());
+        assertEquals("info", levels.get("a"));
+        assertEquals("error", levels.get("b"));
+
+        LogLevelTrie trie = new LogLevelTrie(levels);
+        assertTrue(trie.isSameAs(LogLevelTrie.collect(file, system)));
+        system.setProperty(LongriLogger.LOG_KEY_PREFIX + "c", "warn");
+        assertFalse(trie.isSameAs(LogLevelTrie.collect(file, system)));
+    }
+
+    @Test
+    void configurationChangeRebuilds() {
+        String key = LongriLogger.LOG_KEY_PREFIX + "trie.test";
+        synchronized (CONFIG_PARAMS) {
+            try {
+                System.setProperty(key, "error");
+                LongriLogger.init();
+                LogLevelTrie trie = CONFIG_PARAMS.snapshot.logLevels;
+                assertEquals(LongriLogger.LOG_LEVEL_ERROR, new LongriLogger("trie.test.Child").currentLogLevel);
+
+                // the same entries keep the tree
+                CONFIG_PARAMS.applayProperties();
+                assertSame(trie, CONFIG_PARAMS.snapshot.logLevels);
+
+                System.setProperty(key, "debug");
+                CONFIG_PARAMS.applayProperties();
+                assertNotSame(trie, CONFIG_PARAMS.snapshot.logLevels);
+                assertEquals(LongriLogger.LOG_LEVEL_DEBUG, new LongriLogger("trie.test.Child").currentLogLevel);
+            } finally {
+                System.clearProperty(key);
+                CONFIG_PARAMS.applayProperties();
+            }
+        }
+    }
+
+    @Test
+    void createLoggers() {
+        assertEquals(LOGGERS / 2, createLoggers(LOGGERS));
+    }
+
+    /**
+     * Create the loggers of 2000 entities with their own level, half of them debug, half of them error.
+     *
+     * @return the number of debug loggers
+     */
+    static int createLoggers(int count) {
+        Map<String, String> levels = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            levels.put("de.longri.entity" + i, i % 2 == 0 ? "debug" : "error");
+        }
+        LogLevelTrie trie = new LogLevelTrie(levels);
+
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "de.longri.entity" + (i % 2000) + ".Entity" + i;
+        }
+
+        synchronized (CONFIG_PARAMS) {
+            LongriLoggerFactory factory = new LongriLoggerFactory();
+            // the levels of the system properties are read, before the snapshot is replaced
+            CONFIG_PARAMS.applyIfChanged();
+            CONFIG_PARAMS.refreshLogLevels();
+            ConfigurationSnapshot current = CONFIG_PARAMS.snapshot;
+            try {
+                CONFIG_PARAMS.snapshot = current.withLogLevels(trie);
+                int debug = 0;
+                for (String name : names) {
+                    // through the factory, like SLF4J creates the loggers
+                    if (((LongriLogger) factory.getLogger(name)).currentLogLevel == LongriLogger.LOG_LEVEL_DEBUG) debug++;
+                }
+                return debug;
+            } finally {
+                CONFIG_PARAMS.snapshot = current;
+            }
+        }
+    }
+}
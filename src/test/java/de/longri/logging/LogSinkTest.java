@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogSinkTest {
+
+    private static LogSink sink(String name, int level, String[] includes, String[] excludes) {
+        return new LogSink(name, new OutputChoice(), level, includes, excludes, null);
+    }
+
+    @Test
+    void accepts() {
+        LogSink all = sink("all", LongriLogger.LOG_LEVEL_TRACE, new String[0], new String[0]);
+        assertTrue(all.accepts("com.foo.Bar"));
+
+        LogSink rules = sink("rules", LongriLogger.LOG_LEVEL_TRACE, new String[]{"com.foo", "com.foo.noisy.Important"},
+                new String[]{"com.foo.noisy"});
+        assertTrue(rules.accepts("com.foo"));
+        assertTrue(rules.accepts("com.foo.Bar"));
+        assertFalse(rules.accepts("com.foobar.Bar"));
+        assertFalse(rules.accepts("org.Bar"));
+        assertFalse(rules.accepts("com.foo.noisy.Bar"));
+        assertTrue(rules.accepts("com.foo.noisy.Important"));
+
+        LogSink exclude = sink("exclude", LongriLogger.LOG_LEVEL_TRACE, new String[0], new String[]{"com.foo"});
+        assertFalse(exclude.accepts("com.foo.Bar"));
+        assertTrue(exclude.accepts("org.Bar"));
+    }
+
+    @Test
+    void routing() {
+        LogSink console = sink("console", LongriLogger.LOG_LEVEL_WARN, new String[0], new String[0]);
+        LogSink errors = sink("errors", LongriLogger.LOG_LEVEL_ERROR, new String[]{"com.foo"}, new String[0]);
+        LogSinks sinks = new LogSinks("test", new LogSink[]{console, errors});
+
+        LogSinks.Routing routing = sinks.routing("com.foo.Bar");
+        assertSame(sinks, routing.owner);
+        assertEquals(0, routing.sinks(LongriLogger.LOG_LEVEL_INFO).length);
+        assertArrayEquals(new LogSink[]{console}, routing.sinks(LongriLogger.LOG_LEVEL_WARN));
+        assertArrayEquals(new LogSink[]{console, errors}, routing.sinks(LongriLogger.LOG_LEVEL_ERROR));
+
+        routing = sinks.routing("org.Bar");
+        assertArrayEquals(new LogSink[]{console}, routing.sinks(LongriLogger.LOG_LEVEL_ERROR));
+
+        // a filtered out logger shares the empty routing
+        assertSame(LogSinks.NONE.routing("a"), LogSinks.NONE.routing("b"));
+        LogSinks errorSinks = new LogSinks("test", new LogSink[]{errors});
+        assertSame(errorSinks.routing("org.Bar"), errorSinks.routing("org.Other"));
+    }
+
+    @Test
+    void sinkProperties() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            PrintStream out = System.out;
+            StringBuilderPrintStream console = new StringBuilderPrintStream();
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            OutputChoice choice = new OutputChoice();
+            choice.add(sbs);
+            String prefix = LongriLogger.SINK_PREFIX + "console";
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%level %msg");
+                LongriLogger logger = new LongriLogger("de.longri.SinkTest");
+                LongriLogger other = new LongriLogger("de.longri.other.SinkTest");
+                logger.currentLogLevel = LongriLogger.LOG_LEVEL_DEBUG;
+                other.currentLogLevel = LongriLogger.LOG_LEVEL_DEBUG;
+                CONFIG_PARAMS.setOutputChoice(choice);
+
+                CONFIG_PARAMS.setProperty(prefix + ".level", "warn");
+                CONFIG_PARAMS.setProperty(prefix + ".exclude", "de.longri.other");
+                CONFIG_PARAMS.setProperty(prefix + ".pattern", "%logger{short}: %msg");
+                // the target System.out is read while the sinks are compiled
+                System.setOut(console);
+                CONFIG_PARAMS.setProperty(prefix + ".target", "System.out");
+                System.setOut(out);
+                LogSinks sinks = CONFIG_PARAMS.snapshot.sinks;
+                assertEquals(1, sinks.getSinks().length);
+                assertEquals("console", sinks.getSinks()[0].getName());
+
+                logger.debug("debug");
+                logger.warn("warn {}", 1);
+                other.error("other");
+                assertEquals("DEBUG debug\nWARN warn 1\nERROR other\n", sbs.toString());
+                assertEquals("SinkTest: warn 1\n", console.toString());
+
+                // unchanged sinks are kept
+                CONFIG_PARAMS.applayProperties();
+                assertSame(sinks, CONFIG_PARAMS.snapshot.sinks);
+
+                // without a pattern, the line of the configuration is written
+                System.setOut(console);
+                CONFIG_PARAMS.removeProperty(prefix + ".pattern");
+                System.setOut(out);
+                assertTrue(sinks.getSinks()[0].isClosed());
+                logger.error("error");
+                assertEquals("SinkTest: warn 1\nERROR error\n", console.toString());
+            } finally {
+                System.setOut(out);
+                for (String key : new String[]{".target", ".level", ".exclude", ".pattern"}) {
+                    CONFIG_PARAMS.removeProperty(prefix + key);
+                }
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+            assertSame(LogSinks.NONE, CONFIG_PARAMS.snapshot.sinks);
+        }
+    }
+
+    @Test
+    void reopenMappedSink() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            File dir = new File("./Test/sinkReopen");
+            deleteDirectoryRecursion(dir);
+            OutputChoice choice = new OutputChoice();
+            choice.add(new StringBuilderPrintStream());
+            String prefix = LongriLogger.SINK_PREFIX + "file";
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%msg");
+                LongriLogger logger = new LongriLogger("de.longri.SinkReopenTest");
+                logger.currentLogLevel = LongriLogger.LOG_LEVEL_DEBUG;
+                // the base path and the file sink open the targets again
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_BASE_PATH_KEY, dir.getPath());
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_FILE_SINK_KEY, "mapped");
+
+                CONFIG_PARAMS.setProperty(prefix + ".target", "sink.log");
+                // the file defaults written by the sink open the targets again
+                CONFIG_PARAMS.setOutputChoice(choice);
+                logger.info("one");
+                // the old mapping is released, before the file is mapped again
+                CONFIG_PARAMS.setProperty(prefix + ".level", "debug");
+                CONFIG_PARAMS.setOutputChoice(choice);
+                logger.info("two");
+                CONFIG_PARAMS.removeProperty(prefix + ".target");
+
+                assertEquals("one\ntwo\n", new String(Files.readAllBytes(new File(dir, "sink.log").toPath())));
+            } finally {
+                CONFIG_PARAMS.removeProperty(prefix + ".target");
+                CONFIG_PARAMS.removeProperty(prefix + ".level");
+                CONFIG_PARAMS.removeProperty(LongriLogger.LOG_FILE_SINK_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.LOG_BASE_PATH_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.DefaultLoggingEvent;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+
+import java.io.IOException;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongriLogEventTest {
+
+    @Test
+    void reuseEvents() {
+        LongriLogEvent event = LongriLogEvent.acquire();
+        // a nested log call gets its own event
+        LongriLogEvent nested = LongriLogEvent.acquire();
+        assertNotSame(event, nested);
+        nested.release();
+
+        event.set(null, Level.INFO, "a {} {} {}", new Object[]{1, 2}, null);
+        event.addArgument(3);
+        event.addKeyValue("k", "v");
+        StringBuilder buf = new StringBuilder();
+        event.appendMessage(buf);
+        assertEquals("k=v a 1 2 3", buf.toString());
+
+        event.release();
+        assertNull(event.arguments);
+        assertNull(event.getMarkers());
+        assertSame(event, LongriLogEvent.acquire());
+        event.release();
+    }
+
+    @Test
+    void fluentApi() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            LongriLogger logger = new LongriLogger("FluentTest");
+            CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+            CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%level %logger - %marker%msg");
+            OutputChoice choice = new OutputChoice();
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            choice.add(sbs);
+            CONFIG_PARAMS.setOutputChoice(choice);
+            try {
+                logger.currentLogLevel = LongriLogger.LOG_LEVEL_TRACE;
+
+                LoggingEventBuilder builder = logger.atInfo();
+                builder.addMarker(MarkerFactory.getMarker("AUDIT"))
+                        .addKeyValue("user", "john")
+                        .addArgument(1)
+                        .addArgument(() -> 2)
+                        .log("values {} {}");
+                assertEquals("INFO FluentTest -  AUDIT user=john values 1 2\n", sbs.toString());
+                sbs.clear();
+
+                // the builder of the thread is reused
+                assertSame(builder, logger.atWarn());
+                logger.atWarn().log("{} {}", "x", new IllegalStateException("cause"));
+                assertTrue(sbs.toString().startsWith("WARN FluentTest - x {}\njava.lang.IllegalStateException: cause"), sbs.toString());
+                sbs.clear();
+
+                // a builder requested while the one of the thread is in use is a new one
+                logger.atDebug().addArgument(() -> {
+                    logger.atTrace().log("inner");
+                    return "arg";
+                }).log("outer {}");
+                assertEquals("TRACE FluentTest - inner\nDEBUG FluentTest - outer arg\n", sbs.toString());
+                sbs.clear();
+
+                DefaultLoggingEvent event = new DefaultLoggingEvent(Level.ERROR, logger);
+                event.setMessage("event {}");
+                event.addArgument("arg");
+                event.addMarker(MarkerFactory.getMarker("PERF"));
+                event.addKeyValue("ms", 12);
+                logger.log(event);
+                assertEquals("ERROR FluentTest -  PERF ms=12 event arg\n", sbs.toString());
+                sbs.clear();
+
+                logger.info(MarkerFactory.getMarker("SECURITY"), "marker {}", 1);
+                assertEquals("INFO FluentTest -  SECURITY marker 1\n", sbs.toString());
+            } finally {
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+        }
+    }
+}
@@ -71,6 +71,10 @@ class LongriLoggerConfigurationTest {
 
             InputStream inputStream = LongriLoggerConfigurationTest.class.getClassLoader().getResourceAsStream("logger/testLongriLogger.properties");
             CONFIG_PARAMS.init(inputStream);
+            // the rolled file is zipped in the background
+            assertTrue(LogFileCompressor.await(10000));
+            // the files over the keep count are deleted on the rolling thread
+            assertTrue(RollingScheduler.await(10000));
 
             assertTrue(currentLogFile.exists());
 
@@ -80,7 +84,8 @@ class LongriLoggerConfigurationTest {
             assertTrue(file3.exists());
             assertFalse(file4.exists());
 
-            String[] list = basDir.list();
+            // without the index of the rolled files
+            String[] list = basDir.list((dir, name) -> !name.endsWith(LogFileRetention.INDEX_SUFFIX));
 
             assertEquals(4, list.length);
             assertFalse(new File("./Test/logs/GUI_3.log.zip").exists());
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongriMDCAdapterTest {
+
+    static final int TASKS = 100_000;
+
+    @Test
+    void putGetRemove() {
+        LongriMDCAdapter mdc = new LongriMDCAdapter();
+        try {
+            assertNull(LongriMDCAdapter.context());
+            mdc.put("a", "1");
+            mdc.put("b", "2");
+            LongriMDCAdapter.Context snapshot = LongriMDCAdapter.context();
+            assertEquals("1", mdc.get("a"));
+
+            // the same value keeps the context
+            mdc.put("a", "1");
+            assertSame(snapshot, LongriMDCAdapter.context());
+
+            // a captured context never changes
+            mdc.put("a", "3");
+            mdc.remove("b");
+            assertEquals("1", snapshot.get("a"));
+            assertEquals("2", snapshot.get("b"));
+            assertEquals("3", mdc.get("a"));
+            assertNull(mdc.get("b"));
+            assertEquals(Collections.singletonMap("a", "3"), mdc.getCopyOfContextMap());
+
+            // the last remove drops the context of the thread
+            mdc.remove("a");
+            assertNull(LongriMDCAdapter.context());
+            assertNull(mdc.getCopyOfContextMap());
+
+            mdc.setContextMap(Collections.singletonMap("c", "4"));
+            assertEquals("4", mdc.get("c"));
+            mdc.clear();
+            assertNull(LongriMDCAdapter.context());
+
+            mdc.pushByKey("d", "x");
+            mdc.pushByKey("d", "y");
+            assertEquals("y", mdc.popByKey("d"));
+            assertEquals(1, mdc.getCopyOfDequeByKey("d").size());
+            mdc.clearDequeByKey("d");
+            assertNull(mdc.popByKey("d"));
+        } finally {
+            mdc.clear();
+        }
+    }
+
+    @Test
+    void layout() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            LongriLogger logger = new LongriLogger("MdcTest");
+            CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+            CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "[%X{requestId}] %msg {%X}");
+            OutputChoice choice = new OutputChoice();
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            choice.add(sbs);
+            CONFIG_PARAMS.setOutputChoice(choice);
+            try {
+                logger.currentLogLevel = LongriLogger.LOG_LEVEL_INFO;
+                assertTrue(MDC.getMDCAdapter() instanceof LongriMDCAdapter);
+                logger.info("none");
+                MDC.put("requestId", "r-1");
+                MDC.put("user", "john");
+                logger.info("with");
+                assertEquals("[] none {}\n[r-1] with {requestId=r-1, user=john}\n", sbs.toString());
+            } finally {
+                MDC.clear();
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+        }
+    }
+
+    @Test
+    void captureWithoutAllocation() {
+        LongriMDCAdapter mdc = new LongriMDCAdapter();
+        LongriLogEvent event = new LongriLogEvent();
+        try {
+            mdc.put("requestId", "r-1");
+            long allocated = Allocations.allocatedBytes(i -> event.mdc = LongriMDCAdapter.context());
+            if (allocated < 0) return;
+            assertTrue(allocated < 10_000, "allocated " + allocated + " bytes");
+
+            // a put and a remove of a request id, two small copies
+            allocated = Allocations.allocatedBytes(i -> {
+                mdc.put("spanId", "s");
+                mdc.remove("spanId");
+            }) / Allocations.CALLS;
+            assertTrue(allocated < 200, "allocated " + allocated + " bytes per put and remove");
+        } finally {
+            mdc.clear();
+        }
+    }
+
+    @Test
+    void threadPoolChurn() throws Exception {
+        churn(Executors.newFixedThreadPool(8));
+        ExecutorService virtual = virtualThreadExecutor();
+        if (virtual != null) churn(virtual);
+    }
+
+    /**
+     * @return the executor of virtual threads, null before Java 21
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static void churn(ExecutorService executor) throws Exception {
+        LongriMDCAdapter mdc = new LongriMDCAdapter();
+        List<Future<Boolean>> results = new ArrayList<>(TASKS);
+        try {
+            for (int i = 0; i < TASKS; i++) {
+                String requestId = "r-" + i;
+                results.add(executor.submit(() -> {
+                    // the MDC of a previous task is never seen
+                    boolean clean = mdc.get("requestId") == null;
+                    mdc.put("requestId", requestId);
+                    LongriMDCAdapter.Context captured = LongriMDCAdapter.context();
+                    mdc.remove("requestId");
+                    return clean && requestId.equals(captured.get("requestId"));
+                }));
+            }
+            for (Future<Boolean> result : results) assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+    }
+}
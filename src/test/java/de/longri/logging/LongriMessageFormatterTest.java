@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.MessageFormatter;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongriMessageFormatterTest {
+
+    private static void assertSameAsSlf4j(String pattern, Object... arguments) {
+        StringBuilder buf = new StringBuilder();
+        LongriMessageFormatter.appendFormatted(buf, pattern, arguments);
+        assertEquals(MessageFormatter.arrayFormat(pattern, arguments).getMessage(), buf.toString());
+    }
+
+    @Test
+    void sameAsMessageFormatter() {
+        assertSameAsSlf4j("no placeholder");
+        assertSameAsSlf4j("no placeholder", "arg");
+        assertSameAsSlf4j("{}", "arg");
+        assertSameAsSlf4j("value {} and {}", 1, 2L);
+        assertSameAsSlf4j("value {} and {}", 1);
+        assertSameAsSlf4j("value {}", 1, 2, 3);
+        assertSameAsSlf4j("escaped \\{} and {}", "a", "b");
+        assertSameAsSlf4j("double escaped \\\\{} and {}", "a", "b");
+        assertSameAsSlf4j("null {}", (Object) null);
+        assertSameAsSlf4j("numbers {} {} {} {} {} {}", (short) 1, (byte) 2, 3.5d, 4.25f, 'c', true);
+        assertSameAsSlf4j("arrays {} {} {}", new int[]{1, 2}, new double[]{1.5}, new Object[]{"a", new long[]{3}});
+        assertSameAsSlf4j("builder {}", new StringBuilder("sb"));
+        assertSameAsSlf4j("throwable {}", new RuntimeException("trailing"));
+        assertSameAsSlf4j("throwable {} {}", "a", new RuntimeException("trailing"));
+
+        Object[] selfContaining = new Object[2];
+        selfContaining[0] = "x";
+        selfContaining[1] = selfContaining;
+        assertSameAsSlf4j("cycle {}", (Object) selfContaining);
+
+        StringBuilder buf = new StringBuilder();
+        LongriMessageFormatter.appendFormatted(buf, null, new Object[]{"a"});
+        assertEquals("null", buf.toString());
+    }
+
+    @Test
+    void failingToString() {
+        Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("fail");
+            }
+        };
+        StringBuilder buf = new StringBuilder();
+        LongriMessageFormatter.appendFormatted(buf, "x {}", new Object[]{failing});
+        assertEquals("x [FAILED toString()]", buf.toString());
+    }
+
+    @Test
+    void noAllocationForCommonArguments() {
+        StringBuilder buf = new StringBuilder(256);
+        Object[] arguments = new Object[]{"text", 42, 123456789L, true, 'c'};
+        String pattern = "a={} b={} c={} d={} e={}";
+
+        long allocated = Allocations.allocatedBytes(i -> {
+            buf.setLength(0);
+            LongriMessageFormatter.appendFormatted(buf, pattern, arguments);
+        });
+        if (allocated < 0) return;
+
+        assertEquals("a=text b=42 c=123456789 d=true e=c", buf.toString().substring(0, 34));
+        // a few bytes for the measurement itself, but nothing per call
+        assertTrue(allocated < 10_000, "allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+import org.slf4j.helpers.BasicMarkerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkerRulesTest {
+
+    @Test
+    void decisions() {
+        BasicMarkerFactory factory = new BasicMarkerFactory();
+        Marker perf = factory.getMarker("PERF");
+        Marker audit = factory.getMarker("AUDIT");
+        Marker security = factory.getMarker("SECURITY");
+        Marker login = factory.getMarker("LOGIN");
+        login.add(security);
+        Marker slowLogin = factory.getMarker("SLOW_LOGIN");
+        slowLogin.add(login);
+        slowLogin.add(perf);
+
+        LogTargets auditRoute = new LogTargets(new OutputChoice(), false);
+        LogTargets securityRoute = new LogTargets(new OutputChoice(), true);
+        Map<String, LogTargets> routes = new HashMap<>();
+        routes.put("AUDIT", auditRoute);
+        routes.put("SECURITY", securityRoute);
+        MarkerRules rules = new MarkerRules("test", Collections.singleton("PERF"), routes);
+
+        assertNull(rules.route(null));
+        assertNull(rules.route(Collections.singletonList(factory.getMarker("OTHER"))));
+        assertSame(MarkerRules.DROP, rules.route(Collections.singletonList(perf)));
+        assertSame(auditRoute, rules.route(Collections.singletonList(audit)));
+        // by the reference, also of a reference
+        assertSame(securityRoute, rules.route(Collections.singletonList(login)));
+        assertSame(securityRoute, rules.route(Collections.singletonList(login)));
+        // a deny wins over a route
+        assertSame(MarkerRules.DROP, rules.route(Collections.singletonList(slowLogin)));
+        assertSame(MarkerRules.DROP, rules.route(Arrays.asList(audit, perf)));
+        // the first route wins
+        assertSame(securityRoute, rules.route(Arrays.asList(login, audit)));
+        // a marker of another factory with the same name
+        assertSame(auditRoute, rules.route(Collections.singletonList(factory.getDetachedMarker("AUDIT"))));
+
+        assertTrue(MarkerRules.NONE.isEmpty());
+        assertNull(MarkerRules.NONE.route(Collections.singletonList(perf)));
+    }
+
+    @Test
+    void routeAndDeny() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            PrintStream out = System.out;
+            StringBuilderPrintStream routed = new StringBuilderPrintStream();
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            OutputChoice choice = new OutputChoice();
+            choice.add(sbs);
+            String routeKey = LongriLogger.MARKER_ROUTE_PREFIX + "ROUTE_TEST";
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%level %marker%msg");
+                LongriLogger logger = new LongriLogger("MarkerRouteTest");
+                logger.currentLogLevel = LongriLogger.LOG_LEVEL_INFO;
+                CONFIG_PARAMS.setOutputChoice(choice);
+
+                // the route target System.out is read while the rules are compiled
+                System.setOut(routed);
+                CONFIG_PARAMS.setProperty(LongriLogger.MARKER_DENY_KEY, "DENY_TEST");
+                CONFIG_PARAMS.setProperty(routeKey, "System.out");
+                System.setOut(out);
+                MarkerRules rules = CONFIG_PARAMS.snapshot.markerRules;
+
+                logger.info("plain");
+                logger.info(MarkerFactory.getMarker("DENY_TEST"), "dropped");
+                logger.info(MarkerFactory.getMarker("ROUTE_TEST"), "routed");
+                assertEquals("INFO plain\n", sbs.toString());
+                assertEquals("INFO  ROUTE_TEST routed\n", routed.toString());
+
+                // unchanged rules are kept
+                CONFIG_PARAMS.applayProperties();
+                assertSame(rules, CONFIG_PARAMS.snapshot.markerRules);
+
+                // to the default targets too
+                System.setOut(routed);
+                CONFIG_PARAMS.setProperty(routeKey, "System.out,default");
+                System.setOut(out);
+                assertTrue(rules.route(Collections.singletonList(MarkerFactory.getMarker("ROUTE_TEST"))).isClosed());
+                logger.info(MarkerFactory.getMarker("ROUTE_TEST"), "both");
+                assertEquals("INFO plain\nINFO  ROUTE_TEST both\n", sbs.toString());
+                assertEquals("INFO  ROUTE_TEST routed\nINFO  ROUTE_TEST both\n", routed.toString());
+            } finally {
+                System.setOut(out);
+                CONFIG_PARAMS.removeProperty(routeKey);
+                CONFIG_PARAMS.removeProperty(LongriLogger.MARKER_DENY_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+            assertTrue(CONFIG_PARAMS.snapshot.markerRules.isEmpty());
+        }
+    }
+
+    @Test
+    void reopenMappedRoute() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            File dir = new File("./Test/routeReopen");
+            deleteDirectoryRecursion(dir);
+            OutputChoice choice = new OutputChoice();
+            choice.add(new StringBuilderPrintStream());
+            String routeKey = LongriLogger.MARKER_ROUTE_PREFIX + "REOPEN_TEST";
+            Marker marker = MarkerFactory.getMarker("REOPEN_TEST");
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%msg");
+                LongriLogger logger = new LongriLogger("de.longri.RouteReopenTest");
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_BASE_PATH_KEY, dir.getPath());
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_FILE_SINK_KEY, "mapped");
+
+                CONFIG_PARAMS.setProperty(routeKey, "route.log");
+                // the file defaults written by the route open the targets again
+                CONFIG_PARAMS.setOutputChoice(choice);
+                logger.info(marker, "one");
+                // the old mapping is released, before the file is mapped again
+                CONFIG_PARAMS.setProperty(LongriLogger.MARKER_DENY_KEY, "OTHER");
+                CONFIG_PARAMS.setOutputChoice(choice);
+                logger.info(marker, "two");
+                CONFIG_PARAMS.removeProperty(routeKey);
+
+                assertEquals("one\ntwo\n", new String(Files.readAllBytes(new File(dir, "route.log").toPath())));
+            } finally {
+                CONFIG_PARAMS.removeProperty(routeKey);
+                CONFIG_PARAMS.removeProperty(LongriLogger.MARKER_DENY_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.LOG_FILE_SINK_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.LOG_BASE_PATH_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTemplateTest {
+
+    @Test
+    void cache() {
+        String pattern = "cached {} template";
+        MessageTemplate template = MessageTemplate.of(pattern);
+        assertSame(template, MessageTemplate.of(pattern));
+        // an equal pattern, built at runtime
+        assertSame(template, MessageTemplate.of(new StringBuilder("cached {} ").append("template").toString()));
+        assertTrue(template.hasPlaceholders());
+        assertFalse(MessageTemplate.of("constant message").hasPlaceholders());
+
+        // "Aa" and "BB" have the same hash, the slot is replaced
+        MessageTemplate aa = MessageTemplate.of("Aa");
+        MessageTemplate bb = MessageTemplate.of("BB");
+        assertEquals("Aa", aa.getPattern());
+        assertEquals("BB", bb.getPattern());
+        assertNotSame(aa, MessageTemplate.of("Aa"));
+    }
+
+    @Test
+    void sameAsMessageFormatter() {
+        String[] parts = {"{}", "\\{}", "\\\\{}", "text", " ", "{", "}", "\\"};
+        Random random = new Random(42);
+        for (int n = 0; n < 5000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int i = 0; i < length; i++) sb.append(parts[random.nextInt(parts.length)]);
+            String pattern = sb.toString();
+            Object[] arguments = new Object[random.nextInt(5)];
+            for (int i = 0; i < arguments.length; i++) arguments[i] = "a" + i;
+
+            StringBuilder buf = new StringBuilder();
+            MessageTemplate.parse(pattern).appendTo(buf, arguments, arguments.length);
+            assertEquals(MessageFormatter.arrayFormat(pattern, arguments).getMessage(), buf.toString(),
+                    "pattern [" + pattern + "] with " + arguments.length + " arguments");
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.Level;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatternLayoutTest {
+
+    private static String format(String pattern, LongriLogger logger, Level level, List<Marker> markers, String message, Object... args) {
+        LongriLogEvent event = new LongriLogEvent();
+        event.set(logger, level, message, args, null);
+        if (markers != null) markers.forEach(event::addMarker);
+        StringBuilder buf = new StringBuilder();
+        PatternLayout.compile(pattern).format(buf, event);
+        return buf.toString();
+    }
+
+    @Test
+    void settingsPattern() {
+        LongriLogger logger = new LongriLogger("de.longri.PatternTest");
+        String thread = Thread.currentThread().getName();
+
+        String pattern = PatternLayout.fromSettings(false, null, true, false, false, false, true);
+        assertEquals("[%t] %level %logger - %marker%msg%n", pattern);
+        assertEquals("[" + thread + "] INFO de.longri.PatternTest - a 1",
+                format(pattern, logger, Level.INFO, null, "a {}", 1));
+
+        pattern = PatternLayout.fromSettings(false, null, false, true, true, true, true);
+        List<Marker> markers = Arrays.asList(MarkerFactory.getMarker("M1"), MarkerFactory.getMarker("M2"));
+        assertEquals("tid=" + Thread.currentThread().getId() + " [WARN] PatternTest -  M1 M2 b",
+                format(pattern, logger, Level.WARN, markers, "b"));
+
+        pattern = PatternLayout.fromSettings(true, "yyyy", false, false, false, false, false);
+        assertTrue(format(pattern, logger, Level.ERROR, null, "c").matches("\\d{4} ERROR c"));
+        pattern = PatternLayout.fromSettings(true, null, false, false, false, false, false);
+        assertTrue(format(pattern, logger, Level.ERROR, null, "c").matches("\\d+ ERROR c"));
+    }
+
+    @Test
+    void customPattern() {
+        LongriLogger logger = new LongriLogger("de.longri.PatternTest");
+        assertEquals("DEBUG|PatternTest|100%|x=2",
+                format("%p|%c{short}|100%%|%m%n", logger, Level.DEBUG, null, "x={}", 2));
+        assertEquals("TRACE" + System.lineSeparator() + "de.longri.PatternTest",
+                format("%le%n%lo", logger, Level.TRACE, null, "unused"));
+        // a bad date format falls back to the relative time
+        assertTrue(format("%d{qq} %message", logger, Level.INFO, null, "m").matches("\\d+ m"));
+
+        assertThrows(IllegalArgumentException.class, () -> PatternLayout.compile("%level %unknown"));
+        assertThrows(IllegalArgumentException.class, () -> PatternLayout.compile("%d{HH:mm"));
+    }
+
+    @Test
+    void patternProperty() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            OutputChoice choice = new OutputChoice();
+            choice.add(sbs);
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                CONFIG_PARAMS.setLogLevel("PatternProperty", "info");
+                Logger log = new LongriLoggerFactory().getLogger("PatternProperty");
+                CONFIG_PARAMS.setOutputChoice(choice);
+
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%level %logger: %msg%n");
+                PatternLayout layout = CONFIG_PARAMS.snapshot.layout;
+                log.info("one {}", 1);
+                assertEquals("INFO PatternProperty: one 1\n", sbs.toString());
+
+                // an unchanged pattern isn't compiled again
+                CONFIG_PARAMS.applayProperties();
+                assertSame(layout, CONFIG_PARAMS.snapshot.layout);
+
+                // an invalid pattern keeps the current layout
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%nothing");
+                assertSame(layout, CONFIG_PARAMS.snapshot.layout);
+            } finally {
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+                CONFIG_PARAMS.setLogLevel("PatternProperty", null);
+            }
+            assertNotEquals("%nothing", CONFIG_PARAMS.snapshot.layout.getPattern());
+            assertNotEquals("%level %logger: %msg%n", CONFIG_PARAMS.snapshot.layout.getPattern());
+        }
+    }
+}
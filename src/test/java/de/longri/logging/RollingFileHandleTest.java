@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingFileHandleTest {
+
+    static final File TEST_DIR = new File("./Test/rollingHandle");
+
+    @Test
+    void startupRolling() throws IOException {
+        deleteDirectoryRecursion(TEST_DIR);
+        File baseDir = new File(TEST_DIR, "logs/nested");
+        String pattern = "/app_%d{yyyy_MM_dd}.log.zip";
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+        String date = format.format(LocalDateTime.now().minusDays(1));
+
+        // first start, creates the base dir
+        long start = System.nanoTime();
+        RollingFileHandle handle = new RollingFileHandle(baseDir, "app.log");
+        long createMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(baseDir.isDirectory());
+        Files.writeString(handle.HANDLE.toPath(), "x".repeat(1_000_000));
+        // the rolled files of earlier days
+        for (int day = 2; day < 500; day++) {
+            Files.writeString(new File(baseDir, "app_" + format.format(LocalDateTime.now().minusDays(day)) + ".log.zip").toPath(), "old");
+        }
+
+        // second start, age 0 always rolls the existing file, it is compressed in the background
+        start = System.nanoTime();
+        handle = new RollingFileHandle(baseDir, "app.log");
+        assertTrue(handle.rolling(pattern, 0, 3));
+        long rollMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // previous versions waited 1.7 seconds, a generous bound for a slow file system
+        assertTrue(createMillis < 1000, "create base dir took " + createMillis + " ms");
+        assertTrue(rollMillis < 1000, "rolling took " + rollMillis + " ms");
+
+        assertFalse(handle.HANDLE.exists());
+        assertTrue(LogFileCompressor.await(10000));
+        assertTrue(new File(baseDir, "app_" + date + ".log.zip").exists());
+        assertFalse(new File(baseDir, "app_" + date + ".log").exists());
+    }
+
+    @Test
+    void moveTo() throws IOException {
+        deleteDirectoryRecursion(TEST_DIR);
+        RollingFileHandle handle = new RollingFileHandle(TEST_DIR, "app.log");
+        Files.writeString(handle.HANDLE.toPath(), "content");
+
+        // the target dir is missing, the move fails and the file is kept
+        File missing = new File(TEST_DIR, "missing/app_1.log");
+        assertFalse(handle.moveTo(missing));
+        assertFalse(handle.renameTo(missing));
+        assertTrue(handle.HANDLE.exists());
+
+        File target = new File(TEST_DIR, "app_1.log");
+        assertTrue(handle.moveTo(target));
+        assertFalse(handle.HANDLE.exists());
+        assertEquals("content", Files.readString(target.toPath()));
+    }
+
+    @Test
+    void failedMoveThrows() throws IOException {
+        deleteDirectoryRecursion(TEST_DIR);
+        RollingFileHandle handle = new RollingFileHandle(TEST_DIR, "app.log");
+        Files.writeString(handle.HANDLE.toPath(), "content");
+
+        assertThrows(RuntimeException.class, () -> handle.rollBySize("/missing/app_%i.log", 3, -1));
+        assertTrue(handle.HANDLE.exists());
+    }
+}
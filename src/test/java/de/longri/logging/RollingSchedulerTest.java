@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingSchedulerTest {
+
+    static final String LS = System.lineSeparator();
+
+    static File newTestDir() throws IOException {
+        File dir = new File("./Test/timeRolling");
+        deleteDirectoryRecursion(dir);
+        assertTrue(dir.mkdirs());
+        return dir;
+    }
+
+    @Test
+    void granularity() {
+        assertEquals(ChronoUnit.DAYS, RollingScheduler.granularity("/log_%d{yyyy_MM_dd}.log.zip"));
+        assertEquals(ChronoUnit.HOURS, RollingScheduler.granularity("/log_%d{yyyy-MM-dd_HH}.log"));
+        assertEquals(ChronoUnit.MINUTES, RollingScheduler.granularity("/log_%d{HH-mm}_%i.log"));
+        assertEquals(ChronoUnit.MONTHS, RollingScheduler.granularity("/log_%d{yyyy_MM}.log"));
+        assertEquals(ChronoUnit.YEARS, RollingScheduler.granularity("/log_%d{yyyy}.log"));
+        // quoted text is no field
+        assertEquals(ChronoUnit.MONTHS, RollingScheduler.granularity("/log_%d{yyyy_MM'_day'}.log"));
+        assertNull(RollingScheduler.granularity("/log_%i.log"));
+        assertNull(RollingScheduler.granularity(null));
+    }
+
+    @Test
+    void nextBoundary() {
+        ZoneId zone = ZoneId.of("Europe/Berlin");
+        ZonedDateTime now = LocalDateTime.of(2024, 3, 9, 13, 45, 12).atZone(zone);
+        assertEquals(LocalDateTime.of(2024, 3, 9, 13, 45, 13), RollingScheduler.nextBoundary(now, ChronoUnit.SECONDS).toLocalDateTime());
+        assertEquals(LocalDateTime.of(2024, 3, 9, 14, 0), RollingScheduler.nextBoundary(now, ChronoUnit.HOURS).toLocalDateTime());
+        assertEquals(LocalDateTime.of(2024, 3, 10, 0, 0), RollingScheduler.nextBoundary(now, ChronoUnit.DAYS).toLocalDateTime());
+        assertEquals(LocalDateTime.of(2024, 4, 1, 0, 0), RollingScheduler.nextBoundary(now, ChronoUnit.MONTHS).toLocalDateTime());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 0, 0), RollingScheduler.nextBoundary(now, ChronoUnit.YEARS).toLocalDateTime());
+
+        // 02:00 doesn't exist on this day, the next hour starts at 03:00
+        ZonedDateTime beforeGap = LocalDateTime.of(2024, 3, 31, 1, 30).atZone(zone);
+        assertEquals(LocalDateTime.of(2024, 3, 31, 3, 0), RollingScheduler.nextBoundary(beforeGap, ChronoUnit.HOURS).toLocalDateTime());
+    }
+
+    @Test
+    void rollOnTime() throws IOException {
+        File dir = newTestDir();
+        File file = new File(dir, "app.log");
+        LogFileStream stream = new BufferedLogFileStream(new ChannelLogFileOutput(file, 1024), file);
+        stream.setRolling("/app_%d{yyyy_MM_dd_HH}.log.zip", 0, 5, 0);
+
+        stream.println("line 1");
+        stream.println("line 2");
+        assertTrue(stream.rollOnTime(LocalDateTime.of(2024, 3, 9, 14, 0)));
+        stream.println("line 3");
+        stream.flush();
+
+        // the new file is written, while the old one is zipped in the background
+        assertEquals("line 3" + LS, Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        assertTrue(RollingScheduler.await(5000));
+        assertTrue(LogFileCompressor.await(5000));
+        File zip = new File(dir, "app_2024_03_09_13.log.zip");
+        assertTrue(zip.exists());
+        assertFalse(new File(dir, "app_2024_03_09_13.log").exists());
+
+        File extractFolder = new File(dir, "extract");
+        rollingZipTest.unzip(zip, extractFolder);
+        assertEquals("line 1" + LS + "line 2" + LS, Files.readString(new File(extractFolder, "app.log").toPath()));
+
+        // same period again, the index is added
+        assertTrue(stream.rollOnTime(LocalDateTime.of(2024, 3, 9, 14, 0)));
+        assertTrue(RollingScheduler.await(5000));
+        assertTrue(LogFileCompressor.await(5000));
+        assertTrue(new File(dir, "app_2024_03_09_13_1.log.zip").exists());
+
+        // an empty file isn't rolled
+        assertFalse(stream.rollOnTime(LocalDateTime.of(2024, 3, 9, 15, 0)));
+        stream.close();
+    }
+
+    @Test
+    void scheduledRolling() throws IOException, InterruptedException {
+        File dir = newTestDir();
+        File file = new File(dir, "app.log");
+        LogFileStream stream = new LogFileStream(file);
+        String pattern = "/app_%d{yyyy_MM_dd_HH_mm_ss}.log";
+        stream.setRolling(pattern, 0, 100, 0);
+        RollingScheduler.schedule(stream, pattern);
+
+        // write for 2.5 seconds, the file is rolled every second
+        int count = 0;
+        long end = System.currentTimeMillis() + 2500;
+        while (System.currentTimeMillis() < end) {
+            synchronized (stream) {
+                stream.println("line " + count++);
+            }
+            Thread.sleep(5);
+        }
+        stream.close();
+        assertTrue(RollingScheduler.await(5000));
+
+        String[] rolled = dir.list((d, name) -> name.startsWith("app_"));
+        assertNotNull(rolled);
+        assertTrue(rolled.length >= 2, Arrays.toString(rolled));
+
+        // no line is lost or duplicated
+        Arrays.sort(rolled);
+        StringBuilder content = new StringBuilder();
+        for (String name : rolled) {
+            content.append(Files.readString(new File(dir, name).toPath(), StandardCharsets.UTF_8));
+        }
+        content.append(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            expected.append("line ").append(i).append(LS);
+        }
+        assertEquals(expected.toString(), content.toString());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuntimeLogLevelTest {
+
+    @Test
+    void changeCachedLoggers() {
+        LongriLoggerFactory factory = new LongriLoggerFactory();
+        synchronized (CONFIG_PARAMS) {
+            try {
+                CONFIG_PARAMS.setLogLevel("runtime", "info");
+                Logger parent = factory.getLogger("runtime.sub");
+                Logger child = factory.getLogger("runtime.sub.deep.Child");
+                Logger sibling = factory.getLogger("runtime.subsystem");
+                Logger other = factory.getLogger("runtime.other");
+                assertFalse(parent.isDebugEnabled());
+                assertFalse(child.isDebugEnabled());
+
+                // raise the subsystem, the created loggers follow
+                CONFIG_PARAMS.setLogLevel("runtime.sub", "debug");
+                assertTrue(parent.isDebugEnabled());
+                assertTrue(child.isDebugEnabled());
+                assertFalse(sibling.isDebugEnabled());
+                assertFalse(other.isDebugEnabled());
+                assertEquals("debug", CONFIG_PARAMS.getLogLevel("runtime.sub.deep.Child"));
+
+                // a more specific level wins
+                CONFIG_PARAMS.setLogLevel("runtime.sub.deep", "error");
+                assertTrue(parent.isDebugEnabled());
+                assertFalse(child.isWarnEnabled());
+
+                // and back, the parent level is used again
+                CONFIG_PARAMS.setLogLevel("runtime.sub.deep", null);
+                CONFIG_PARAMS.setLogLevel("runtime.sub", null);
+                assertFalse(parent.isDebugEnabled());
+                assertFalse(child.isDebugEnabled());
+                assertTrue(child.isInfoEnabled());
+                assertEquals("info", CONFIG_PARAMS.getLogLevel("runtime.sub"));
+
+                // new loggers get the level too
+                CONFIG_PARAMS.setLogLevel("runtime.sub", "trace");
+                assertTrue(factory.getLogger("runtime.sub.New").isTraceEnabled());
+            } finally {
+                CONFIG_PARAMS.setLogLevel("runtime.sub.deep", null);
+                CONFIG_PARAMS.setLogLevel("runtime.sub", null);
+                CONFIG_PARAMS.setLogLevel("runtime", null);
+            }
+        }
+    }
+
+    @Test
+    void changeWhileLogging() throws InterruptedException {
+        LongriLoggerFactory factory = new LongriLoggerFactory();
+        Logger logger = factory.getLogger("runtime.load.Worker");
+        CONFIG_PARAMS.setLogLevel("runtime.load", "info");
+        try {
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong enabled = new AtomicLong();
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(() -> {
+                    while (running.get()) {
+                        if (logger.isDebugEnabled()) enabled.incrementAndGet();
+                    }
+                });
+                threads[i].start();
+            }
+            Thread.sleep(50);
+            assertEquals(0, enabled.get());
+
+            // the readers see the new level without a lock
+            CONFIG_PARAMS.setLogLevel("runtime.load", "debug");
+            long end = System.currentTimeMillis() + 5000;
+            while (enabled.get() < threads.length * 1000L && System.currentTimeMillis() < end) {
+                Thread.sleep(1);
+            }
+            running.set(false);
+            for (Thread thread : threads) thread.join();
+            assertTrue(enabled.get() >= threads.length * 1000L);
+
+            CONFIG_PARAMS.setLogLevel("runtime.load", "warn");
+            assertFalse(logger.isInfoEnabled());
+        } finally {
+            CONFIG_PARAMS.setLogLevel("runtime.load", null);
+        }
+    }
+}
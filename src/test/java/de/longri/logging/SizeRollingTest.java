@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static de.longri.logging.LongriLoggerConfigurationTest.deleteDirectoryRecursion;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeRollingTest {
+
+    static final String LS = System.lineSeparator();
+
+    static File newTestDir() throws IOException {
+        File dir = new File("./Test/sizeRolling");
+        deleteDirectoryRecursion(dir);
+        assertTrue(dir.mkdirs());
+        return dir;
+    }
+
+    @Test
+    void fileNameFromPattern() {
+        LocalDateTime date = LocalDateTime.of(2024, 3, 9, 12, 0);
+        assertEquals("/app_2024_03_09_7.log.zip", RollingFileHandle.getFileNameFromPattern("/app_%d{yyyy_MM_dd}_%i.log.zip", date, 7));
+        assertEquals("/app_2024_03_09_%i.log.zip", RollingFileHandle.getFileNameFromPattern("/app_%d{yyyy_MM_dd}_%i.log.zip", date, -1));
+
+        assertEquals("/app_%d{yyyy_MM_dd}_%i.log.zip", RollingFileHandle.withIndex("/app_%d{yyyy_MM_dd}.log.zip"));
+        assertEquals("/app-%i-%d{yyyy}.log", RollingFileHandle.withIndex("/app-%i-%d{yyyy}.log"));
+        assertEquals("/logs.d/app_%i.log.zip", RollingFileHandle.withIndex("/logs.d/app.log.zip"));
+        assertEquals("app_%i", RollingFileHandle.withIndex("app"));
+    }
+
+    @Test
+    void parseFileSize() {
+        assertEquals(1234, LongriLoggerConfiguration.parseFileSize("1234"));
+        assertEquals(512 * 1024, LongriLoggerConfiguration.parseFileSize("512KB"));
+        assertEquals(10 * 1024 * 1024, LongriLoggerConfiguration.parseFileSize("10mb"));
+        assertEquals(2L * 1024 * 1024 * 1024, LongriLoggerConfiguration.parseFileSize(" 2 GB "));
+        assertEquals(0, LongriLoggerConfiguration.parseFileSize("much"));
+        assertEquals(0, LongriLoggerConfiguration.parseFileSize(null));
+    }
+
+    @Test
+    void rollStream() throws IOException {
+        File dir = newTestDir();
+        File file = new File(dir, "app.log");
+        rollBySize(new LogFileStream(file), dir, file);
+    }
+
+    @Test
+    void rollChannel() throws IOException {
+        File dir = newTestDir();
+        File file = new File(dir, "app.log");
+        rollBySize(new BufferedLogFileStream(new ChannelLogFileOutput(file, 256), file), dir, file);
+    }
+
+    @Test
+    void rollMapped() throws IOException {
+        File dir = newTestDir();
+        File file = new File(dir, "app.log");
+        rollBySize(new BufferedLogFileStream(new MappedLogFileOutput(file, 4096), file), dir, file);
+    }
+
+    private void rollBySize(LogFileStream stream, File dir, File file) throws IOException {
+        String date = DateTimeFormatter.ofPattern("yyyy_MM_dd").format(LocalDate.now());
+        String line = "0123456789".repeat(9) + "#";
+        int lineLength = line.length() + LS.length();
+
+        // 10 lines per file, keep 2 rolled files
+        stream.setRolling("/app_%d{yyyy_MM_dd}_%i.log", 0, 2, 10L * lineLength);
+        for (int i = 0; i < 45; i++) {
+            stream.println(line);
+            assertEquals((i + 1) % 10 == 0, stream.rollIfTooLarge());
+        }
+        assertEquals(5L * lineLength, stream.length());
+        stream.close();
+        // the old files are closed and deleted on the rolling thread
+        assertTrue(RollingScheduler.await(5000));
+
+        assertFalse(new File(dir, "app_" + date + "_1.log").exists());
+        assertFalse(new File(dir, "app_" + date + "_2.log").exists());
+        File rolled3 = new File(dir, "app_" + date + "_3.log");
+        File rolled4 = new File(dir, "app_" + date + "_4.log");
+        assertTrue(rolled3.exists());
+        assertTrue(rolled4.exists());
+        assertEquals(10L * lineLength, rolled3.length());
+        assertEquals(10L * lineLength, rolled4.length());
+        assertEquals(5L * lineLength, file.length());
+        assertEquals((line + LS).repeat(5), Files.readString(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rollZip() throws IOException {
+        File dir = newTestDir();
+        File file = new File(dir, "app.log");
+        Files.writeString(file.toPath(), "first file" + LS);
+
+        RollingFileHandle handle = new RollingFileHandle(dir, "app.log");
+        // no %i in the pattern, the index is added behind the date
+        assertTrue(handle.rollBySize("/app_%d{yyyy_MM_dd}.log.zip", 5, 9));
+        assertFalse(file.exists());
+        assertTrue(LogFileCompressor.await(5000));
+
+        String date = DateTimeFormatter.ofPattern("yyyy_MM_dd").format(LocalDate.now());
+        File zip = new File(dir, "app_" + date + "_1.log.zip");
+        assertTrue(zip.exists());
+
+        File extractFolder = new File(dir, "extract");
+        rollingZipTest.unzip(zip, extractFolder);
+        assertEquals("first file" + LS, Files.readString(new File(extractFolder, "app.log").toPath()));
+
+        Files.writeString(file.toPath(), "second file" + LS);
+        assertTrue(handle.rollBySize("/app_%d{yyyy_MM_dd}.log.zip", 5, 9));
+        assertTrue(LogFileCompressor.await(5000));
+        assertTrue(new File(dir, "app_" + date + "_2.log.zip").exists());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Each target is written with its own lock. A slow target only slows down the threads,
+ * which write to it.
+ */
+class TargetLockBenchmarkTest {
+
+    static final int THREADS = 64;
+    static final int SLOW_THREADS = 8;
+    static final long RUN_MILLIS = 500;
+
+    /**
+     * Counts the lines, without keeping them
+     */
+    static class CountingPrintStream extends PrintStream {
+        final AtomicLong lines = new AtomicLong();
+        private final long sleepMillis;
+
+        CountingPrintStream(long sleepMillis) {
+            super(OutputStream.nullOutputStream());
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void println(String s) {
+            if (sleepMillis > 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sleepMillis));
+            lines.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the lines per second written to each of the targets, while all threads are logging
+     */
+    private static long[] run(CountingPrintStream... targets) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(THREADS);
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            boolean slow = i < SLOW_THREADS;
+            LongriLogger logger = new LongriLogger((slow ? "bench.slow.T" : "bench.fast.T") + i);
+            logger.currentLogLevel = LongriLogger.LOG_LEVEL_INFO;
+            threads[i] = new Thread(() -> {
+                started.countDown();
+                long count = 0;
+                while (running.get()) {
+                    logger.info("benchmark line {}", count++);
+                }
+            });
+            threads[i].start();
+        }
+        started.await();
+        long start = System.nanoTime();
+        long[] before = new long[targets.length];
+        for (int i = 0; i < targets.length; i++) before[i] = targets[i].lines.get();
+        Thread.sleep(RUN_MILLIS);
+        long[] linesPerSecond = new long[targets.length];
+        for (int i = 0; i < targets.length; i++) linesPerSecond[i] = targets[i].lines.get() - before[i];
+        long nanos = System.nanoTime() - start;
+        running.set(false);
+        for (Thread thread : threads) thread.join();
+
+        for (int i = 0; i < targets.length; i++) linesPerSecond[i] = linesPerSecond[i] * 1_000_000_000L / Math.max(nanos, 1);
+        return linesPerSecond;
+    }
+
+    @Test
+    void slowSink() throws IOException, InterruptedException {
+        synchronized (CONFIG_PARAMS) {
+            PrintStream out = System.out;
+            String prefix = LongriLogger.SINK_PREFIX + "slow";
+            CountingPrintStream fast = new CountingPrintStream(0);
+            CountingPrintStream slow = new CountingPrintStream(1);
+            OutputChoice choice = new OutputChoice();
+            choice.add(fast);
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                new LongriLogger("bench.init");
+                CONFIG_PARAMS.setOutputChoice(choice);
+
+                CONFIG_PARAMS.setProperty(prefix + ".include", "bench.slow");
+                // the target System.out is read while the sinks are compiled
+                System.setOut(slow);
+                CONFIG_PARAMS.setProperty(prefix + ".target", "System.out");
+                System.setOut(out);
+                assertEquals(1, CONFIG_PARAMS.snapshot.sinks.getSinks().length);
+
+                long[] linesPerSecond = run(fast, slow);
+                assertTrue(linesPerSecond[1] > 0);
+
+                // a global lock would limit all threads to the speed of the slow sink, at most 1000 lines/s,
+                // with a lock per target the fast target is not slowed down by it
+                assertTrue(linesPerSecond[0] > linesPerSecond[1] * 100,
+                        "fast target " + linesPerSecond[0] + " lines/s, slow sink " + linesPerSecond[1] + " lines/s");
+            } finally {
+                System.setOut(out);
+                CONFIG_PARAMS.removeProperty(prefix + ".target");
+                CONFIG_PARAMS.removeProperty(prefix + ".include");
+            }
+        }
+    }
+
+    @Test
+    void stackTraceStaysWithLine() throws IOException, InterruptedException {
+        synchronized (CONFIG_PARAMS) {
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            OutputChoice choice = new OutputChoice();
+            choice.add(sbs);
+            CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+            LongriLogger logger = new LongriLogger("bench.trace");
+            logger.currentLogLevel = LongriLogger.LOG_LEVEL_INFO;
+            CONFIG_PARAMS.setOutputChoice(choice);
+
+            Thread[] threads = new Thread[16];
+            for (int i = 0; i < threads.length; i++) {
+                int n = i;
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        logger.error("failed " + n + "-" + j, new RuntimeException("trace " + n + "-" + j));
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) thread.join();
+
+            String[] lines = sbs.toString().split("\n");
+            int messages = 0;
+            for (int i = 0; i < lines.length; i++) {
+                int index = lines[i].indexOf("failed ");
+                if (index < 0) continue;
+                messages++;
+                String id = lines[i].substring(index + "failed ".length());
+                assertEquals("java.lang.RuntimeException: trace " + id, lines[i + 1]);
+                assertTrue(lines[i + 2].startsWith("\tat "), lines[i + 2]);
+            }
+            assertEquals(16 * 50, messages);
+        }
+    }
+}
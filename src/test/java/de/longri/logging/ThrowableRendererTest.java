@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of Logging.
+ *
+ * Logging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * Logging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Logging. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static de.longri.logging.LongriLogger.CONFIG_PARAMS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThrowableRendererTest {
+
+    private static final String LS = System.lineSeparator();
+
+    private static String printStackTrace(Throwable t) {
+        StringWriter writer = new StringWriter();
+        t.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    private static RuntimeException failure(String message) {
+        IOException cause = new IOException("cause");
+        RuntimeException e = new RuntimeException(message, cause);
+        e.addSuppressed(new IllegalStateException("suppressed"));
+        return e;
+    }
+
+    private static StackTraceElement frame(String className, String method) {
+        return new StackTraceElement(className, method, className.substring(className.lastIndexOf('.') + 1) + ".java", 42);
+    }
+
+    @Test
+    void sameAsPrintStackTrace() {
+        ThrowableRenderer renderer = new ThrowableRenderer(0, new String[0], 16, 0);
+        for (int i = 0; i < 3; i++) {
+            // the same trace with other messages, rendered from the cache
+            RuntimeException e = failure("failure " + i);
+            assertEquals(printStackTrace(e), renderer.render(e, 0));
+        }
+
+        IllegalStateException circular = new IllegalStateException("circular");
+        RuntimeException outer = new RuntimeException("outer", circular);
+        circular.initCause(new IOException("inner", outer));
+        assertEquals(printStackTrace(outer), renderer.render(outer, 0));
+
+        ThrowableRenderer uncached = new ThrowableRenderer(0, new String[0], 0, 1000);
+        RuntimeException e = failure("uncached");
+        assertEquals(printStackTrace(e), uncached.render(e, 0));
+        assertEquals(printStackTrace(e), uncached.render(e, 0));
+    }
+
+    @Test
+    void foldAndLimitFrames() {
+        RuntimeException e = new RuntimeException("folded");
+        e.setStackTrace(new StackTraceElement[]{
+                frame("com.app.Service", "call"),
+                frame("java.lang.reflect.Method", "invoke"),
+                frame("jdk.internal.reflect.Accessor", "invoke"),
+                frame("java.lang.reflect.Method", "invoke"),
+                frame("com.app.Controller", "handle"),
+                frame("java.lang.reflect.Method", "invoke"),
+                frame("com.app.Main", "main"),
+                frame("com.app.Launcher", "start"),
+        });
+
+        ThrowableRenderer renderer = new ThrowableRenderer(6, new String[]{"java.lang.reflect", "jdk.internal"}, 16, 0);
+        assertEquals("java.lang.RuntimeException: folded" + LS
+                + "\tat com.app.Service.call(Service.java:42)" + LS
+                + "\t... 3 frames folded" + LS
+                + "\tat com.app.Controller.handle(Controller.java:42)" + LS
+                + "\tat java.lang.reflect.Method.invoke(Method.java:42)" + LS
+                + "\t... 2 frames omitted" + LS, renderer.render(e, 0));
+
+        // a package matches only as a whole
+        renderer = new ThrowableRenderer(0, new String[]{"com.ap"}, 16, 0);
+        assertEquals(printStackTrace(e), renderer.render(e, 0));
+    }
+
+    @Test
+    void repeatedTrace() {
+        ThrowableRenderer renderer = new ThrowableRenderer(0, new String[0], 16, 1000);
+        // the same trace, created on the same line
+        RuntimeException[] failures = new RuntimeException[3];
+        for (int i = 0; i < failures.length; i++) failures[i] = failure("failure " + i);
+        RuntimeException e = failures[0];
+        String full = renderer.render(e, 0);
+        String id = full.substring(full.lastIndexOf('#') + 1).trim();
+        assertEquals(printStackTrace(e) + "\t... trace #" + id + LS, full);
+
+        assertEquals("java.lang.RuntimeException: failure 1" + LS + "\t... same as trace #" + id + " (seen 2 times)" + LS,
+                renderer.render(failures[1], 500));
+        assertTrue(renderer.render(failures[2], 999).contains("(seen 3 times)"));
+
+        // after the window, the trace is written again
+        assertEquals(full, renderer.render(e, 1000));
+        assertTrue(renderer.render(e, 1001).contains("(seen 2 times)"));
+
+        // another trace isn't suppressed
+        IOException other = new IOException("other");
+        assertTrue(renderer.render(other, 1002).startsWith(printStackTrace(other)));
+    }
+
+    @Test
+    void stackTraceProperties() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            OutputChoice choice = new OutputChoice();
+            choice.add(sbs);
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%level %msg");
+                LongriLogger logger = new LongriLogger("de.longri.TraceTest");
+                CONFIG_PARAMS.setOutputChoice(choice);
+                CONFIG_PARAMS.setProperty(LongriLogger.STACK_TRACE_REPEAT_WINDOW_MILLIS_KEY, "60000");
+                CONFIG_PARAMS.setProperty(LongriLogger.STACK_TRACE_MAX_FRAMES_KEY, "1");
+                ThrowableRenderer renderer = CONFIG_PARAMS.throwableRenderer;
+
+                for (int i = 0; i < 2; i++) logger.error("failed", new IOException("timeout " + i));
+                String[] lines = sbs.toString().split("\n");
+                assertEquals("ERROR failed", lines[0]);
+                assertEquals("java.io.IOException: timeout 0", lines[1]);
+                assertTrue(lines[2].startsWith("\tat "));
+                assertTrue(lines[3].matches("\t\\.\\.\\. \\d+ frames omitted"));
+                assertTrue(lines[4].startsWith("\t... trace #"));
+                assertEquals("ERROR failed", lines[5]);
+                assertEquals("java.io.IOException: timeout 1", lines[6]);
+                assertEquals("\t... same as trace #" + lines[4].substring(lines[4].indexOf('#') + 1) + " (seen 2 times)", lines[7]);
+                assertEquals(8, lines.length);
+
+                // unchanged settings keep the renderer
+                CONFIG_PARAMS.applayProperties();
+                assertSame(renderer, CONFIG_PARAMS.throwableRenderer);
+            } finally {
+                CONFIG_PARAMS.removeProperty(LongriLogger.STACK_TRACE_REPEAT_WINDOW_MILLIS_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.STACK_TRACE_MAX_FRAMES_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+        }
+    }
+
+    @Test
+    void repeatedTraceWithSink() throws IOException {
+        synchronized (CONFIG_PARAMS) {
+            PrintStream out = System.out;
+            StringBuilderPrintStream console = new StringBuilderPrintStream();
+            StringBuilderPrintStream sbs = new StringBuilderPrintStream();
+            OutputChoice choice = new OutputChoice();
+            choice.add(sbs);
+            String prefix = LongriLogger.SINK_PREFIX + "traces";
+            try {
+                CONFIG_PARAMS.setProperty(LongriLogger.LOG_COLORFUL_KEY, false);
+                CONFIG_PARAMS.setProperty(LongriLogger.PATTERN_KEY, "%level %msg");
+                LongriLogger logger = new LongriLogger("de.longri.TraceSinkTest");
+                CONFIG_PARAMS.setOutputChoice(choice);
+                CONFIG_PARAMS.setProperty(LongriLogger.STACK_TRACE_REPEAT_WINDOW_MILLIS_KEY, "60000");
+                CONFIG_PARAMS.setProperty(prefix + ".pattern", "sink %msg");
+                System.setOut(console);
+                CONFIG_PARAMS.setProperty(prefix + ".target", "System.out");
+                System.setOut(out);
+
+                IOException[] failures = new IOException[2];
+                for (int i = 0; i < failures.length; i++) failures[i] = new IOException("timeout " + i);
+                for (IOException failure : failures) logger.error("failed", failure);
+
+                // the event is rendered once for both targets, the first one gets the whole trace
+                for (String text : new String[]{sbs.toString(), console.toString()}) {
+                    String[] lines = text.split("\n");
+                    assertEquals("java.io.IOException: timeout 0", lines[1]);
+                    assertTrue(lines[2].startsWith("\tat "));
+                    int repeat = text.indexOf("java.io.IOException: timeout 1\n\t... same as trace #");
+                    assertTrue(repeat > 0, text);
+                    assertTrue(text.substring(repeat).contains("(seen 2 times)\n"), text);
+                }
+            } finally {
+                System.setOut(out);
+                CONFIG_PARAMS.removeProperty(prefix + ".target");
+                CONFIG_PARAMS.removeProperty(prefix + ".pattern");
+                CONFIG_PARAMS.removeProperty(LongriLogger.STACK_TRACE_REPEAT_WINDOW_MILLIS_KEY);
+                CONFIG_PARAMS.removeProperty(LongriLogger.PATTERN_KEY);
+            }
+        }
+    }
+
+    @Test
+    void cachedFrames() {
+        RuntimeException e = new RuntimeException("deep");
+        StackTraceElement[] frames = new StackTraceElement[200];
+        for (int i = 0; i < frames.length; i++) frames[i] = frame("com.app.Layer" + (i % 20), "call" + i);
+        e.setStackTrace(frames);
+
+        ThrowableRenderer cached = new ThrowableRenderer(0, new String[0], 16, 0);
+        ThrowableRenderer uncached = new ThrowableRenderer(0, new String[0], 0, 0);
+        String expected = uncached.render(e, 0);
+        assertEquals(201, expected.split("\n").length);
+        // the first rendering fills the frame cache, the second one reads it
+        assertEquals(expected, cached.render(e, 0));
+        assertEquals(expected, cached.render(e, 1));
+    }
+}